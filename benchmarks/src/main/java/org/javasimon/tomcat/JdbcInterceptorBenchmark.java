@@ -0,0 +1,99 @@
+package org.javasimon.tomcat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimonJdbcInterceptor#invoke(Object, Method, Object[])} for each statement type,
+ * against a stub pool whose last interceptor returns stub statements:
+ * statement creation through the interceptor, followed by one execution of the returned statement.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcInterceptorBenchmark {
+    private static final String SQL = "select * from orders where customer_id=42 and status in (1, 2, 3)";
+    private static final String CALL = "{call update_order_status(?, ?)}";
+    @Param({"statement", "prepared", "callable"})
+    public String statementType;
+    /**
+     * JavaSimon wrappers (false) or lightweight proxies (true)
+     */
+    @Param({"false", "true"})
+    public boolean lightweight;
+    private Connection connection;
+    private SimonJdbcInterceptor interceptor;
+    private Method connectionMethod;
+    private Object[] connectionArgs;
+    /**
+     * Statement type resolved once: 0 statement, 1 prepared, 2 callable
+     */
+    private int statementTypeIndex;
+
+    @Setup
+    public void setUp() {
+        connection = JdbcStubs.createStub(Connection.class);
+        interceptor = new SimonJdbcInterceptor();
+        interceptor.setPrefix("benchmark.sql");
+        interceptor.setLightweight(lightweight);
+        JdbcStubs.ResultInterceptor resultInterceptor = new JdbcStubs.ResultInterceptor();
+        if (statementType.equals("statement")) {
+            statementTypeIndex = 0;
+            connectionMethod = JdbcStubs.getConnectionMethod("createStatement");
+            connectionArgs = null;
+            resultInterceptor.setResult(JdbcStubs.createStub(Statement.class));
+        } else if (statementType.equals("prepared")) {
+            statementTypeIndex = 1;
+            connectionMethod = JdbcStubs.getConnectionMethod("prepareStatement", String.class);
+            connectionArgs = new Object[]{SQL};
+            resultInterceptor.setResult(JdbcStubs.createStub(PreparedStatement.class));
+        } else {
+            statementTypeIndex = 2;
+            connectionMethod = JdbcStubs.getConnectionMethod("prepareCall", String.class);
+            connectionArgs = new Object[]{CALL};
+            resultInterceptor.setResult(JdbcStubs.createStub(CallableStatement.class));
+        }
+        interceptor.setNext(resultInterceptor);
+        // Connection borrow, stub pool doesn't provide pool metrics
+        interceptor.reset(null, null);
+    }
+
+    @Benchmark
+    public boolean invoke() throws Throwable {
+        Object statement = interceptor.invoke(connection, connectionMethod, connectionArgs);
+        switch (statementTypeIndex) {
+            case 0:
+                return execute((Statement) statement);
+            case 1:
+                return ((PreparedStatement) statement).execute();
+            default:
+                return ((CallableStatement) statement).execute();
+        }
+    }
+
+    private static boolean execute(Statement statement) throws SQLException {
+        return statement.execute(SQL);
+    }
+}
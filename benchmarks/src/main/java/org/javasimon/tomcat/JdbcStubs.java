@@ -0,0 +1,80 @@
+package org.javasimon.tomcat;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.JdbcInterceptor;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+/**
+ * Builds JDBC stubs for benchmarks: objects doing nothing and returning default values
+ *
+ * @author gquintana
+ */
+final class JdbcStubs {
+    private JdbcStubs() {
+    }
+
+    /**
+     * Invocation handler returning default values
+     */
+    private static final InvocationHandler DEFAULT_HANDLER = new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return Boolean.FALSE;
+            } else if (returnType == int.class) {
+                return 0;
+            } else if (returnType == long.class) {
+                return 0L;
+            } else if (returnType == int[].class) {
+                return new int[0];
+            } else if (method.getName().equals("toString")) {
+                return "Stub";
+            } else {
+                return null;
+            }
+        }
+    };
+
+    /**
+     * Create a stub implementing given interface
+     */
+    static <T> T createStub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(JdbcStubs.class.getClassLoader(), new Class[]{type}, DEFAULT_HANDLER));
+    }
+
+    /**
+     * Find a connection method by name and parameter types
+     */
+    static Method getConnectionMethod(String name, Class<?>... parameterTypes) {
+        try {
+            return Connection.class.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException noSuchMethodException) {
+            throw new IllegalArgumentException(noSuchMethodException);
+        }
+    }
+
+    /**
+     * Last interceptor of the chain, returning a fixed result
+     */
+    static class ResultInterceptor extends JdbcInterceptor {
+        private Object result;
+
+        void setResult(Object result) {
+            this.result = result;
+        }
+
+        @Override
+        public void reset(ConnectionPool parent, PooledConnection con) {
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Manager;
+import org.javasimon.SimonManager;
+import org.javasimon.Stopwatch;
+import org.javasimon.jmx.StopwatchMXBeanImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JMX registration of many Simons: one MBean per Simon, like {@link org.javasimon.jmx.JmxRegisterCallback},
+ * against the single {@link SimonAggregateMXBeanImpl} read page by page.
+ * Each invocation uses a fresh MBean server; heap retained by the MBean server is reported as the <code>retainedHeapKb</code>
+ * auxiliary counter.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JmxRegistrationBenchmark {
+    @Param({"50000"})
+    public int simonCount;
+    private Manager manager;
+    private String[] names;
+
+    /**
+     * Fresh MBean server for each iteration, reporting the heap it retains
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MBeanServerState {
+        /**
+         * Heap retained by the MBean server at the end of the iteration, in KB
+         */
+        public long retainedHeapKb;
+        private MBeanServer mBeanServer;
+        private long baselineHeap;
+
+        @Setup(Level.Iteration)
+        public void createMBeanServer() {
+            retainedHeapKb = 0L;
+            mBeanServer = MBeanServerFactory.newMBeanServer();
+            baselineHeap = usedHeapAfterGc();
+        }
+
+        @TearDown(Level.Iteration)
+        public void releaseMBeanServer() {
+            retainedHeapKb = (usedHeapAfterGc() - baselineHeap) / 1024L;
+            mBeanServer = null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        manager = SimonManager.manager();
+        manager.clear();
+        names = new String[simonCount];
+        for (int i = 0; i < simonCount; i++) {
+            names[i] = "benchmark.valve.uri" + i;
+            manager.getStopwatch(names[i]).addTime(1000L + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.clear();
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Benchmark
+    public int perSimon(MBeanServerState mBeanServerState) throws JMException {
+        MBeanServer mBeanServer = mBeanServerState.mBeanServer;
+        for (String name : names) {
+            mBeanServer.registerMBean(new StopwatchMXBeanImpl((Stopwatch) manager.getSimon(name)), new ObjectName("org.javasimon:type=Stopwatch,name=" + name));
+        }
+        return mBeanServer.getMBeanCount();
+    }
+
+    @Benchmark
+    public int aggregate(MBeanServerState mBeanServerState) throws JMException {
+        MBeanServer mBeanServer = mBeanServerState.mBeanServer;
+        SimonAggregateMXBeanImpl simonAggregate = new SimonAggregateMXBeanImpl(manager, mBeanServer, "org.javasimon");
+        mBeanServer.registerMBean(simonAggregate, new ObjectName("org.javasimon:type=Simons"));
+        // First page, then on demand registration of one Simon
+        TabularData firstPage = simonAggregate.getStopwatches("benchmark.", 0, 100);
+        simonAggregate.registerSimon(names[0]);
+        return firstPage.size() + mBeanServer.getMBeanCount();
+    }
+}
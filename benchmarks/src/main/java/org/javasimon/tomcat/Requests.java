@@ -0,0 +1,57 @@
+package org.javasimon.tomcat;
+
+import org.apache.catalina.connector.Request;
+
+/**
+ * Builds Tomcat requests for benchmarks
+ *
+ * @author gquintana
+ */
+final class Requests {
+    /**
+     * Realistic mix of request URIs: pages, REST resources, static resources
+     */
+    static final String[] URIS = {
+            "/shop/index.jsp",
+            "/shop/css/site.css",
+            "/shop/js/jquery-1.7.1.min.js",
+            "/shop/img/logo.PNG",
+            "/shop/api/orders/12345",
+            "/shop/api/orders/12345/lines",
+            "/shop/api/customers/42/orders",
+            "/shop/search;jsessionid=0AB1C2D3E4F5A6B7C8D9E0F1A2B3C4D5",
+            "/shop/images/banner.jpg",
+            "/shop/favicon.ico",
+            "/shop/api/products/123e4567-e89b-12d3-a456-426614174000",
+            "/shop/checkout/payment",
+            "/shop/static/fonts/icons.woff",
+            "/shop/js/app.JS",
+            "/shop/api/orders",
+            "/shop/account/settings"
+    };
+
+    private Requests() {
+    }
+
+    /**
+     * Create a request for given URI
+     */
+    static Request createRequest(String uri) {
+        org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+        coyoteRequest.requestURI().setString(uri);
+        Request request = new Request();
+        request.setCoyoteRequest(coyoteRequest);
+        return request;
+    }
+
+    /**
+     * Create a request for each URI
+     */
+    static Request[] createRequests(String[] uris) {
+        Request[] requests = new Request[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            requests[i] = createRequest(uris[i]);
+        }
+        return requests;
+    }
+}
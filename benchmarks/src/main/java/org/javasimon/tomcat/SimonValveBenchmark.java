@@ -0,0 +1,75 @@
+package org.javasimon.tomcat;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimonValve#invoke(Request, Response)} overhead against a stub next valve:
+ * throughput and latency distribution, for each recording mode.
+ * Run with <code>-prof gc</code>: in accumulation and striped modes, steady state requests should allocate ~0 B/op.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimonValveBenchmark {
+    /**
+     * Recording mode: split, accumulate or striped
+     */
+    @Param({"split", "accumulate", "striped"})
+    public String recording;
+    private SimonValve valve;
+    private Request request;
+    private Response response;
+
+    /**
+     * Next valve doing nothing
+     */
+    private static class StubValve extends ValveBase {
+        @Override
+        public void invoke(Request request, Response response) throws IOException, ServletException {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        valve = new SimonValve();
+        valve.setAccumulate(recording.equals("accumulate"));
+        valve.setStriped(recording.equals("striped"));
+        valve.setNext(new StubValve());
+        request = Requests.createRequest("/shop/api/orders");
+        response = new Response();
+    }
+
+    @TearDown
+    public void tearDown() {
+        valve.setAccumulate(false);
+        valve.setStriped(false);
+    }
+
+    @Benchmark
+    public void invoke() throws IOException, ServletException {
+        valve.invoke(request, response);
+    }
+}
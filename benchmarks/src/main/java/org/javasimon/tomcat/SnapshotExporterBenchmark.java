@@ -0,0 +1,75 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Manager;
+import org.javasimon.SimonManager;
+import org.javasimon.Stopwatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of one {@link SnapshotExporter#export()} with many Simons,
+ * all Stopwatches being used between two exports.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotExporterBenchmark {
+    @Param({"10000"})
+    public int simonCount;
+    private Stopwatch[] stopwatches;
+    private File file;
+    private SnapshotExporter snapshotExporter;
+
+    @Setup
+    public void setUp() throws IOException {
+        Manager manager = SimonManager.manager();
+        manager.clear();
+        stopwatches = new Stopwatch[simonCount];
+        for (int i = 0; i < simonCount; i++) {
+            stopwatches[i] = manager.getStopwatch("benchmark.valve.uri" + i);
+        }
+        file = File.createTempFile("simon-snapshot", ".lp");
+        // Rotate every 64MB, keep a single rotated file
+        snapshotExporter = new SnapshotExporter(manager, file, 64L * 1024L * 1024L, 1);
+    }
+
+    @Setup(Level.Invocation)
+    public void useStopwatches() {
+        for (int i = 0; i < stopwatches.length; i++) {
+            stopwatches[i].addTime(1000L + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        snapshotExporter.close();
+        file.delete();
+        new File(file.getPath() + ".1").delete();
+        SimonManager.manager().clear();
+    }
+
+    @Benchmark
+    public int export() throws IOException {
+        return snapshotExporter.export();
+    }
+}
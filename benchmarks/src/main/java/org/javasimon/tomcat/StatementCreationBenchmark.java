@@ -0,0 +1,94 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.jdbc4.SimonPreparedStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Simon statement wrapper creation through reflection (former implementation)
+ * and through a constant method handle (like {@link SimonJdbcInterceptor} does), then through the whole interceptor.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementCreationBenchmark {
+    private static final String SQL = "select * from orders where customer_id=?";
+    private static final MethodHandle PREPARED_STATEMENT_CONSTRUCTOR = findPreparedStatementConstructor();
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private Constructor<SimonPreparedStatement> preparedStatementConstructor;
+    private Method prepareStatementMethod;
+    private String[] connectionMethodNames;
+    private SimonJdbcInterceptor interceptor;
+
+    private static MethodHandle findPreparedStatementConstructor() {
+        try {
+            Constructor<SimonPreparedStatement> constructor = SimonPreparedStatement.class.getDeclaredConstructor(Connection.class, PreparedStatement.class, String.class, String.class);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                .asType(MethodType.methodType(Statement.class, Connection.class, PreparedStatement.class, String.class, String.class));
+        } catch (Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = JdbcStubs.createStub(Connection.class);
+        preparedStatement = JdbcStubs.createStub(PreparedStatement.class);
+        preparedStatementConstructor = SimonPreparedStatement.class.getDeclaredConstructor(Connection.class, PreparedStatement.class, String.class, String.class);
+        preparedStatementConstructor.setAccessible(true);
+        prepareStatementMethod = JdbcStubs.getConnectionMethod("prepareStatement", String.class);
+        connectionMethodNames = new String[]{"createStatement", "prepareStatement", "prepareCall"};
+        interceptor = new SimonJdbcInterceptor();
+        JdbcStubs.ResultInterceptor resultInterceptor = new JdbcStubs.ResultInterceptor();
+        resultInterceptor.setResult(preparedStatement);
+        interceptor.setNext(resultInterceptor);
+    }
+
+    /**
+     * Former implementation: linear scan on method names, then reflective constructor call
+     */
+    @Benchmark
+    public Object reflection() throws Exception {
+        for (String connectionMethodName : connectionMethodNames) {
+            if (prepareStatementMethod.getName().equals(connectionMethodName) && preparedStatement instanceof PreparedStatement) {
+                return preparedStatementConstructor.newInstance(new Object[]{connection, preparedStatement, SQL, "org.javasimon.tomcat.sql"});
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return (Statement) PREPARED_STATEMENT_CONSTRUCTOR.invokeExact(connection, preparedStatement, SQL, "org.javasimon.tomcat.sql");
+    }
+
+    @Benchmark
+    public Object interceptor() throws Throwable {
+        return interceptor.invoke(connection, prepareStatementMethod, new Object[]{SQL});
+    }
+}
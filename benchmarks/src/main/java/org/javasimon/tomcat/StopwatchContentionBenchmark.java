@@ -0,0 +1,99 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures concurrent recording into the Stopwatch of a single hot URI, as done by {@link SimonValve}:
+ * <ul>
+ * <li><code>split</code>: Split start and stop, the default path</li>
+ * <li><code>accumulator</code>: {@link StopwatchAccumulator}, the accumulation mode</li>
+ * <li><code>striped</code>: {@link StripedStopwatch}, the striped mode</li>
+ * </ul>
+ * The {@link #main(String[])} method runs it with 1 to 64 threads, to show throughput scaling.
+ *
+ * @author gquintana
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopwatchContentionBenchmark {
+    /**
+     * Thread counts run by {@link #main(String[])}
+     */
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    @Param({"split", "accumulator", "striped"})
+    public String recording;
+    /**
+     * Recording resolved once, so that string comparisons are not measured: 0 split, 1 accumulator, 2 striped
+     */
+    private int recordingIndex;
+    private Stopwatch stopwatch;
+    private StopwatchAccumulator accumulator;
+    private StripedStopwatch stripedStopwatch;
+
+    @Setup
+    public void setUp() {
+        stopwatch = SimonManager.getStopwatch("benchmark.valve.hot");
+        stopwatch.reset();
+        accumulator = new StopwatchAccumulator(stopwatch);
+        stripedStopwatch = new StripedStopwatch();
+        recordingIndex = recording.equals("split") ? 0 : (recording.equals("accumulator") ? 1 : 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        accumulator.fold();
+    }
+
+    @Benchmark
+    public void record() {
+        if (recordingIndex == 0) {
+            Split split = stopwatch.start();
+            split.stop();
+        } else {
+            long start = System.nanoTime();
+            long duration = System.nanoTime() - start;
+            if (recordingIndex == 1) {
+                accumulator.add(duration);
+            } else {
+                stripedStopwatch.record(duration);
+            }
+        }
+    }
+
+    /**
+     * Run the benchmark with an increasing number of threads
+     */
+    public static void main(String[] args) throws RunnerException {
+        for (int threadCount : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                .include(StopwatchContentionBenchmark.class.getSimpleName())
+                .threads(threadCount)
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.javasimon.tomcat;
+
+import org.apache.catalina.connector.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TomcatRequestStopwatchSource} over a realistic mix of URIs:
+ * Simon name computation, URI filtering, and cached request monitor resolution as done by {@link SimonValve}.
+ * Each operation processes the whole URI mix.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopwatchSourceBenchmark {
+    /**
+     * Replace numeric and UUID segments, and apply URI templates
+     */
+    @Param({"false", "true"})
+    public boolean collapseIds;
+    private Request[] requests;
+    private TomcatRequestStopwatchSource stopwatchSource;
+
+    @Setup
+    public void setUp() {
+        requests = Requests.createRequests(Requests.URIS);
+        stopwatchSource = new TomcatRequestStopwatchSource();
+        stopwatchSource.setCollapseIds(collapseIds);
+        if (collapseIds) {
+            stopwatchSource.setUriTemplates("/shop/api/orders/{id}/lines,/shop/api/customers/{id}/orders");
+        }
+    }
+
+    @Benchmark
+    public void getMonitorName(Blackhole blackhole) {
+        for (Request request : requests) {
+            blackhole.consume(stopwatchSource.getMonitorName(request));
+        }
+    }
+
+    @Benchmark
+    public void isMonitored(Blackhole blackhole) {
+        for (Request request : requests) {
+            blackhole.consume(stopwatchSource.isMonitored(request));
+        }
+    }
+
+    @Benchmark
+    public void getRequestMonitor(Blackhole blackhole) {
+        for (Request request : requests) {
+            blackhole.consume(stopwatchSource.getRequestMonitor(request));
+        }
+    }
+}
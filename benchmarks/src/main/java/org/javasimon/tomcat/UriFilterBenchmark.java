@@ -0,0 +1,62 @@
+package org.javasimon.tomcat;
+
+import org.apache.catalina.connector.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TomcatRequestStopwatchSource#isMonitored(Request)} suffix trie
+ * with the former lower case and <code>endsWith</code> implementation.
+ * Run with <code>-prof gc</code> to see allocations.
+ *
+ * @author gquintana
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriFilterBenchmark {
+    private Request[] requests;
+    private TomcatRequestStopwatchSource stopwatchSource;
+
+    @Setup
+    public void setUp() {
+        requests = Requests.createRequests(Requests.URIS);
+        stopwatchSource = new TomcatRequestStopwatchSource();
+    }
+
+    /**
+     * Former implementation
+     */
+    private static boolean legacyIsMonitored(Request request) {
+        String uri = request.getRequestURI().toLowerCase();
+        return !(uri.endsWith(".css") || uri.endsWith(".png") || uri.endsWith(".gif") || uri.endsWith(".jpg") || uri.endsWith(".js"));
+    }
+
+    @Benchmark
+    public void legacyIsMonitored(Blackhole blackhole) {
+        for (Request request : requests) {
+            blackhole.consume(legacyIsMonitored(request));
+        }
+    }
+
+    @Benchmark
+    public void isMonitored(Blackhole blackhole) {
+        for (Request request : requests) {
+            blackhole.consume(stopwatchSource.isMonitored(request));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package org.javasimon.tomcat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.javasimon.Counter;
+import org.javasimon.Simon;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Callback dispatching measurement events to other callbacks from a background thread,
+ * so that slow callbacks (like logging ones) don't add to request latency.
+ * Stopwatch and Counter events are put in a bounded, pre-allocated, lock-free ring
+ * (multiple producers, single consumer), and drained by batches by the consumer thread.
+ * Other events (Simon creation, reset, manager clear...) are rare and dispatched synchronously.
+ * When the ring is full, events are either dropped and counted or producers wait, see {@link OverflowPolicy}.
+ * Once closed, events are dropped and counted, the ring is drained and only then delegates are cleaned up.
+ * Exceptions thrown by callbacks are counted, and only the first one is logged.
+ *
+ * @author gquintana
+ */
+public class AsyncCallback extends CallbackSkeleton implements AsyncCallbackMXBean {
+    /**
+     * Logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(AsyncCallback.class.getName());
+    /**
+     * Behaviour when the ring is full
+     */
+    public static enum OverflowPolicy {
+        /**
+         * Event is dropped and counted
+         */
+        DROP,
+        /**
+         * Producer waits until the consumer made room
+         */
+        BLOCK
+    }
+    private static final int STOPWATCH_START = 1;
+    private static final int STOPWATCH_STOP = 2;
+    private static final int STOPWATCH_ADD_TIME = 3;
+    private static final int STOPWATCH_ADD_SPLIT = 4;
+    private static final int COUNTER_INCREASE = 5;
+    private static final int COUNTER_DECREASE = 6;
+    private static final int COUNTER_SET = 7;
+    /**
+     * Maximum number of events dispatched per batch
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * Consumer wait time when the ring is empty, in nanoseconds
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    /**
+     * Callbacks events are dispatched to
+     */
+    private final Callback[] callbacks;
+    private final OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final int mask;
+    /**
+     * Slot sequences: a slot can be written at position p when its sequence is p,
+     * and read at position p when its sequence is p+1
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * Slot contents: event type, Simon or Split, value
+     */
+    private final int[] types;
+    private final Object[] subjects;
+    private final Object[] secondSubjects;
+    private final long[] values;
+    /**
+     * Next position to write
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Next position to read, only used by consumer thread
+     */
+    private long head;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile boolean running;
+    /**
+     * Set when the callback is stopped: events published afterwards are dropped
+     */
+    private volatile boolean closed;
+    /**
+     * Consumer thread, kept as long as it is alive
+     */
+    private Thread consumerThread;
+    private boolean delegatesCleanedUp;
+
+    /**
+     * Constructor
+     *
+     * @param callbacks Callbacks events are dispatched to
+     * @param queueSize Ring capacity, rounded up to a power of 2
+     * @param overflowPolicy Behaviour when the ring is full
+     */
+    public AsyncCallback(List<Callback> callbacks, int queueSize, OverflowPolicy overflowPolicy) {
+        this.callbacks = callbacks.toArray(new Callback[callbacks.size()]);
+        this.overflowPolicy = overflowPolicy;
+        int ringCapacity = 2;
+        while (ringCapacity < queueSize && ringCapacity < (1 << 30)) {
+            ringCapacity <<= 1;
+        }
+        this.capacity = ringCapacity;
+        this.mask = ringCapacity - 1;
+        this.sequences = new AtomicLongArray(ringCapacity);
+        for (int i = 0; i < ringCapacity; i++) {
+            sequences.set(i, i);
+        }
+        this.types = new int[ringCapacity];
+        this.subjects = new Object[ringCapacity];
+        this.secondSubjects = new Object[ringCapacity];
+        this.values = new long[ringCapacity];
+    }
+
+    /**
+     * Start the consumer thread
+     */
+    public synchronized void start() {
+        if (consumerThread == null) {
+            closed = false;
+            running = true;
+            consumerThread = new Thread(new Runnable() {
+                public void run() {
+                    consume();
+                }
+            }, "SimonListener-callback");
+            consumerThread.setDaemon(true);
+            consumerThread.start();
+        }
+    }
+
+    /**
+     * Stop accepting events and stop the consumer thread, once pending events are dispatched.
+     * When the consumer thread doesn't finish in time, it is kept and can be waited for by calling this method again.
+     *
+     * @param timeoutMillis Maximum time to wait for pending events
+     * @return true if all pending events were dispatched
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        closed = true;
+        if (consumerThread == null) {
+            return true;
+        }
+        running = false;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join(timeoutMillis);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumerThread.isAlive()) {
+            return false;
+        }
+        consumerThread = null;
+        return true;
+    }
+
+    /**
+     * @return true when the consumer thread is not running
+     */
+    public synchronized boolean isStopped() {
+        return consumerThread == null;
+    }
+
+    /**
+     * Put an event in the ring
+     */
+    private void publish(int type, Object subject, Object secondSubject, long value) {
+        if (closed) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    types[slot] = type;
+                    subjects[slot] = subject;
+                    secondSubjects[slot] = secondSubject;
+                    values[slot] = value;
+                    sequences.set(slot, position + 1);
+                    return;
+                }
+            } else if (sequence < position) {
+                // Ring is full
+                if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Consumer thread loop: dispatch batches of events until stopped and the ring is empty
+     */
+    private void consume() {
+        while (true) {
+            int dispatched = dispatchBatch();
+            if (dispatched == 0) {
+                if (!running && tail.get() == head) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Dispatch available events, at most {@link #BATCH_SIZE}
+     *
+     * @return Number of dispatched events
+     */
+    private int dispatchBatch() {
+        int count = 0;
+        while (count < BATCH_SIZE) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            int type = types[slot];
+            Object subject = subjects[slot];
+            Object secondSubject = secondSubjects[slot];
+            long value = values[slot];
+            subjects[slot] = null;
+            secondSubjects[slot] = null;
+            sequences.set(slot, head + capacity);
+            head++;
+            count++;
+            dispatch(type, subject, secondSubject, value);
+        }
+        if (count > 0) {
+            dispatchedCount.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void dispatch(int type, Object subject, Object secondSubject, long value) {
+        for (Callback callback : callbacks) {
+            try {
+                switch (type) {
+                    case STOPWATCH_START:
+                        callback.onStopwatchStart((Split) subject);
+                        break;
+                    case STOPWATCH_STOP:
+                        callback.onStopwatchStop((Split) subject);
+                        break;
+                    case STOPWATCH_ADD_TIME:
+                        callback.onStopwatchAdd((Stopwatch) subject, value);
+                        break;
+                    case STOPWATCH_ADD_SPLIT:
+                        callback.onStopwatchAdd((Stopwatch) subject, (Split) secondSubject);
+                        break;
+                    case COUNTER_INCREASE:
+                        callback.onCounterIncrease((Counter) subject, value);
+                        break;
+                    case COUNTER_DECREASE:
+                        callback.onCounterDecrease((Counter) subject, value);
+                        break;
+                    case COUNTER_SET:
+                        callback.onCounterSet((Counter) subject, value);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (RuntimeException runtimeException) {
+                // A failing callback must not stop the consumer thread, nor flood the log
+                if (failedCount.getAndIncrement() == 0L) {
+                    LOGGER.log(Level.WARNING, "Simon asynchronous callback " + callback.getClass().getName() + " failed, next failures are only counted", runtimeException);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void initialize() {
+        for (Callback callback : callbacks) {
+            callback.initialize();
+        }
+    }
+
+    /**
+     * Stop the consumer thread if it is still running, so that pending events are dispatched before delegates are cleaned up.
+     * Delegates are not cleaned up while the consumer thread may still dispatch events to them.
+     */
+    @Override
+    public synchronized void cleanup() {
+        if (!stop(10000L)) {
+            LOGGER.warning("Simon asynchronous callback consumer still running, " + getPendingCount() + " events pending, callbacks not cleaned up");
+            return;
+        }
+        if (!delegatesCleanedUp) {
+            delegatesCleanedUp = true;
+            for (Callback callback : callbacks) {
+                callback.cleanup();
+            }
+        }
+    }
+
+    @Override
+    public void onStopwatchStart(Split split) {
+        publish(STOPWATCH_START, split, null, 0L);
+    }
+
+    @Override
+    public void onStopwatchStop(Split split) {
+        publish(STOPWATCH_STOP, split, null, 0L);
+    }
+
+    @Override
+    public void onStopwatchAdd(Stopwatch stopwatch, long ns) {
+        publish(STOPWATCH_ADD_TIME, stopwatch, null, ns);
+    }
+
+    @Override
+    public void onStopwatchAdd(Stopwatch stopwatch, Split split) {
+        publish(STOPWATCH_ADD_SPLIT, stopwatch, split, 0L);
+    }
+
+    @Override
+    public void onCounterIncrease(Counter counter, long inc) {
+        publish(COUNTER_INCREASE, counter, null, inc);
+    }
+
+    @Override
+    public void onCounterDecrease(Counter counter, long dec) {
+        publish(COUNTER_DECREASE, counter, null, dec);
+    }
+
+    @Override
+    public void onCounterSet(Counter counter, long val) {
+        publish(COUNTER_SET, counter, null, val);
+    }
+
+    @Override
+    public void onSimonCreated(Simon simon) {
+        for (Callback callback : callbacks) {
+            callback.onSimonCreated(simon);
+        }
+    }
+
+    @Override
+    public void onSimonDestroyed(Simon simon) {
+        for (Callback callback : callbacks) {
+            callback.onSimonDestroyed(simon);
+        }
+    }
+
+    @Override
+    public void onSimonReset(Simon simon) {
+        for (Callback callback : callbacks) {
+            callback.onSimonReset(simon);
+        }
+    }
+
+    @Override
+    public void onManagerClear() {
+        for (Callback callback : callbacks) {
+            callback.onManagerClear();
+        }
+    }
+
+    @Override
+    public void onManagerWarning(String warning, Exception cause) {
+        for (Callback callback : callbacks) {
+            callback.onManagerWarning(warning, cause);
+        }
+    }
+
+    public int getQueueSize() {
+        return capacity;
+    }
+
+    /**
+     * @return Approximate number of events waiting in the ring
+     */
+    public long getPendingCount() {
+        return Math.max(0L, tail.get() - head);
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy.name();
+    }
+}
@@ -0,0 +1,38 @@
+package org.javasimon.tomcat;
+
+/**
+ * JMX interface exposing the state of the asynchronous callback dispatcher.
+ *
+ * @author gquintana
+ */
+public interface AsyncCallbackMXBean {
+    /**
+     * @return Ring capacity
+     */
+    int getQueueSize();
+
+    /**
+     * @return Number of events waiting to be dispatched
+     */
+    long getPendingCount();
+
+    /**
+     * @return Number of events dropped because the ring was full
+     */
+    long getDroppedCount();
+
+    /**
+     * @return Number of events dispatched to callbacks
+     */
+    long getDispatchedCount();
+
+    /**
+     * @return Number of exceptions thrown by callbacks while dispatching events
+     */
+    long getFailedCount();
+
+    /**
+     * @return Behaviour when the ring is full: DROP or BLOCK
+     */
+    String getOverflowPolicy();
+}
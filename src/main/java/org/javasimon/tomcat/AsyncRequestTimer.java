@@ -0,0 +1,91 @@
+package org.javasimon.tomcat;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+
+/**
+ * Measures an asynchronous or Comet request until it is completed, instead of until the valve returns.
+ * Attached to the request itself (as an {@link AsyncListener} or as a request note), so that
+ * nothing is kept by the valve, and released with the request.
+ *
+ * @author gquintana
+ */
+final class AsyncRequestTimer implements AsyncListener {
+    private final SimonValve valve;
+    /**
+     * Request monitor, null with a custom stopwatch source
+     */
+    private final RequestMonitor requestMonitor;
+    /**
+     * Split, null in accumulation or striped mode
+     */
+    private final Split split;
+    /**
+     * Request start in nanoseconds, in accumulation or striped mode
+     */
+    private final long start;
+    private final Request request;
+    private final Response response;
+    private boolean completed;
+
+    AsyncRequestTimer(SimonValve valve, RequestMonitor requestMonitor, Split split, long start, Request request, Response response) {
+        this.valve = valve;
+        this.requestMonitor = requestMonitor;
+        this.split = split;
+        this.start = start;
+        this.request = request;
+        this.response = response;
+    }
+
+    private Stopwatch getStopwatch() {
+        return requestMonitor == null ? split.getStopwatch() : requestMonitor.getStopwatch();
+    }
+
+    /**
+     * Stop measuring the request, once
+     */
+    synchronized void complete() {
+        if (!completed) {
+            completed = true;
+            valve.completeRequest(requestMonitor, split, start, request, response);
+        }
+    }
+
+    void timeout() {
+        valve.countRequestEvent(getStopwatch(), TomcatRequestStopwatchSource.ASYNC_TIMEOUT_SUFFIX);
+    }
+
+    void error() {
+        valve.countRequestEvent(getStopwatch(), TomcatRequestStopwatchSource.ASYNC_ERROR_SUFFIX);
+    }
+
+    public void onComplete(AsyncEvent event) {
+        complete();
+    }
+
+    /**
+     * Timed out requests are completed afterwards, the timeout is only counted
+     */
+    public void onTimeout(AsyncEvent event) {
+        timeout();
+    }
+
+    /**
+     * Failed requests are completed afterwards, the error is only counted
+     */
+    public void onError(AsyncEvent event) {
+        error();
+    }
+
+    /**
+     * Listeners are cleared when asynchronous processing is restarted by an asynchronous dispatch
+     */
+    public void onStartAsync(AsyncEvent event) {
+        event.getAsyncContext().addListener(this);
+    }
+}
@@ -0,0 +1,56 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Counter;
+import org.javasimon.Stopwatch;
+
+/**
+ * Database activity Simons of a request URI, resolved once per URI and held by {@link RequestMonitor}:
+ * <ul>
+ * <li><code>db</code> Stopwatch: time spent executing statements per request</li>
+ * <li><code>dbCalls</code> Counter: number of statement executions</li>
+ * <li><code>nPlusOne</code> Counter: requests executing the same statement at least threshold times</li>
+ * </ul>
+ *
+ * @author gquintana
+ */
+public class DbMonitor {
+    public static final String DB_SUFFIX = "db";
+    public static final String DB_CALLS_SUFFIX = "dbCalls";
+    public static final String N_PLUS_ONE_SUFFIX = "nPlusOne";
+    private final Stopwatch dbStopwatch;
+    private final Counter dbCallsCounter;
+    private final Counter nPlusOneCounter;
+    /**
+     * Number of executions of the same statement from which a request is an N+1 suspect
+     */
+    private final int nPlusOneThreshold;
+
+    /**
+     * Constructor, any Simon can be null if another kind of Simon has its name
+     */
+    public DbMonitor(Stopwatch dbStopwatch, Counter dbCallsCounter, Counter nPlusOneCounter, int nPlusOneThreshold) {
+        this.dbStopwatch = dbStopwatch;
+        this.dbCallsCounter = dbCallsCounter;
+        this.nPlusOneCounter = nPlusOneCounter;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    /**
+     * Record database activity of an ended request
+     */
+    void record(RequestContext requestContext) {
+        if (dbStopwatch != null) {
+            dbStopwatch.addTime(requestContext.getDbNanos());
+        }
+        if (dbCallsCounter != null && requestContext.getDbCalls() > 0) {
+            dbCallsCounter.increase(requestContext.getDbCalls());
+        }
+        if (nPlusOneCounter != null && requestContext.getMaxRepeatCount() >= nPlusOneThreshold) {
+            nPlusOneCounter.increase();
+        }
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+}
@@ -0,0 +1,37 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Split;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Callback recording split durations into {@link Histograms},
+ * for Stopwatches whose name starts with a given prefix.
+ * Used for Stopwatches which are not driven by this library,
+ * like the ones of JavaSimon JDBC statement wrappers.
+ *
+ * @author gquintana
+ */
+public class HistogramCallback extends CallbackSkeleton {
+    /**
+     * Simon name prefix
+     */
+    private final String prefix;
+
+    /**
+     * Constructor
+     *
+     * @param prefix Simon name prefix, ending with the hierarchy delimiter like <code>jdbc.</code>,
+     * so that <code>jdbcfoo</code> Stopwatches don't match
+     */
+    public HistogramCallback(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void onStopwatchStop(Split split) {
+        String name = split.getStopwatch().getName();
+        if (name != null && name.startsWith(prefix) && OverheadGovernor.isHistogramsEnabled()) {
+            Histograms.getHistogram(name).record(split.runningFor());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.javasimon.tomcat;
+
+/**
+ * JMX interface exposing latency histograms and their percentiles.
+ *
+ * @author gquintana
+ */
+public interface HistogramMXBean {
+    /**
+     * @return Simon names having an histogram
+     */
+    String[] getNames();
+
+    /**
+     * Sample histogram of given Simon
+     *
+     * @param name Simon name
+     * @return Count, min, max, mean and main percentiles, null if there is no histogram
+     */
+    HistogramSample getSample(String name);
+
+    /**
+     * Compute a percentile of given Simon histogram
+     *
+     * @param name Simon name
+     * @param percentile Percentile between 0 and 100, like 99.9
+     * @return Duration in nanoseconds, 0 if there is no histogram
+     */
+    long getPercentile(String name, double percentile);
+
+    /**
+     * Reset histogram of given Simon
+     *
+     * @param name Simon name
+     */
+    void reset(String name);
+}
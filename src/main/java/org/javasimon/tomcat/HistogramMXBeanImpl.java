@@ -0,0 +1,32 @@
+package org.javasimon.tomcat;
+
+import java.util.List;
+
+/**
+ * JMX bean exposing {@link Histograms}.
+ *
+ * @author gquintana
+ */
+public class HistogramMXBeanImpl implements HistogramMXBean {
+    public String[] getNames() {
+        List<String> names = Histograms.getNames();
+        return names.toArray(new String[names.size()]);
+    }
+
+    public HistogramSample getSample(String name) {
+        LatencyHistogram histogram = Histograms.findHistogram(name);
+        return histogram == null ? null : new HistogramSample(name, histogram);
+    }
+
+    public long getPercentile(String name, double percentile) {
+        LatencyHistogram histogram = Histograms.findHistogram(name);
+        return histogram == null ? 0L : histogram.getPercentile(percentile);
+    }
+
+    public void reset(String name) {
+        LatencyHistogram histogram = Histograms.findHistogram(name);
+        if (histogram != null) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.javasimon.tomcat;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Values read from a {@link LatencyHistogram} at a given time, durations are in nanoseconds.
+ *
+ * @author gquintana
+ */
+public class HistogramSample {
+    private final String name;
+    private final long count;
+    private final long min;
+    private final long max;
+    private final double mean;
+    private final long median;
+    private final long percentile90;
+    private final long percentile99;
+    private final long percentile999;
+
+    @ConstructorProperties({"name", "count", "min", "max", "mean", "median", "percentile90", "percentile99", "percentile999"})
+    public HistogramSample(String name, long count, long min, long max, double mean, long median, long percentile90, long percentile99, long percentile999) {
+        this.name = name;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.median = median;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.percentile999 = percentile999;
+    }
+
+    /**
+     * Sample given histogram
+     *
+     * @param name Simon name
+     * @param histogram Histogram
+     */
+    public HistogramSample(String name, LatencyHistogram histogram) {
+        this(name, histogram.getCount(), histogram.getMin(), histogram.getMax(), histogram.getMean(),
+                histogram.getPercentile(50D), histogram.getPercentile(90D), histogram.getPercentile(99D), histogram.getPercentile(99.9D));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getMedian() {
+        return median;
+    }
+
+    public long getPercentile90() {
+        return percentile90;
+    }
+
+    public long getPercentile99() {
+        return percentile99;
+    }
+
+    public long getPercentile999() {
+        return percentile999;
+    }
+}
@@ -0,0 +1,68 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of latency histograms, indexed by Simon name.
+ * Filled by {@link SimonValve} and {@link SimonJdbcInterceptor} when histograms are enabled,
+ * read through {@link HistogramMXBean}.
+ *
+ * @author gquintana
+ */
+public final class Histograms {
+    /**
+     * Histograms by Simon name
+     */
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private Histograms() {
+    }
+
+    /**
+     * Get or create the histogram of given Simon
+     *
+     * @param name Simon name
+     * @return Histogram
+     */
+    public static LatencyHistogram getHistogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            histogram = HISTOGRAMS.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the histogram of given Simon
+     *
+     * @param name Simon name
+     * @return Histogram or null if none
+     */
+    public static LatencyHistogram findHistogram(String name) {
+        return HISTOGRAMS.get(name);
+    }
+
+    /**
+     * @return Sorted Simon names having an histogram
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<String>(HISTOGRAMS.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Remove all histograms
+     */
+    public static void clear() {
+        HISTOGRAMS.clear();
+    }
+}
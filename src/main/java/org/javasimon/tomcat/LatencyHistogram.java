@@ -0,0 +1,219 @@
+package org.javasimon.tomcat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory, log-linear latency histogram, similar to HdrHistogram.
+ * Each power of 2 is divided into {@value #SUB_BUCKET_COUNT} linear sub-buckets,
+ * so that recorded values are kept with a relative error below 1/{@value #SUB_BUCKET_COUNT}.
+ * Values from 0 to 2<sup>{@value #MAX_EXPONENT}</sup> nanoseconds (about 4.9 hours) are tracked,
+ * larger values are counted in the last bucket.
+ * Recording is lock-free and can be done concurrently by many threads,
+ * histograms can be merged to aggregate time windows or nodes.
+ *
+ * @author gquintana
+ */
+public class LatencyHistogram {
+    /**
+     * Number of bits of sub-bucket index
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    /**
+     * Number of linear sub-buckets per power of 2
+     */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values are tracked up to 2^MAX_EXPONENT
+     */
+    public static final int MAX_EXPONENT = 44;
+    /**
+     * Number of buckets
+     */
+    public static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    /**
+     * Counts per bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * Sum of recorded values
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * Minimum recorded value
+     */
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    /**
+     * Maximum recorded value
+     */
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * Compute bucket index of a value
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0L ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Compute highest value of a bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1L;
+    }
+
+    /**
+     * Record a value
+     *
+     * @param ns Duration in nanoseconds
+     */
+    public void record(long ns) {
+        counts.incrementAndGet(bucketIndex(ns));
+        total.addAndGet(ns);
+        long currentMin = min.get();
+        while (ns < currentMin && !min.compareAndSet(currentMin, ns)) {
+            currentMin = min.get();
+        }
+        long currentMax = max.get();
+        while (ns > currentMax && !max.compareAndSet(currentMax, ns)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Add the values of another histogram (or bucket counts) into this one
+     *
+     * @param bucketCounts Bucket counts, see {@link #getBucketCounts()}
+     * @param otherTotal Sum of values
+     * @param otherMin Minimum value
+     * @param otherMax Maximum value
+     */
+    public void merge(long[] bucketCounts, long otherTotal, long otherMin, long otherMax) {
+        for (int i = 0; i < BUCKET_COUNT && i < bucketCounts.length; i++) {
+            if (bucketCounts[i] != 0L) {
+                counts.addAndGet(i, bucketCounts[i]);
+            }
+        }
+        total.addAndGet(otherTotal);
+        long currentMin = min.get();
+        while (otherMin < currentMin && !min.compareAndSet(currentMin, otherMin)) {
+            currentMin = min.get();
+        }
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Add the values of another histogram into this one
+     */
+    public void merge(LatencyHistogram other) {
+        merge(other.getBucketCounts(), other.getTotal(), other.min.get(), other.getMax());
+    }
+
+    /**
+     * Remove all values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        total.set(0L);
+        min.set(Long.MAX_VALUE);
+        max.set(0L);
+    }
+
+    /**
+     * @return Copy of bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return bucketCounts;
+    }
+
+    /**
+     * @return Number of recorded values
+     */
+    public long getCount() {
+        long count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return Minimum recorded value, 0 when empty
+     */
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0L : value;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0L ? 0D : ((double) getTotal()) / count;
+    }
+
+    /**
+     * Compute a percentile
+     *
+     * @param percentile Percentile between 0 and 100, like 99.9
+     * @return Highest value of the bucket containing the percentile, capped by the maximum, 0 when empty
+     */
+    public long getPercentile(double percentile) {
+        long[] bucketCounts = getBucketCounts();
+        long count = 0L;
+        for (long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        return getPercentile(bucketCounts, count, percentile, getMax());
+    }
+
+    /**
+     * Compute a percentile from bucket counts
+     */
+    static long getPercentile(long[] bucketCounts, long count, double percentile, long max) {
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(count * Math.min(100D, Math.max(0D, percentile)) / 100D);
+        if (rank < 1L) {
+            rank = 1L;
+        }
+        long cumulatedCount = 0L;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            cumulatedCount += bucketCounts[i];
+            if (cumulatedCount >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,213 @@
+package org.javasimon.tomcat;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, concurrent, approximately least recently used cache.
+ * Entries are kept in a {@link ConcurrentHashMap}, lookups don't take any lock:
+ * a hit only sets the referenced flag of the entry, when it is not already set.
+ * Eviction follows the CLOCK algorithm: entries are queued in insertion order,
+ * the eldest entry is evicted unless it was referenced since it was last checked,
+ * in which case its flag is cleared and it is queued again.
+ * Hit and miss counts are kept in per-thread cells, like {@link StripedStopwatch}, and summed when read.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ * @author gquintana
+ */
+public class LruCache<K, V> {
+    /**
+     * Number of longs per cell, 64 bytes
+     */
+    private static final int CELL_SIZE = 8;
+    private static final int HIT = 0;
+    private static final int MISS = 1;
+    /**
+     * Entries by key
+     */
+    private final ConcurrentMap<K, Entry<K, V>> entries;
+    /**
+     * Entries in eviction order
+     */
+    private final ConcurrentLinkedQueue<Entry<K, V>> clock = new ConcurrentLinkedQueue<Entry<K, V>>();
+    /**
+     * Number of entries, may briefly exceed the maximum size while entries are added concurrently
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Maximum number of entries
+     */
+    private final int maxSize;
+    private final AtomicLong evictionCount = new AtomicLong();
+    /**
+     * Hit and miss count cells, with a leading padding cell
+     */
+    private final AtomicLongArray counts;
+    /**
+     * Mask used to compute cell index from thread id
+     */
+    private final int cellMask;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize Maximum number of entries, must be positive
+     */
+    public LruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<K, Entry<K, V>>(Math.min(maxSize, 1024));
+        int cellCount = 1;
+        while (cellCount < 2 * Runtime.getRuntime().availableProcessors()) {
+            cellCount *= 2;
+        }
+        this.cellMask = cellCount - 1;
+        this.counts = new AtomicLongArray((cellCount + 1) * CELL_SIZE);
+    }
+
+    /**
+     * Count a hit or a miss in the cell of current thread
+     */
+    private void count(int index) {
+        counts.incrementAndGet((((int) Thread.currentThread().getId() & cellMask) + 1) * CELL_SIZE + index);
+    }
+
+    private long sum(int index) {
+        long sum = 0L;
+        for (int cell = CELL_SIZE; cell < counts.length(); cell += CELL_SIZE) {
+            sum += counts.get(cell + index);
+        }
+        return sum;
+    }
+
+    /**
+     * Get cached value and mark it as recently used
+     *
+     * @param key Key, not null
+     * @return Value or null if not cached
+     */
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            count(MISS);
+            return null;
+        }
+        // Avoid writing to a shared cache line when the flag is already set
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        count(HIT);
+        return entry.value;
+    }
+
+    /**
+     * Add a value, unless one is already cached for this key.
+     * An entry which was not recently used is evicted when the cache is full.
+     *
+     * @param key Key, not null
+     * @param value Value, not null
+     * @return Value previously cached or null if given value was added
+     */
+    public V putIfAbsent(K key, V value) {
+        Entry<K, V> newEntry = new Entry<K, V>(key, value);
+        Entry<K, V> cachedEntry = entries.putIfAbsent(key, newEntry);
+        if (cachedEntry != null) {
+            return cachedEntry.value;
+        }
+        clock.offer(newEntry);
+        if (size.incrementAndGet() > maxSize) {
+            evict();
+        }
+        return null;
+    }
+
+    /**
+     * Evict entries until the cache is back to its maximum size.
+     * Each entry is given a second chance when it was referenced, the number of checked entries is bounded
+     * so that concurrent hits can't keep the evicting thread busy.
+     */
+    private void evict() {
+        int remainingChecks = 2 * maxSize + 1;
+        while (size.get() > maxSize && remainingChecks-- > 0) {
+            Entry<K, V> entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.offer(entry);
+            } else if (entries.remove(entry.key, entry)) {
+                size.decrementAndGet();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries, counters are kept
+     */
+    public void clear() {
+        Entry<K, V> entry;
+        while ((entry = clock.poll()) != null) {
+            if (entries.remove(entry.key, entry)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return Number of cached entries
+     */
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Number of lookups which found a cached value
+     */
+    public long getHitCount() {
+        return sum(HIT);
+    }
+
+    /**
+     * @return Number of lookups which didn't find a cached value
+     */
+    public long getMissCount() {
+        return sum(MISS);
+    }
+
+    /**
+     * @return Number of entries evicted to make room for new ones
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Cache entry
+     */
+    private static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        /**
+         * Set when the entry is read, cleared when the eviction clock passes over it
+         */
+        private volatile boolean referenced;
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package org.javasimon.tomcat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+
+/**
+ * Cumulative snapshot of Stopwatches, Counters and latency histograms of one node,
+ * meant to be merged with snapshots of other nodes to get cluster-wide statistics.
+ * Entries keep count, total, min, max and histogram bucket counts,
+ * so that merging is exact, associative and commutative: counts, totals and buckets are summed,
+ * minimums and maximums are compared. Percentiles of merged snapshots are the ones
+ * of a single histogram which would have recorded the values of all nodes.
+ * <p>
+ * Snapshots are immutable, and written in a compact versioned binary format:
+ * <pre>
+ * int magic, short version, long timestamp, int bucket count, int entry count
+ * entry: UTF name, byte kind, long count, long total, long min, long max,
+ *        int non empty bucket count, (int index, long count) per non empty bucket
+ * </pre>
+ * Durations are in nanoseconds.
+ *
+ * @author gquintana
+ * @see MetricSnapshotMerger
+ */
+public final class MetricSnapshot {
+    /**
+     * File signature: <code>SMSN</code>
+     */
+    private static final int MAGIC = 0x534D534E;
+    /**
+     * Current format version
+     */
+    public static final short VERSION = 1;
+    /**
+     * Entry kind: Stopwatch, count is the number of splits
+     */
+    public static final byte STOPWATCH = 1;
+    /**
+     * Entry kind: Counter, count is the counter value
+     */
+    public static final byte COUNTER = 2;
+    /**
+     * Entries by Simon name, sorted
+     */
+    private final Map<String, Entry> entries;
+    /**
+     * Capture time in milliseconds since epoch, latest one for merged snapshots
+     */
+    private final long timestamp;
+
+    private MetricSnapshot(Map<String, Entry> entries, long timestamp) {
+        this.entries = Collections.unmodifiableMap(entries);
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Capture Simons of a manager.
+     * When a Stopwatch has a latency histogram, the histogram statistics are used,
+     * so that counts and buckets are consistent. Striped Stopwatches and histograms
+     * which are not backed by a Simon are captured as Stopwatches.
+     * Stopwatches are not reset.
+     *
+     * @param manager Simon manager
+     * @param prefix Simon name prefix, null for all Simons
+     * @return Snapshot
+     */
+    public static MetricSnapshot capture(Manager manager, String prefix) {
+        Map<String, Entry> entries = new TreeMap<String, Entry>();
+        for (String name : manager.getSimonNames()) {
+            if (matches(name, prefix)) {
+                Simon simon = manager.getSimon(name);
+                if (simon instanceof Stopwatch) {
+                    LatencyHistogram histogram = Histograms.findHistogram(name);
+                    Stopwatch stopwatch = (Stopwatch) simon;
+                    if (histogram != null) {
+                        putHistogram(entries, name, histogram);
+                    } else if (stopwatch.getCounter() > 0L) {
+                        // Consistent values, read at once, the Stopwatch may have been reset meanwhile
+                        StopwatchSample sample = stopwatch.sample();
+                        if (sample.getCounter() > 0L) {
+                            entries.put(name, new Entry(name, STOPWATCH, sample.getCounter(), sample.getTotal(),
+                                sample.getMin(), sample.getMax(), null));
+                        }
+                    }
+                } else if (simon instanceof Counter) {
+                    CounterSample sample = ((Counter) simon).sample();
+                    entries.put(name, new Entry(name, COUNTER, sample.getCounter(), 0L,
+                        sample.getMin(), sample.getMax(), null));
+                }
+            }
+        }
+        for (String name : StripedStopwatches.getNames()) {
+            if (matches(name, prefix) && !entries.containsKey(name)) {
+                LatencyHistogram histogram = Histograms.findHistogram(name);
+                StripedStopwatch stopwatch = StripedStopwatches.findStopwatch(name);
+                if (histogram != null) {
+                    putHistogram(entries, name, histogram);
+                } else if (stopwatch != null && stopwatch.getCount() > 0L) {
+                    entries.put(name, new Entry(name, STOPWATCH, stopwatch.getCount(), stopwatch.getTotal(),
+                        stopwatch.getMin(), stopwatch.getMax(), null));
+                }
+            }
+        }
+        for (String name : Histograms.getNames()) {
+            if (matches(name, prefix) && !entries.containsKey(name)) {
+                putHistogram(entries, name, Histograms.findHistogram(name));
+            }
+        }
+        return new MetricSnapshot(entries, System.currentTimeMillis());
+    }
+
+    private static boolean matches(String name, String prefix) {
+        return prefix == null || name.startsWith(prefix);
+    }
+
+    private static void putHistogram(Map<String, Entry> entries, String name, LatencyHistogram histogram) {
+        long[] buckets = histogram.getBucketCounts();
+        long count = 0L;
+        for (long bucketCount : buckets) {
+            count += bucketCount;
+        }
+        if (count > 0L) {
+            entries.put(name, new Entry(name, STOPWATCH, count, histogram.getTotal(), histogram.getMin(), histogram.getMax(), buckets));
+        }
+    }
+
+    /**
+     * Build a snapshot from latency histograms, mainly for tests and tools
+     *
+     * @param histograms Histograms by Simon name
+     * @param timestamp Capture time in milliseconds since epoch
+     * @return Snapshot
+     */
+    public static MetricSnapshot of(Map<String, LatencyHistogram> histograms, long timestamp) {
+        Map<String, Entry> entries = new TreeMap<String, Entry>();
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+            putHistogram(entries, histogram.getKey(), histogram.getValue());
+        }
+        return new MetricSnapshot(entries, timestamp);
+    }
+
+    /**
+     * Merge this snapshot with another one, both are left unchanged
+     *
+     * @param other Other snapshot
+     * @return Merged snapshot
+     * @throws IllegalArgumentException When a Simon has different kinds in both snapshots
+     */
+    public MetricSnapshot merge(MetricSnapshot other) {
+        Map<String, Entry> mergedEntries = new TreeMap<String, Entry>(entries);
+        for (Entry otherEntry : other.entries.values()) {
+            Entry entry = mergedEntries.get(otherEntry.name);
+            mergedEntries.put(otherEntry.name, entry == null ? otherEntry : entry.merge(otherEntry));
+        }
+        return new MetricSnapshot(mergedEntries, Math.max(timestamp, other.timestamp));
+    }
+
+    /**
+     * Write this snapshot to a stream, the stream is not closed
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeLong(timestamp);
+        output.writeInt(LatencyHistogram.BUCKET_COUNT);
+        output.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            output.writeUTF(entry.name);
+            output.writeByte(entry.kind);
+            output.writeLong(entry.count);
+            output.writeLong(entry.total);
+            output.writeLong(entry.min);
+            output.writeLong(entry.max);
+            if (entry.buckets == null) {
+                output.writeInt(0);
+            } else {
+                int bucketCount = 0;
+                for (long bucket : entry.buckets) {
+                    if (bucket != 0L) {
+                        bucketCount++;
+                    }
+                }
+                output.writeInt(bucketCount);
+                for (int i = 0; i < entry.buckets.length; i++) {
+                    if (entry.buckets[i] != 0L) {
+                        output.writeInt(i);
+                        output.writeLong(entry.buckets[i]);
+                    }
+                }
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Write this snapshot to a file, through a temporary file renamed once written,
+     * so that readers never see a partially written snapshot
+     */
+    public void writeTo(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+        try {
+            writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+        if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            throw new IOException("Failed to rename " + tempFile);
+        }
+    }
+
+    /**
+     * Read a snapshot from a stream, the stream is not closed
+     *
+     * @throws IOException When the stream is not a snapshot, or was written by an unsupported version
+     */
+    public static MetricSnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a metric snapshot");
+        }
+        short version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported metric snapshot version " + version);
+        }
+        long timestamp = input.readLong();
+        int bucketLength = input.readInt();
+        if (bucketLength != LatencyHistogram.BUCKET_COUNT) {
+            throw new IOException("Unsupported histogram bucket count " + bucketLength);
+        }
+        int entryCount = input.readInt();
+        Map<String, Entry> entries = new TreeMap<String, Entry>();
+        for (int i = 0; i < entryCount; i++) {
+            String name = input.readUTF();
+            byte kind = input.readByte();
+            long count = input.readLong();
+            long total = input.readLong();
+            long min = input.readLong();
+            long max = input.readLong();
+            int bucketCount = input.readInt();
+            long[] buckets = null;
+            if (bucketCount > 0) {
+                buckets = new long[bucketLength];
+                for (int j = 0; j < bucketCount; j++) {
+                    int index = input.readInt();
+                    if (index < 0 || index >= bucketLength) {
+                        throw new IOException("Invalid histogram bucket index " + index);
+                    }
+                    buckets[index] = input.readLong();
+                }
+            }
+            entries.put(name, new Entry(name, kind, count, total, min, max, buckets));
+        }
+        return new MetricSnapshot(entries, timestamp);
+    }
+
+    /**
+     * Read a snapshot from a file
+     */
+    public static MetricSnapshot readFrom(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return readFrom(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return Entries sorted by Simon name
+     */
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * @return Entry of given Simon or null if none
+     */
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricSnapshot)) {
+            return false;
+        }
+        MetricSnapshot that = (MetricSnapshot) o;
+        return timestamp == that.timestamp && entries.equals(that.entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * entries.hashCode() + (int) (timestamp ^ (timestamp >>> 32));
+    }
+
+    /**
+     * Statistics of one Simon
+     */
+    public static final class Entry {
+        private final String name;
+        private final byte kind;
+        private final long count;
+        private final long total;
+        private final long min;
+        private final long max;
+        /**
+         * Histogram bucket counts, null when the Simon has no histogram
+         */
+        private final long[] buckets;
+
+        Entry(String name, byte kind, long count, long total, long min, long max, long[] buckets) {
+            this.name = name;
+            this.kind = kind;
+            this.count = count;
+            this.total = total;
+            this.min = min;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        /**
+         * Merge with the entry of the same Simon from another snapshot.
+         * Buckets are dropped when one of the entries has none, they would not account for all the values.
+         */
+        Entry merge(Entry other) {
+            if (kind != other.kind) {
+                throw new IllegalArgumentException("Simon " + name + " has different kinds " + kind + " and " + other.kind);
+            }
+            long[] mergedBuckets;
+            if (buckets == null || other.buckets == null) {
+                // Buckets of one side only would not account for the count of the other side
+                mergedBuckets = null;
+            } else {
+                mergedBuckets = new long[buckets.length];
+                for (int i = 0; i < buckets.length; i++) {
+                    mergedBuckets[i] = buckets[i] + other.buckets[i];
+                }
+            }
+            return new Entry(name, kind, count + other.count, total + other.total,
+                Math.min(min, other.min), Math.max(max, other.max), mergedBuckets);
+        }
+
+        /**
+         * Compute a percentile from histogram buckets
+         *
+         * @param percentile Percentile between 0 and 100, like 99.9
+         * @return Percentile, see {@link LatencyHistogram#getPercentile(double)}, 0 when the Simon has no histogram
+         */
+        public long getPercentile(double percentile) {
+            if (buckets == null) {
+                return 0L;
+            }
+            long bucketTotal = 0L;
+            for (long bucket : buckets) {
+                bucketTotal += bucket;
+            }
+            return LatencyHistogram.getPercentile(buckets, bucketTotal, percentile, max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Number of splits for Stopwatches, value for Counters
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0L ? 0D : ((double) total) / count;
+        }
+
+        public boolean hasHistogram() {
+            return buckets != null;
+        }
+
+        /**
+         * @return Copy of histogram bucket counts, null when the Simon has no histogram
+         */
+        public long[] getBuckets() {
+            return buckets == null ? null : buckets.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry that = (Entry) o;
+            return name.equals(that.name) && kind == that.kind && count == that.count && total == that.total
+                && min == that.min && max == that.max && Arrays.equals(buckets, that.buckets);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name.hashCode();
+            result = 31 * result + kind;
+            result = 31 * result + (int) (count ^ (count >>> 32));
+            result = 31 * result + (int) (total ^ (total >>> 32));
+            return 31 * result + Arrays.hashCode(buckets);
+        }
+    }
+}
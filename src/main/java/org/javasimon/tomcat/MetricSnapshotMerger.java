@@ -0,0 +1,86 @@
+package org.javasimon.tomcat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline tool merging snapshot files written by several nodes (see {@link MetricSnapshot})
+ * and printing cluster-wide statistics:
+ * <pre>
+ * java -cp javasimon-core.jar:javasimon-tomcat.jar org.javasimon.tomcat.MetricSnapshotMerger [-o merged.snapshot] node1.snapshot node2.snapshot...
+ * </pre>
+ * One tab separated line is printed per Simon: kind, name, count, mean, min, max,
+ * and the 50th, 90th, 99th and 99.9th percentiles when the Simon has a histogram, durations in nanoseconds.
+ * The merged snapshot can be written to a file, to be merged again later.
+ *
+ * @author gquintana
+ */
+public final class MetricSnapshotMerger {
+    private static final double[] PERCENTILES = {50D, 90D, 99D, 99.9D};
+
+    private MetricSnapshotMerger() {
+    }
+
+    /**
+     * Read and merge snapshot files
+     *
+     * @param files Snapshot files
+     * @return Merged snapshot, null when there is no file
+     */
+    public static MetricSnapshot merge(List<File> files) throws IOException {
+        MetricSnapshot merged = null;
+        for (File file : files) {
+            MetricSnapshot snapshot = MetricSnapshot.readFrom(file);
+            merged = merged == null ? snapshot : merged.merge(snapshot);
+        }
+        return merged;
+    }
+
+    /**
+     * Print one line per Simon
+     */
+    public static void print(MetricSnapshot snapshot, PrintStream out) {
+        out.println("kind\tname\tcount\tmean\tmin\tmax\tp50\tp90\tp99\tp99.9");
+        for (MetricSnapshot.Entry entry : snapshot.getEntries()) {
+            if (entry.getKind() == MetricSnapshot.COUNTER) {
+                out.println("counter\t" + entry.getName() + "\t" + entry.getCount() + "\t\t" + entry.getMin() + "\t" + entry.getMax());
+            } else {
+                StringBuilder line = new StringBuilder("stopwatch\t").append(entry.getName())
+                    .append('\t').append(entry.getCount())
+                    .append('\t').append(Math.round(entry.getMean()))
+                    .append('\t').append(entry.getMin())
+                    .append('\t').append(entry.getMax());
+                if (entry.hasHistogram()) {
+                    for (double percentile : PERCENTILES) {
+                        line.append('\t').append(entry.getPercentile(percentile));
+                    }
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File outputFile = null;
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outputFile = new File(args[++i]);
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: " + MetricSnapshotMerger.class.getName() + " [-o merged.snapshot] node1.snapshot node2.snapshot...");
+            return;
+        }
+        MetricSnapshot merged = merge(files);
+        print(merged, System.out);
+        if (outputFile != null) {
+            merged.writeTo(outputFile);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.javasimon.tomcat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javasimon.Counter;
+import org.javasimon.SimonManager;
+
+/**
+ * Measures the overhead of {@link SimonValve} and {@link SimonJdbcInterceptor}, and degrades instrumentation
+ * when overhead or system load exceed their budgets, so that monitoring doesn't overload a busy node.
+ * One call out of {@value #MEASURE_PERIOD} is measured: time spent in the valve outside of next valves,
+ * time spent by the interceptor creating statement wrappers, time spent recording executions of lightweight statements,
+ * and request time.
+ * Executions of statements wrapped by JavaSimon JDBC wrappers are not measured: their proxies, Splits and callbacks
+ * run inside JavaSimon, out of reach of this library, so the overhead is underestimated when the interceptor
+ * is not <code>lightweight</code>.
+ * The level is evaluated periodically by {@link SimonListener} scheduler, and moves one step at a time:
+ * <ol start="0">
+ * <li>{@link #FULL}: everything is recorded</li>
+ * <li>{@link #SAMPLED}: only one monitored request out of {@value #DEGRADED_SAMPLE_PERIOD} is recorded</li>
+ * <li>{@link #NO_HISTOGRAMS}: latency histograms are not recorded either</li>
+ * <li>{@link #NO_SQL_WRAPPING}: new statements are not wrapped either</li>
+ * </ol>
+ * The level is restored when overhead and load fall below half and 80% of their budgets.
+ * The current level is kept in the <code>org.javasimon.tomcat.governor.level</code> Counter,
+ * the measured overhead in parts per million in the <code>org.javasimon.tomcat.governor.overheadPpm</code> Counter.
+ *
+ * @author gquintana
+ */
+public final class OverheadGovernor {
+    public static final int FULL = 0;
+    public static final int SAMPLED = 1;
+    public static final int NO_HISTOGRAMS = 2;
+    public static final int NO_SQL_WRAPPING = 3;
+    public static final String LEVEL_NAME = "org.javasimon.tomcat.governor.level";
+    public static final String OVERHEAD_NAME = "org.javasimon.tomcat.governor.overheadPpm";
+    /**
+     * One call out of this period is measured
+     */
+    private static final int MEASURE_PERIOD = 64;
+    /**
+     * One monitored request out of this period is recorded, from {@link #SAMPLED} level
+     */
+    private static final int DEGRADED_SAMPLE_PERIOD = 4;
+    private static final Sampler MEASURE_SAMPLER = new Sampler(1D / MEASURE_PERIOD, 0);
+    private static final Sampler DEGRADED_SAMPLER = new Sampler(1D / DEGRADED_SAMPLE_PERIOD, 0);
+    private static volatile boolean enabled;
+    private static volatile int level = FULL;
+    /**
+     * Measured instrumentation time since last evaluation, in nanoseconds
+     */
+    private static final AtomicLong OVERHEAD_NANOS = new AtomicLong();
+    /**
+     * Measured request time since last evaluation, in nanoseconds
+     */
+    private static final AtomicLong REQUEST_NANOS = new AtomicLong();
+    /**
+     * Maximum fraction of request time spent in instrumentation
+     */
+    private static double overheadBudget = 0.02D;
+    /**
+     * Maximum system load average per processor
+     */
+    private static double loadBudget = 1D;
+    private static Counter levelCounter;
+    private static Counter overheadCounter;
+
+    private OverheadGovernor() {
+    }
+
+    /**
+     * Enable the governor, at full level
+     *
+     * @param newOverheadBudget Maximum fraction of request time spent in instrumentation, like 0.02
+     * @param newLoadBudget Maximum system load average per processor, like 1
+     */
+    public static synchronized void configure(double newOverheadBudget, double newLoadBudget) {
+        overheadBudget = newOverheadBudget;
+        loadBudget = newLoadBudget;
+        levelCounter = SimonManager.getCounter(LEVEL_NAME);
+        overheadCounter = SimonManager.getCounter(OVERHEAD_NAME);
+        OVERHEAD_NANOS.set(0L);
+        REQUEST_NANOS.set(0L);
+        setLevel(FULL);
+        enabled = true;
+    }
+
+    /**
+     * Disable the governor, and restore full level
+     */
+    public static synchronized void disable() {
+        enabled = false;
+        setLevel(FULL);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    private static void setLevel(int newLevel) {
+        level = newLevel;
+        if (levelCounter != null) {
+            levelCounter.set(newLevel);
+        }
+    }
+
+    /**
+     * Decide whether current call overhead should be measured
+     */
+    public static boolean shouldMeasure() {
+        return enabled && MEASURE_SAMPLER.sample() > 0;
+    }
+
+    /**
+     * Record a measured request
+     *
+     * @param overhead Time spent in the valve outside of next valves, in nanoseconds
+     * @param request Request time, in nanoseconds
+     */
+    public static void recordRequest(long overhead, long request) {
+        OVERHEAD_NANOS.addAndGet(overhead);
+        REQUEST_NANOS.addAndGet(request);
+    }
+
+    /**
+     * Record measured instrumentation time spent outside of the valve
+     *
+     * @param overhead Instrumentation time, in nanoseconds
+     */
+    public static void recordOverhead(long overhead) {
+        OVERHEAD_NANOS.addAndGet(overhead);
+    }
+
+    /**
+     * Degrade request sampling, from {@link #SAMPLED} level
+     *
+     * @param weight Weight of the monitored request
+     * @return Scaled weight, 0 if the request should not be recorded
+     */
+    public static int sample(int weight) {
+        if (level < SAMPLED) {
+            return weight;
+        }
+        return weight * DEGRADED_SAMPLER.sample();
+    }
+
+    public static boolean isHistogramsEnabled() {
+        return level < NO_HISTOGRAMS;
+    }
+
+    public static boolean isSqlWrappingEnabled() {
+        return level < NO_SQL_WRAPPING;
+    }
+
+    /**
+     * Compare overhead and load measured since last evaluation with their budgets, and move level one step
+     *
+     * @return New level
+     */
+    public static synchronized int evaluate() {
+        if (!enabled) {
+            return level;
+        }
+        long overhead = OVERHEAD_NANOS.getAndSet(0L);
+        long request = REQUEST_NANOS.getAndSet(0L);
+        double overheadRatio = request == 0L ? 0D : ((double) overhead) / request;
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        // Negative when not available
+        double load = Math.max(0D, operatingSystem.getSystemLoadAverage()) / operatingSystem.getAvailableProcessors();
+        overheadCounter.set(Math.round(overheadRatio * 1000000D));
+        if (overheadRatio > overheadBudget || load > loadBudget) {
+            setLevel(Math.min(level + 1, NO_SQL_WRAPPING));
+        } else if (overheadRatio < overheadBudget / 2D && load < loadBudget * 0.8D) {
+            setLevel(Math.max(level - 1, FULL));
+        }
+        return level;
+    }
+}
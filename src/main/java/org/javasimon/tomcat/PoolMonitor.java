@@ -0,0 +1,165 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Counter;
+import org.javasimon.Manager;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Connection pool Simons, resolved once per Simon name prefix, and again when the manager was cleared.
+ * Fed by {@link SimonJdbcInterceptor} when connections are borrowed and closed:
+ * <ul>
+ * <li><code>pool.borrow</code> Stopwatch: time spent waiting for a connection</li>
+ * <li><code>pool.hold</code> Stopwatch: time a connection is held, from borrow to close</li>
+ * <li><code>pool.statementsPerBorrow</code> Counter: statements executed during the last borrow,
+ * its min and max are those of all borrows</li>
+ * <li><code>pool.statements</code> Counter: statements executed during all borrows,
+ * divided by the <code>pool.hold</code> count it gives the mean per borrow</li>
+ * <li><code>pool.slowBorrowCount</code> Counter: borrows waiting longer than the threshold</li>
+ * <li><code>pool.active</code> and <code>pool.waitCount</code> Counters: pool gauges, set on each borrow</li>
+ * </ul>
+ * Executions are counted per thread, for statements timed by {@link TimedStatement}s and,
+ * as a callback, for SQL Stopwatches stopped by JavaSimon JDBC wrappers.
+ * Executions of statements which are not monitored (sampled out, or not wrapped by the governor) are not counted.
+ *
+ * @author gquintana
+ */
+public class PoolMonitor extends CallbackSkeleton {
+    /**
+     * Simon name prefix of pool Simons, like <code>jdbc.pool.</code>
+     */
+    private final String poolPrefix;
+    /**
+     * Simon name prefix of SQL Stopwatches, like <code>jdbc.sql.</code>
+     */
+    private final String sqlPrefix;
+    /**
+     * Statements executed by each thread
+     */
+    private final ThreadLocal<long[]> executionCounts = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    /**
+     * Pool Simons, resolved again when they were removed from the manager (cleared)
+     */
+    private volatile Simons simons;
+    /**
+     * Borrows waiting longer than this threshold are counted as slow, in milliseconds
+     */
+    private final long slowBorrowThreshold;
+
+    /**
+     * Constructor
+     *
+     * @param prefix Simon name prefix
+     * @param slowBorrowThreshold Slow borrow threshold in milliseconds
+     */
+    public PoolMonitor(String prefix, long slowBorrowThreshold) {
+        this.poolPrefix = prefix + Manager.HIERARCHY_DELIMITER + "pool" + Manager.HIERARCHY_DELIMITER;
+        this.sqlPrefix = prefix + Manager.HIERARCHY_DELIMITER + "sql" + Manager.HIERARCHY_DELIMITER;
+        this.simons = new Simons(poolPrefix);
+        this.slowBorrowThreshold = slowBorrowThreshold;
+    }
+
+    /**
+     * Get pool Simons, checking they are still those of the manager:
+     * once the manager is cleared, Simons resolved before are detached and would silently stop reporting
+     */
+    private Simons getSimons() {
+        Simons currentSimons = simons;
+        if (SimonManager.getSimon(currentSimons.borrowStopwatch.getName()) != currentSimons.borrowStopwatch) {
+            currentSimons = new Simons(poolPrefix);
+            simons = currentSimons;
+        }
+        return currentSimons;
+    }
+
+    /**
+     * Record a connection borrow
+     *
+     * @param waitMillis Time spent waiting for the connection, in milliseconds
+     * @param active Number of active connections
+     * @param waitCount Number of threads waiting for a connection
+     */
+    public void recordBorrow(long waitMillis, int active, int waitCount) {
+        Simons currentSimons = getSimons();
+        currentSimons.borrowStopwatch.addTime(Math.max(0L, waitMillis) * 1000000L);
+        if (waitMillis > slowBorrowThreshold) {
+            currentSimons.slowBorrowCounter.increase();
+        }
+        currentSimons.activeCounter.set(active);
+        currentSimons.waitCounter.set(waitCount);
+    }
+
+    /**
+     * Count a statement execution by current thread
+     */
+    public void countExecution() {
+        executionCounts.get()[0]++;
+    }
+
+    /**
+     * @return Number of statements executed by current thread so far
+     */
+    public long getExecutionCount() {
+        return executionCounts.get()[0];
+    }
+
+    /**
+     * Count executions of statements wrapped by JavaSimon JDBC wrappers
+     */
+    @Override
+    public void onStopwatchStop(Split split) {
+        String name = split.getStopwatch().getName();
+        if (name != null && name.startsWith(sqlPrefix)) {
+            countExecution();
+        }
+    }
+
+    /**
+     * Record a connection close
+     *
+     * @param holdNanos Time the connection was held, in nanoseconds
+     * @param executionCount Number of statements executed while the connection was held, negative when unknown
+     */
+    public void recordClose(long holdNanos, long executionCount) {
+        Simons currentSimons = simons;
+        currentSimons.holdStopwatch.addTime(holdNanos);
+        if (executionCount >= 0L) {
+            currentSimons.statementsPerBorrowCounter.set(executionCount);
+            currentSimons.statementCounter.increase(executionCount);
+        }
+    }
+
+    public long getSlowBorrowThreshold() {
+        return slowBorrowThreshold;
+    }
+
+    /**
+     * Pool Simons, resolved together
+     */
+    private static final class Simons {
+        private final Stopwatch borrowStopwatch;
+        private final Stopwatch holdStopwatch;
+        private final Counter statementsPerBorrowCounter;
+        private final Counter statementCounter;
+        private final Counter slowBorrowCounter;
+        private final Counter activeCounter;
+        private final Counter waitCounter;
+
+        private Simons(String poolPrefix) {
+            this.borrowStopwatch = SimonManager.getStopwatch(poolPrefix + "borrow");
+            this.holdStopwatch = SimonManager.getStopwatch(poolPrefix + "hold");
+            this.statementsPerBorrowCounter = SimonManager.getCounter(poolPrefix + "statementsPerBorrow");
+            this.statementCounter = SimonManager.getCounter(poolPrefix + "statements");
+            this.slowBorrowCounter = SimonManager.getCounter(poolPrefix + "slowBorrowCount");
+            this.activeCounter = SimonManager.getCounter(poolPrefix + "active");
+            this.waitCounter = SimonManager.getCounter(poolPrefix + "waitCount");
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.javasimon.tomcat;
+
+import java.util.Arrays;
+
+/**
+ * Database activity of the HTTP request being processed by current thread.
+ * Started and ended by {@link SimonValve}, charged by {@link SimonJdbcInterceptor} for each statement execution.
+ * Contexts are reused by each thread, so that nothing is allocated per request.
+ * Repeated executions of the same statement are counted to detect N+1 query patterns:
+ * statements are identified by their Stopwatch, tracked in a small open addressing table.
+ *
+ * @author gquintana
+ */
+final class RequestContext {
+    /**
+     * Size of statement table, power of 2
+     */
+    private static final int SLOT_COUNT = 64;
+    /**
+     * Maximum number of distinct statements tracked per request
+     */
+    private static final int MAX_USED_SLOTS = SLOT_COUNT * 3 / 4;
+    /**
+     * Context of current thread, null until a request is processed by this thread
+     */
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<RequestContext>();
+    /**
+     * Request being processed?
+     */
+    private boolean active;
+    /**
+     * Time spent executing statements, in nanoseconds
+     */
+    private long dbNanos;
+    /**
+     * Number of statement executions
+     */
+    private int dbCalls;
+    /**
+     * Highest number of executions of the same statement
+     */
+    private int maxRepeatCount;
+    /**
+     * Statement table: statement keys and execution counts
+     */
+    private final Object[] statementKeys = new Object[SLOT_COUNT];
+    private final int[] statementCounts = new int[SLOT_COUNT];
+    private int usedSlots;
+
+    /**
+     * Start collecting database activity for the request processed by current thread
+     *
+     * @return Context of current thread
+     */
+    static RequestContext begin() {
+        RequestContext requestContext = CURRENT.get();
+        if (requestContext == null) {
+            requestContext = new RequestContext();
+            CURRENT.set(requestContext);
+        }
+        requestContext.clear();
+        requestContext.active = true;
+        return requestContext;
+    }
+
+    /**
+     * Stop collecting database activity, collected values can still be read
+     */
+    void end() {
+        active = false;
+    }
+
+    private void clear() {
+        dbNanos = 0L;
+        dbCalls = 0;
+        maxRepeatCount = 0;
+        if (usedSlots > 0) {
+            Arrays.fill(statementKeys, null);
+            Arrays.fill(statementCounts, 0);
+            usedSlots = 0;
+        }
+    }
+
+    /**
+     * Charge a statement execution to the request processed by current thread, if any
+     *
+     * @param statementKey Statement identifier, compared by identity
+     * @param ns Execution duration in nanoseconds
+     */
+    static void chargeStatement(Object statementKey, long ns) {
+        RequestContext requestContext = CURRENT.get();
+        if (requestContext != null && requestContext.active) {
+            requestContext.charge(statementKey, ns);
+        }
+    }
+
+    /**
+     * @return Time spent in database by the request processed by current thread, -1 if not collected
+     */
+    static long getCurrentDbNanos() {
+        RequestContext requestContext = CURRENT.get();
+        return requestContext != null && requestContext.active ? requestContext.dbNanos : -1L;
+    }
+
+    private void charge(Object statementKey, long ns) {
+        dbNanos += ns;
+        dbCalls++;
+        int slot = System.identityHashCode(statementKey) & (SLOT_COUNT - 1);
+        while (statementKeys[slot] != null && statementKeys[slot] != statementKey) {
+            slot = (slot + 1) & (SLOT_COUNT - 1);
+        }
+        if (statementKeys[slot] == null) {
+            if (usedSlots >= MAX_USED_SLOTS) {
+                return;
+            }
+            statementKeys[slot] = statementKey;
+            usedSlots++;
+        }
+        int count = ++statementCounts[slot];
+        if (count > maxRepeatCount) {
+            maxRepeatCount = count;
+        }
+    }
+
+    public long getDbNanos() {
+        return dbNanos;
+    }
+
+    public int getDbCalls() {
+        return dbCalls;
+    }
+
+    public int getMaxRepeatCount() {
+        return maxRepeatCount;
+    }
+}
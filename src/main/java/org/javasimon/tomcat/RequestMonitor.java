@@ -0,0 +1,202 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Counter;
+import org.javasimon.Stopwatch;
+
+/**
+ * Monitoring state resolved once for a request URI.
+ * Produced and cached by {@link TomcatRequestStopwatchSource} so that
+ * the valve doesn't compute Simon names on each request.
+ * Optional parts are set by the stopwatch source before the monitor is cached, and never changed afterwards.
+ *
+ * @author gquintana
+ */
+public class RequestMonitor {
+    /**
+     * Shared marker for URIs which are not monitored
+     */
+    public static final RequestMonitor NOT_MONITORED = new RequestMonitor(null);
+    /**
+     * Stopwatch, null when not monitored
+     */
+    private final Stopwatch stopwatch;
+    /**
+     * Stopwatch accumulator, null when splits are used
+     */
+    private StopwatchAccumulator accumulator;
+    /**
+     * Striped Stopwatch, null unless striped recording is enabled
+     */
+    private StripedStopwatch stripedStopwatch;
+    /**
+     * Latency histogram, null when disabled
+     */
+    private LatencyHistogram histogram;
+    /**
+     * Rolling window statistics, null when disabled
+     */
+    private RollingStatistics rollingStatistics;
+    /**
+     * Estimated number of requests, when sampling is enabled
+     */
+    private Counter sampledCounter;
+    /**
+     * Database activity monitor, null when SQL attribution is disabled
+     */
+    private DbMonitor dbMonitor;
+    /**
+     * Stopwatches per status class, indexed by status class minus 2 (2xx to 5xx), null when disabled
+     */
+    private Stopwatch[] statusStopwatches;
+    /**
+     * Number of requests which failed with an exception, null when status classes are disabled
+     */
+    private Counter exceptionCounter;
+
+    /**
+     * Constructor
+     *
+     * @param stopwatch Stopwatch, null when not monitored
+     */
+    public RequestMonitor(Stopwatch stopwatch) {
+        this.stopwatch = stopwatch;
+    }
+
+    /**
+     * @return Monitored or not?
+     */
+    public boolean isMonitored() {
+        return stopwatch != null;
+    }
+
+    public Stopwatch getStopwatch() {
+        return stopwatch;
+    }
+
+    public StopwatchAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    void setAccumulator(StopwatchAccumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    public StripedStopwatch getStripedStopwatch() {
+        return stripedStopwatch;
+    }
+
+    void setStripedStopwatch(StripedStopwatch stripedStopwatch) {
+        this.stripedStopwatch = stripedStopwatch;
+    }
+
+    /**
+     * @return Durations are recorded without splits, by an accumulator or a striped Stopwatch?
+     */
+    public boolean isAccumulated() {
+        return accumulator != null || stripedStopwatch != null;
+    }
+
+    /**
+     * Record request duration without split, in the striped Stopwatch or else in the accumulator
+     *
+     * @param ns Request duration in nanoseconds
+     */
+    public void accumulate(long ns) {
+        if (stripedStopwatch != null) {
+            stripedStopwatch.record(ns);
+        } else {
+            accumulator.add(ns);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    void setHistogram(LatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    public RollingStatistics getRollingStatistics() {
+        return rollingStatistics;
+    }
+
+    void setRollingStatistics(RollingStatistics rollingStatistics) {
+        this.rollingStatistics = rollingStatistics;
+    }
+
+    public Counter getSampledCounter() {
+        return sampledCounter;
+    }
+
+    void setSampledCounter(Counter sampledCounter) {
+        this.sampledCounter = sampledCounter;
+    }
+
+    public DbMonitor getDbMonitor() {
+        return dbMonitor;
+    }
+
+    void setDbMonitor(DbMonitor dbMonitor) {
+        this.dbMonitor = dbMonitor;
+    }
+
+    /**
+     * @return Status classes monitored or not?
+     */
+    public boolean isStatusMonitored() {
+        return statusStopwatches != null;
+    }
+
+    void setStatusMonitors(Stopwatch[] statusStopwatches, Counter exceptionCounter) {
+        this.statusStopwatches = statusStopwatches;
+        this.exceptionCounter = exceptionCounter;
+    }
+
+    /**
+     * Record request duration in the Stopwatch of its status class, other statuses are ignored
+     *
+     * @param status HTTP status
+     * @param ns Request duration in nanoseconds
+     */
+    public void recordStatus(int status, long ns) {
+        int index = status / 100 - 2;
+        if (statusStopwatches != null && index >= 0 && index < statusStopwatches.length && statusStopwatches[index] != null) {
+            statusStopwatches[index].addTime(ns);
+        }
+    }
+
+    /**
+     * Count a request which failed with an exception
+     */
+    public void recordException() {
+        if (exceptionCounter != null) {
+            exceptionCounter.increase();
+        }
+    }
+
+    /**
+     * Count a sampled request
+     *
+     * @param weight Number of requests the sampled request stands for
+     */
+    public void recordSample(int weight) {
+        if (sampledCounter != null) {
+            sampledCounter.increase(weight);
+        }
+    }
+
+    /**
+     * Record request duration in optional parts: histogram, rolling windows
+     *
+     * @param ns Request duration in nanoseconds
+     */
+    public void record(long ns) {
+        if (histogram != null && OverheadGovernor.isHistogramsEnabled()) {
+            histogram.record(ns);
+        }
+        if (rollingStatistics != null) {
+            rollingStatistics.record(ns);
+        }
+    }
+}
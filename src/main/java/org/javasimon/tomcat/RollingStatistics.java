@@ -0,0 +1,107 @@
+package org.javasimon.tomcat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Duration statistics over a rolling time window.
+ * Durations are recorded in the current bucket of a ring of per-interval buckets,
+ * the ring is rotated at the end of each interval by {@link #rotate()}.
+ * Recording is lock-free, windows are computed from the most recent completed buckets.
+ *
+ * @author gquintana
+ */
+public class RollingStatistics {
+    /**
+     * Number of values per bucket: count, total, min, max
+     */
+    private static final int BUCKET_SIZE = 4;
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    /**
+     * Number of buckets in the ring
+     */
+    private final int bucketCount;
+    /**
+     * Bucket values
+     */
+    private final AtomicLongArray buckets;
+    /**
+     * Index of current bucket
+     */
+    private volatile int currentBucket;
+
+    /**
+     * Constructor
+     *
+     * @param intervalCount Number of intervals of the largest window
+     */
+    public RollingStatistics(int intervalCount) {
+        this.bucketCount = intervalCount + 1;
+        this.buckets = new AtomicLongArray(bucketCount * BUCKET_SIZE);
+        for (int i = 0; i < bucketCount; i++) {
+            resetBucket(i);
+        }
+    }
+
+    private void resetBucket(int bucket) {
+        int offset = bucket * BUCKET_SIZE;
+        buckets.set(offset + COUNT, 0L);
+        buckets.set(offset + TOTAL, 0L);
+        buckets.set(offset + MIN, Long.MAX_VALUE);
+        buckets.set(offset + MAX, 0L);
+    }
+
+    /**
+     * Record a duration in current bucket
+     *
+     * @param ns Duration in nanoseconds
+     */
+    public void record(long ns) {
+        int offset = currentBucket * BUCKET_SIZE;
+        buckets.incrementAndGet(offset + COUNT);
+        buckets.addAndGet(offset + TOTAL, ns);
+        long min = buckets.get(offset + MIN);
+        while (ns < min && !buckets.compareAndSet(offset + MIN, min, ns)) {
+            min = buckets.get(offset + MIN);
+        }
+        long max = buckets.get(offset + MAX);
+        while (ns > max && !buckets.compareAndSet(offset + MAX, max, ns)) {
+            max = buckets.get(offset + MAX);
+        }
+    }
+
+    /**
+     * End current interval: oldest bucket is emptied and becomes the current one.
+     * Should be called by a single thread.
+     */
+    public void rotate() {
+        int nextBucket = (currentBucket + 1) % bucketCount;
+        resetBucket(nextBucket);
+        currentBucket = nextBucket;
+    }
+
+    /**
+     * Compute statistics over the last completed intervals
+     *
+     * @param name Simon name
+     * @param intervalCount Number of intervals, current one excluded
+     * @param intervalSeconds Interval duration in seconds
+     * @return Window statistics
+     */
+    public WindowSample sample(String name, int intervalCount, long intervalSeconds) {
+        int intervals = Math.min(intervalCount, bucketCount - 1);
+        long count = 0L, total = 0L, min = Long.MAX_VALUE, max = 0L;
+        int bucket = currentBucket;
+        for (int i = 0; i < intervals; i++) {
+            bucket = (bucket + bucketCount - 1) % bucketCount;
+            int offset = bucket * BUCKET_SIZE;
+            count += buckets.get(offset + COUNT);
+            total += buckets.get(offset + TOTAL);
+            min = Math.min(min, buckets.get(offset + MIN));
+            max = Math.max(max, buckets.get(offset + MAX));
+        }
+        return new WindowSample(name, intervals * intervalSeconds, count, total, count == 0L ? 0L : min, max);
+    }
+}
@@ -0,0 +1,31 @@
+package org.javasimon.tomcat;
+
+/**
+ * JMX interface exposing rolling window statistics.
+ *
+ * @author gquintana
+ */
+public interface RollingWindowMXBean {
+    /**
+     * @return Simon names having rolling statistics
+     */
+    String[] getNames();
+
+    /**
+     * @return Interval duration in seconds
+     */
+    long getIntervalSeconds();
+
+    /**
+     * @return Windows, in number of intervals
+     */
+    int[] getWindows();
+
+    /**
+     * Compute all windows of given Simon
+     *
+     * @param name Simon name
+     * @return Window statistics
+     */
+    WindowSample[] sample(String name);
+}
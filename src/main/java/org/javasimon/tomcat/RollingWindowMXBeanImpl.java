@@ -0,0 +1,27 @@
+package org.javasimon.tomcat;
+
+import java.util.List;
+
+/**
+ * JMX bean exposing {@link RollingWindows}.
+ *
+ * @author gquintana
+ */
+public class RollingWindowMXBeanImpl implements RollingWindowMXBean {
+    public String[] getNames() {
+        List<String> names = RollingWindows.getNames();
+        return names.toArray(new String[names.size()]);
+    }
+
+    public long getIntervalSeconds() {
+        return RollingWindows.getIntervalSeconds();
+    }
+
+    public int[] getWindows() {
+        return RollingWindows.getWindows();
+    }
+
+    public WindowSample[] sample(String name) {
+        return RollingWindows.sample(name);
+    }
+}
@@ -0,0 +1,120 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of rolling window statistics, indexed by Simon name.
+ * Filled by {@link SimonValve} when rolling windows are enabled,
+ * rotated by {@link SimonListener} scheduler and read through {@link RollingWindowMXBean}.
+ *
+ * @author gquintana
+ */
+public final class RollingWindows {
+    /**
+     * Statistics by Simon name
+     */
+    private static final ConcurrentMap<String, RollingStatistics> STATISTICS = new ConcurrentHashMap<String, RollingStatistics>();
+    /**
+     * Interval duration in seconds
+     */
+    private static volatile long intervalSeconds = 60L;
+    /**
+     * Windows, in number of intervals
+     */
+    private static volatile int[] windows = {1, 5, 15};
+
+    private RollingWindows() {
+    }
+
+    /**
+     * Change windows, existing statistics keep their number of buckets
+     *
+     * @param newIntervalSeconds Interval duration in seconds
+     * @param newWindows Windows, in number of intervals
+     */
+    public static synchronized void configure(long newIntervalSeconds, int[] newWindows) {
+        intervalSeconds = newIntervalSeconds;
+        windows = newWindows.clone();
+    }
+
+    public static long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public static int[] getWindows() {
+        return windows.clone();
+    }
+
+    /**
+     * Get or create the rolling statistics of given Simon
+     *
+     * @param name Simon name
+     * @return Statistics
+     */
+    public static RollingStatistics getStatistics(String name) {
+        RollingStatistics statistics = STATISTICS.get(name);
+        if (statistics == null) {
+            int maxWindow = 1;
+            for (int window : windows) {
+                maxWindow = Math.max(maxWindow, window);
+            }
+            RollingStatistics newStatistics = new RollingStatistics(maxWindow);
+            statistics = STATISTICS.putIfAbsent(name, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Get the rolling statistics of given Simon
+     *
+     * @param name Simon name
+     * @return Statistics or null if none
+     */
+    public static RollingStatistics findStatistics(String name) {
+        return STATISTICS.get(name);
+    }
+
+    /**
+     * @return Sorted Simon names having rolling statistics
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<String>(STATISTICS.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * End current interval of all statistics
+     */
+    public static void rotate() {
+        for (RollingStatistics statistics : STATISTICS.values()) {
+            statistics.rotate();
+        }
+    }
+
+    /**
+     * Compute all windows of given Simon
+     *
+     * @param name Simon name
+     * @return Window statistics, empty when there are no rolling statistics
+     */
+    public static WindowSample[] sample(String name) {
+        RollingStatistics statistics = STATISTICS.get(name);
+        if (statistics == null) {
+            return new WindowSample[0];
+        }
+        int[] currentWindows = windows;
+        WindowSample[] samples = new WindowSample[currentWindows.length];
+        for (int i = 0; i < currentWindows.length; i++) {
+            samples[i] = statistics.sample(name, currentWindows[i], intervalSeconds);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,102 @@
+package org.javasimon.tomcat;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which calls are monitored, so that only one call out of N is timed.
+ * The decision is a per call random draw from a thread local generator, so that periodic call patterns
+ * (like a thread serving the same URIs in turn) don't alias with the sampling period.
+ * Shared state is only touched by sampled calls.
+ * Each sampled call stands for N calls: its weight should be used to scale counts.
+ * <ul>
+ * <li>Rate: fixed N, 0.1 means one call out of 10</li>
+ * <li>Budget: N is adjusted every second so that about budget calls are sampled per second</li>
+ * </ul>
+ *
+ * @author gquintana
+ */
+public class Sampler {
+    /**
+     * Minimum sampling period, deduced from rate
+     */
+    private final int minPeriod;
+    /**
+     * Maximum number of sampled calls per second, 0 means no budget
+     */
+    private final int budget;
+    /**
+     * Current sampling period: one call out of period is sampled
+     */
+    private volatile int period;
+    /**
+     * Second of current budget period
+     */
+    private final AtomicLong budgetSecond = new AtomicLong();
+    /**
+     * Number of sampled calls during current budget period
+     */
+    private final AtomicLong budgetSampledCount = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param rate Sampling rate between 0 (excluded) and 1
+     * @param budget Maximum number of sampled calls per second, 0 means no budget
+     */
+    public Sampler(double rate, int budget) {
+        if (rate <= 0D || rate > 1D) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.minPeriod = (int) Math.max(1L, Math.round(1D / rate));
+        this.budget = Math.max(0, budget);
+        this.period = minPeriod;
+    }
+
+    /**
+     * Decide whether current call should be monitored
+     *
+     * @return Weight of the call (number of calls it stands for), 0 if it should not be monitored
+     */
+    public int sample() {
+        int weight = period;
+        if (weight > 1 && ThreadLocalRandom.current().nextInt(weight) != 0) {
+            return 0;
+        }
+        if (budget > 0) {
+            adjustPeriod(weight);
+        }
+        return weight;
+    }
+
+    /**
+     * Adjust sampling period to budget, once per second
+     */
+    private void adjustPeriod(int weight) {
+        long second = System.currentTimeMillis() / 1000L;
+        long currentSecond = budgetSecond.get();
+        budgetSampledCount.addAndGet(weight);
+        if (second != currentSecond && budgetSecond.compareAndSet(currentSecond, second)) {
+            long callCount = budgetSampledCount.getAndSet(0L) / Math.max(1L, second - currentSecond);
+            period = (int) Math.max(minPeriod, Math.min(Integer.MAX_VALUE, (callCount + budget - 1) / budget));
+        }
+    }
+
+    /**
+     * @return Current sampling period: one call out of period is sampled
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return Sampling rate deduced from configuration
+     */
+    public double getRate() {
+        return 1D / minPeriod;
+    }
+}
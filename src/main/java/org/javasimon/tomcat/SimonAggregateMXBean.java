@@ -0,0 +1,60 @@
+package org.javasimon.tomcat;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * JMX interface exposing all Simons through a single MBean, instead of one MBean per Simon.
+ * Large Simon sets are read page by page, and per Simon MBeans are only registered
+ * for the Stopwatches and Counters returned by queries, or on demand.
+ *
+ * @author gquintana
+ */
+public interface SimonAggregateMXBean {
+    /**
+     * @return Number of Simons
+     */
+    int getSimonCount();
+
+    /**
+     * List Simon names, sorted
+     *
+     * @param prefix Simon name prefix, empty for all
+     * @param offset Index of first name
+     * @param limit Maximum number of names
+     * @return Page of Simon names
+     */
+    String[] getSimonNames(String prefix, int offset, int limit);
+
+    /**
+     * Sample Stopwatches, sorted by name
+     *
+     * @param prefix Simon name prefix, empty for all
+     * @param offset Index of first Stopwatch
+     * @param limit Maximum number of Stopwatches
+     * @return Table of Stopwatch samples indexed by name: count, total, min, max, mean, active
+     */
+    TabularData getStopwatches(String prefix, int offset, int limit);
+
+    /**
+     * Sample Counters, sorted by name
+     *
+     * @param prefix Simon name prefix, empty for all
+     * @param offset Index of first Counter
+     * @param limit Maximum number of Counters
+     * @return Table of Counter samples indexed by name: counter, min, max
+     */
+    TabularData getCounters(String prefix, int offset, int limit);
+
+    /**
+     * Register the MBean of a Simon, like {@link org.javasimon.jmx.JmxRegisterCallback} does for all Simons
+     *
+     * @param name Simon name
+     * @return MBean object name, null if there is no such Simon
+     */
+    String registerSimon(String name);
+
+    /**
+     * @return Number of Simon MBeans registered on demand
+     */
+    int getRegisteredSimonCount();
+}
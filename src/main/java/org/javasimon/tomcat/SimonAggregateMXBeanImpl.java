@@ -0,0 +1,257 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.javasimon.callback.CallbackSkeleton;
+import org.javasimon.jmx.CounterMXBeanImpl;
+import org.javasimon.jmx.StopwatchMXBeanImpl;
+
+/**
+ * JMX bean exposing all Simons of a manager, see {@link SimonAggregateMXBean}.
+ * Samples are built only for the requested page, from a sorted index of Simon names.
+ * The MBeans of the Simons returned by queries are registered on demand.
+ * Must be registered as a callback of the manager, which keeps the index and the MBeans
+ * up to date when Simons are created, destroyed or cleared.
+ *
+ * @author gquintana
+ */
+public class SimonAggregateMXBeanImpl extends CallbackSkeleton implements SimonAggregateMXBean {
+    private static final String[] STOPWATCH_ITEMS = {"name", "count", "total", "min", "max", "mean", "active"};
+    private static final String[] COUNTER_ITEMS = {"name", "counter", "min", "max"};
+    private static final TabularType STOPWATCH_TABLE_TYPE;
+    private static final TabularType COUNTER_TABLE_TYPE;
+
+    static {
+        try {
+            CompositeType stopwatchType = new CompositeType("StopwatchSample", "Stopwatch sample", STOPWATCH_ITEMS, STOPWATCH_ITEMS,
+                new OpenType<?>[]{SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE, SimpleType.LONG});
+            STOPWATCH_TABLE_TYPE = new TabularType("Stopwatches", "Stopwatch samples", stopwatchType, new String[]{"name"});
+            CompositeType counterType = new CompositeType("CounterSample", "Counter sample", COUNTER_ITEMS, COUNTER_ITEMS,
+                new OpenType<?>[]{SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            COUNTER_TABLE_TYPE = new TabularType("Counters", "Counter samples", counterType, new String[]{"name"});
+        } catch (OpenDataException openDataException) {
+            throw new IllegalStateException(openDataException);
+        }
+    }
+
+    private final Manager manager;
+    private final MBeanServer mBeanServer;
+    /**
+     * JMX domain of Simon MBeans
+     */
+    private final String domain;
+    /**
+     * Simon names, sorted
+     */
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<String>();
+    /**
+     * Simon MBeans registered on demand, by Simon name
+     */
+    private final ConcurrentMap<String, ObjectName> registeredSimons = new ConcurrentHashMap<String, ObjectName>();
+
+    /**
+     * Constructor
+     *
+     * @param manager Simon manager
+     * @param mBeanServer MBean server used to register Simon MBeans on demand
+     * @param domain JMX domain of Simon MBeans, like <code>org.javasimon</code>
+     */
+    public SimonAggregateMXBeanImpl(Manager manager, MBeanServer mBeanServer, String domain) {
+        this.manager = manager;
+        this.mBeanServer = mBeanServer;
+        this.domain = domain;
+        names.addAll(manager.getSimonNames());
+    }
+
+    @Override
+    public void onSimonCreated(Simon simon) {
+        if (simon.getName() != null) {
+            names.add(simon.getName());
+        }
+    }
+
+    @Override
+    public void onSimonDestroyed(Simon simon) {
+        if (simon.getName() != null) {
+            names.remove(simon.getName());
+            unregisterSimon(simon.getName());
+        }
+    }
+
+    @Override
+    public void onManagerClear() {
+        names.clear();
+        unregisterSimons();
+        names.addAll(manager.getSimonNames());
+    }
+
+    public int getSimonCount() {
+        return names.size();
+    }
+
+    /**
+     * Simon names having given prefix, sorted, read from the index without copy
+     */
+    private Iterable<String> getSortedNames(String prefix) {
+        return prefix == null || prefix.isEmpty() ? names : names.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    public String[] getSimonNames(String prefix, int offset, int limit) {
+        List<String> page = new ArrayList<String>();
+        int index = 0;
+        for (String name : getSortedNames(prefix)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (index++ >= offset) {
+                page.add(name);
+            }
+        }
+        return page.toArray(new String[page.size()]);
+    }
+
+    public TabularData getStopwatches(String prefix, int offset, int limit) {
+        TabularDataSupport table = new TabularDataSupport(STOPWATCH_TABLE_TYPE);
+        int index = 0;
+        for (String name : getSortedNames(prefix)) {
+            if (table.size() >= limit) {
+                break;
+            }
+            Simon simon = manager.getSimon(name);
+            if (simon instanceof Stopwatch && index++ >= offset) {
+                // Consistent values, read at once
+                StopwatchSample sample = ((Stopwatch) simon).sample();
+                table.put(createCompositeData(STOPWATCH_TABLE_TYPE.getRowType(), STOPWATCH_ITEMS, new Object[]{
+                    name, sample.getCounter(), sample.getTotal(), sample.getMin(), sample.getMax(), sample.getMean(), sample.getActive()}));
+                registerQueriedSimon(name, simon);
+            }
+        }
+        return table;
+    }
+
+    public TabularData getCounters(String prefix, int offset, int limit) {
+        TabularDataSupport table = new TabularDataSupport(COUNTER_TABLE_TYPE);
+        int index = 0;
+        for (String name : getSortedNames(prefix)) {
+            if (table.size() >= limit) {
+                break;
+            }
+            Simon simon = manager.getSimon(name);
+            if (simon instanceof Counter && index++ >= offset) {
+                CounterSample sample = ((Counter) simon).sample();
+                table.put(createCompositeData(COUNTER_TABLE_TYPE.getRowType(), COUNTER_ITEMS, new Object[]{
+                    name, sample.getCounter(), sample.getMin(), sample.getMax()}));
+                registerQueriedSimon(name, simon);
+            }
+        }
+        return table;
+    }
+
+    private static CompositeDataSupport createCompositeData(CompositeType compositeType, String[] items, Object[] values) {
+        try {
+            return new CompositeDataSupport(compositeType, items, values);
+        } catch (OpenDataException openDataException) {
+            throw new IllegalStateException(openDataException);
+        }
+    }
+
+    public String registerSimon(String name) {
+        Simon simon = manager.getSimon(name);
+        try {
+            ObjectName objectName = register(name, simon);
+            return objectName == null ? null : objectName.toString();
+        } catch (JMException jmException) {
+            throw new IllegalArgumentException("Simon " + name + " MBean registration failed: " + jmException.getMessage());
+        }
+    }
+
+    /**
+     * Register the MBean of a Simon returned by a query, failures are ignored: the sample was returned anyway
+     */
+    private void registerQueriedSimon(String name, Simon simon) {
+        if (!registeredSimons.containsKey(name)) {
+            try {
+                register(name, simon);
+            } catch (JMException jmException) {
+                // Not registered, can still be read from this MBean
+            }
+        }
+    }
+
+    /**
+     * Register the MBean of a Simon, unless already registered
+     *
+     * @return MBean object name, null if the Simon is neither a Stopwatch nor a Counter
+     */
+    private ObjectName register(String name, Simon simon) throws JMException {
+        Object mBean;
+        String type;
+        if (simon instanceof Stopwatch) {
+            mBean = new StopwatchMXBeanImpl((Stopwatch) simon);
+            type = "Stopwatch";
+        } else if (simon instanceof Counter) {
+            mBean = new CounterMXBeanImpl((Counter) simon);
+            type = "Counter";
+        } else {
+            return null;
+        }
+        ObjectName objectName = new ObjectName(domain + ":type=" + type + ",name=" + name);
+        if (!mBeanServer.isRegistered(objectName)) {
+            mBeanServer.registerMBean(mBean, objectName);
+            registeredSimons.put(name, objectName);
+        }
+        return objectName;
+    }
+
+    public int getRegisteredSimonCount() {
+        return registeredSimons.size();
+    }
+
+    /**
+     * Unregister the MBean of a Simon, if it was registered on demand
+     */
+    private void unregisterSimon(String name) {
+        ObjectName objectName = registeredSimons.remove(name);
+        if (objectName != null) {
+            try {
+                if (mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+            } catch (JMException jmException) {
+                // Already unregistered
+            }
+        }
+    }
+
+    /**
+     * Unregister Simon MBeans registered on demand
+     */
+    public void unregisterSimons() {
+        for (String name : registeredSimons.keySet()) {
+            unregisterSimon(name);
+        }
+    }
+}
@@ -4,24 +4,44 @@ import org.apache.tomcat.jdbc.pool.ConnectionPool;
 import org.apache.tomcat.jdbc.pool.JdbcInterceptor;
 import org.apache.tomcat.jdbc.pool.PoolProperties.InterceptorProperty;
 import org.apache.tomcat.jdbc.pool.PooledConnection;
+import org.javasimon.Counter;
+import org.javasimon.Manager;
+import org.javasimon.SimonManager;
+import org.javasimon.callback.Callback;
 import org.javasimon.jdbc4.SimonCallableStatement;
 import org.javasimon.jdbc4.SimonPreparedStatement;
 import org.javasimon.jdbc4.SimonStatement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Tomcat JDBC connection pool interceptor.
  * Monitors JDBC statement duration. Requires Tomcat 7.
+ * By default, statements are wrapped by JavaSimon JDBC wrappers, prepared and callable statements are named
+ * after the SQL fingerprint. With <code>fingerprintBasicStatements</code>, basic statements are wrapped by
+ * {@link TimedStatement}s instead, so that the SQL given on each execution is fingerprinted too.
+ * In lightweight mode, statements are wrapped by {@link TimedStatement}s which only time <code>execute*</code> methods.
  *
  * @author gquintana
  */
@@ -30,29 +50,170 @@ public class SimonJdbcInterceptor extends JdbcInterceptor {
      * Logger
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(SimonJdbcInterceptor.class);
+    /**
+     * Set once a wrapper constructor failure was logged
+     */
+    private static final AtomicBoolean WRAPPER_FAILURE_LOGGED = new AtomicBoolean();
     /**
      * Simon name prefix
      */
     private String prefix = "org.javasimon.tomcat.sql";
     /**
-     * Statement replacers list
+     * Simon name prefix of SQL Stopwatches, computed once from the prefix
+     */
+    private String sqlPrefix = getSqlPrefix(prefix);
+    /**
+     * Number of started pools, by Simon name prefix.
+     * Callbacks are global, they are removed when the last pool having their prefix is closed.
+     */
+    private static final Map<String, Integer> STARTED_POOL_COUNTS = new HashMap<String, Integer>();
+    /**
+     * Histogram callbacks registered so far, by Simon name prefix.
+     * Interceptors are instantiated for each connection, callbacks are registered once.
+     */
+    private static final ConcurrentMap<String, HistogramCallback> HISTOGRAM_CALLBACKS = new ConcurrentHashMap<String, HistogramCallback>();
+    /**
+     * SQL attribution callbacks registered so far, by Simon name prefix.
+     * Only registered when the <code>sqlAttribution</code> property is set, in wrapper mode.
+     */
+    private static final ConcurrentMap<String, SqlAttributionCallback> SQL_ATTRIBUTION_CALLBACKS = new ConcurrentHashMap<String, SqlAttributionCallback>();
+    /**
+     * Charge statement executions to the current HTTP request, see {@link RequestContext}
+     */
+    private boolean sqlAttribution;
+    /**
+     * Record statement durations into latency histograms
+     */
+    private boolean histograms;
+    /**
+     * Statement samplers, by Simon name prefix.
+     * Interceptors are instantiated for each connection, samplers are shared.
+     */
+    private static final ConcurrentMap<String, Sampler> SAMPLERS = new ConcurrentHashMap<String, Sampler>();
+    /**
+     * Statement sampler, null when all statements are monitored
+     */
+    private Sampler sampler;
+    /**
+     * Counter of the estimated statement count, resolved along with the sampler
+     */
+    private Counter sampledCounter;
+    /**
+     * Wrapper used for connection methods which don't create statements
+     */
+    private static final AbstractStatementWrapper<Statement> NO_STATEMENT_WRAPPER = new AbstractStatementWrapper<Statement>(Statement.class) {
+        @Override
+        public boolean matches(Object result) {
+            return false;
+        }
+
+        @Override
+        public Statement wrap(SimonJdbcInterceptor interceptor, Connection connection, String sql, Statement statement) {
+            return statement;
+        }
+
+        @Override
+        public Statement time(SimonJdbcInterceptor interceptor, String sql, Statement statement) {
+            return statement;
+        }
+    };
+    /**
+     * Maximum number of methods in {@link #statementWrappersByMethod}
+     */
+    private static final int MAX_CACHED_METHODS = 256;
+    /**
+     * Statement wrapper by connection method, copied on write.
+     * Methods invoked through connection proxies are always the same instances,
+     * so that method dispatch is resolved once for each of them.
+     */
+    private static volatile Map<Method, AbstractStatementWrapper<?>> statementWrappersByMethod = new IdentityHashMap<Method, AbstractStatementWrapper<?>>();
+    /**
+     * Default maximum number of cached SQL fingerprints
+     */
+    public static final int DEFAULT_FINGERPRINT_CACHE_SIZE = 1000;
+    /**
+     * SQL fingerprinters, by Simon name prefix and cache size.
+     * Interceptors are instantiated for each connection, fingerprint caches are shared.
      */
-    private final AbstractStatementWrapper[] statementWrappers;
+    private static final ConcurrentMap<String, SqlFingerprinter> SQL_FINGERPRINTERS = new ConcurrentHashMap<String, SqlFingerprinter>();
+    /**
+     * SQL fingerprinter, resolved on first use
+     */
+    private SqlFingerprinter sqlFingerprinter;
+    /**
+     * Time statement executions with {@link TimedStatement}s instead of JavaSimon JDBC wrappers
+     */
+    private boolean lightweight;
+    /**
+     * Time basic statements with {@link TimedStatement}s, named after the fingerprint of the SQL given on each execution,
+     * instead of JavaSimon JDBC wrappers, even when not lightweight
+     */
+    private boolean fingerprintBasicStatements;
+    /**
+     * Maximum number of SQL monitors kept by each connection, for {@link TimedStatement}s
+     */
+    private static final int MAX_SQL_MONITORS = 128;
+    /**
+     * SQL monitors by raw SQL query, for {@link TimedStatement}s.
+     * Monitors are named after the SQL fingerprint.
+     * Not synchronized: interceptors are instantiated for each connection, and this map is only used
+     * by the connection and its statements. Like JDBC connections, they must not be used by several threads at a time,
+     * which the pool guarantees between borrow and close.
+     */
+    private final Map<String, SqlMonitor> sqlMonitors = new LinkedHashMap<String, SqlMonitor>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlMonitor> eldest) {
+            return size() > MAX_SQL_MONITORS;
+        }
+    };
+    /**
+     * SQL monitor for batches of basic statements, for {@link TimedStatement}s
+     */
+    private SqlMonitor batchSqlMonitor;
+    /**
+     * Default slow borrow threshold, in milliseconds
+     */
+    public static final long DEFAULT_SLOW_BORROW_THRESHOLD = 100L;
+    /**
+     * Pool monitors, by Simon name prefix, registered as callbacks to count statement executions.
+     * Interceptors are instantiated for each connection, pool Simons are resolved once.
+     */
+    private static final ConcurrentMap<String, PoolMonitor> POOL_MONITORS = new ConcurrentHashMap<String, PoolMonitor>();
+    /**
+     * Pool monitor, null when pool metrics are disabled
+     */
+    private PoolMonitor poolMonitor;
+    /**
+     * Time when the connection was borrowed, in nanoseconds, 0 when not borrowed
+     */
+    private long borrowNanos;
+    /**
+     * Statements executed by the borrowing thread before the connection was borrowed, see {@link PoolMonitor#getExecutionCount()}
+     */
+    private long borrowExecutionCount;
+    /**
+     * Thread which borrowed the connection
+     */
+    private Thread borrowThread;
+    /**
+     * Top SQL reports, by Simon name prefix.
+     * Interceptors are instantiated for each connection, reports are shared.
+     */
+    private static final ConcurrentMap<String, TopSqlReport> TOP_SQL_REPORTS = new ConcurrentHashMap<String, TopSqlReport>();
+    /**
+     * Top SQL callbacks registered so far, by Simon name prefix
+     */
+    private static final ConcurrentMap<String, TopSqlCallback> TOP_SQL_CALLBACKS = new ConcurrentHashMap<String, TopSqlCallback>();
+    /**
+     * Top SQL report, null when disabled
+     */
+    private TopSqlReport topSqlReport;
 
     /**
      * Constructor
      */
     public SimonJdbcInterceptor() {
-        try {
-            statementWrappers = new AbstractStatementWrapper[]{
-                    new StatementWrapper(),
-                    new PreparedStatementWrapper(),
-                    new CallableStatementWrapper()
-            };
-            LOGGER.info("Simon JDBC interceptor initialized");
-        } catch (NoSuchMethodException noSuchMethodException) {
-            throw new IllegalStateException("Simon JDBC interceptor failed", noSuchMethodException);
-        }
+        LOGGER.info("Simon JDBC interceptor initialized");
     }
 
     public String getPrefix() {
@@ -61,6 +222,14 @@ public class SimonJdbcInterceptor extends JdbcInterceptor {
 
     public void setPrefix(String prefix) {
         this.prefix = prefix;
+        this.sqlPrefix = getSqlPrefix(prefix);
+    }
+
+    /**
+     * @return Simon name prefix of SQL Stopwatches, like <code>jdbc.sql.</code>
+     */
+    private static String getSqlPrefix(String prefix) {
+        return prefix + Manager.HIERARCHY_DELIMITER + "sql" + Manager.HIERARCHY_DELIMITER;
     }
 
     @Override
@@ -68,14 +237,406 @@ public class SimonJdbcInterceptor extends JdbcInterceptor {
         super.setProperties(properties);
         InterceptorProperty prefixProperty = properties.get("prefix");
         if (prefixProperty != null) {
-            prefix = prefixProperty.getValue();
+            setPrefix(prefixProperty.getValue());
+        }
+        InterceptorProperty lightweightProperty = properties.get("lightweight");
+        if (lightweightProperty != null) {
+            lightweight = lightweightProperty.getValueAsBoolean(false);
+        }
+        InterceptorProperty fingerprintBasicStatementsProperty = properties.get("fingerprintBasicStatements");
+        if (fingerprintBasicStatementsProperty != null) {
+            fingerprintBasicStatements = fingerprintBasicStatementsProperty.getValueAsBoolean(false);
+        }
+        InterceptorProperty histogramsProperty = properties.get("histograms");
+        if (histogramsProperty != null) {
+            histograms = histogramsProperty.getValueAsBoolean(false);
+        }
+        if (histograms && !lightweight) {
+            registerHistogramCallback(prefix);
+        }
+        InterceptorProperty sqlAttributionProperty = properties.get("sqlAttribution");
+        if (sqlAttributionProperty != null) {
+            sqlAttribution = sqlAttributionProperty.getValueAsBoolean(false);
+        }
+        if (sqlAttribution && !lightweight) {
+            registerSqlAttributionCallback(prefix, sqlPrefix);
+        }
+        InterceptorProperty fingerprintCacheSizeProperty = properties.get("fingerprintCacheSize");
+        if (fingerprintCacheSizeProperty != null) {
+            sqlFingerprinter = getSqlFingerprinter(prefix, fingerprintCacheSizeProperty.getValueAsInt(DEFAULT_FINGERPRINT_CACHE_SIZE));
+        }
+        InterceptorProperty poolMetricsProperty = properties.get("poolMetrics");
+        if (poolMetricsProperty != null && poolMetricsProperty.getValueAsBoolean(false)) {
+            InterceptorProperty slowBorrowThresholdProperty = properties.get("slowBorrowThreshold");
+            long slowBorrowThreshold = slowBorrowThresholdProperty == null ? DEFAULT_SLOW_BORROW_THRESHOLD : slowBorrowThresholdProperty.getValueAsLong(DEFAULT_SLOW_BORROW_THRESHOLD);
+            poolMonitor = getPoolMonitor(prefix, slowBorrowThreshold);
+        }
+        InterceptorProperty topSqlProperty = properties.get("topSql");
+        if (topSqlProperty != null) {
+            setTopSql(topSqlProperty.getValueAsInt(0));
+        }
+        InterceptorProperty sampleRateProperty = properties.get("sampleRate");
+        InterceptorProperty sampleBudgetProperty = properties.get("sampleBudget");
+        int sampleBudget = sampleBudgetProperty == null ? 0 : sampleBudgetProperty.getValueAsInt(0);
+        try {
+            double sampleRate = sampleRateProperty == null ? 1D : Double.parseDouble(sampleRateProperty.getValue());
+            if (sampleRate < 1D || sampleBudget > 0) {
+                sampler = getSampler(prefix, sampleRate, sampleBudget);
+                sampledCounter = SimonManager.getCounter(prefix + Manager.HIERARCHY_DELIMITER + TomcatRequestStopwatchSource.SAMPLED_COUNT_SUFFIX);
+            }
+        } catch (IllegalArgumentException illegalArgumentException) {
+            // Invalid or out of range sample rate
+            LOGGER.warn("Simon JDBC sampling disabled for " + prefix + ", invalid sample rate " + sampleRateProperty.getValue(), illegalArgumentException);
+        }
+    }
+
+    /**
+     * Get or create the sampler shared by interceptors having this prefix
+     */
+    private static Sampler getSampler(String prefix, double sampleRate, int sampleBudget) {
+        Sampler sampler = SAMPLERS.get(prefix);
+        if (sampler == null) {
+            Sampler newSampler = new Sampler(sampleRate, sampleBudget);
+            sampler = SAMPLERS.putIfAbsent(prefix, newSampler);
+            if (sampler == null) {
+                sampler = newSampler;
+                LOGGER.info("Simon JDBC sampling enabled for " + prefix + ", rate " + sampleRate + ", budget " + sampleBudget);
+            }
+        }
+        return sampler;
+    }
+
+    /**
+     * Get or create the SQL fingerprinter shared by interceptors having this prefix and cache size
+     */
+    private static SqlFingerprinter getSqlFingerprinter(String prefix, int cacheSize) {
+        String key = prefix + '#' + cacheSize;
+        SqlFingerprinter sqlFingerprinter = SQL_FINGERPRINTERS.get(key);
+        if (sqlFingerprinter == null) {
+            SqlFingerprinter newSqlFingerprinter = new SqlFingerprinter(cacheSize);
+            sqlFingerprinter = SQL_FINGERPRINTERS.putIfAbsent(key, newSqlFingerprinter);
+            if (sqlFingerprinter == null) {
+                sqlFingerprinter = newSqlFingerprinter;
+            }
+        }
+        return sqlFingerprinter;
+    }
+
+    /**
+     * Get or create the pool monitor shared by interceptors having this prefix
+     */
+    private static PoolMonitor getPoolMonitor(String prefix, long slowBorrowThreshold) {
+        PoolMonitor poolMonitor = POOL_MONITORS.get(prefix);
+        if (poolMonitor == null) {
+            PoolMonitor newPoolMonitor = new PoolMonitor(prefix, slowBorrowThreshold);
+            poolMonitor = POOL_MONITORS.putIfAbsent(prefix, newPoolMonitor);
+            if (poolMonitor == null) {
+                poolMonitor = newPoolMonitor;
+                // Counts executions of statements wrapped by JavaSimon JDBC wrappers
+                SimonManager.callback().addCallback(poolMonitor);
+                LOGGER.info("Simon JDBC pool metrics enabled for " + prefix);
+            }
+        }
+        return poolMonitor;
+    }
+
+    /**
+     * Get or create the top SQL report shared by interceptors having this prefix
+     */
+    private static TopSqlReport getTopSqlReport(String prefix, int size) {
+        TopSqlReport topSqlReport = TOP_SQL_REPORTS.get(prefix);
+        if (topSqlReport == null) {
+            TopSqlReport newTopSqlReport = new TopSqlReport(size);
+            topSqlReport = TOP_SQL_REPORTS.putIfAbsent(prefix, newTopSqlReport);
+            if (topSqlReport == null) {
+                topSqlReport = newTopSqlReport;
+                LOGGER.info("Simon JDBC top SQL report enabled for " + prefix + ", size " + size);
+            }
+        }
+        return topSqlReport;
+    }
+
+    /**
+     * @return Number of statements kept in the top SQL report, 0 when disabled
+     */
+    public int getTopSql() {
+        return topSqlReport == null ? 0 : topSqlReport.getSize();
+    }
+
+    public void setTopSql(int topSql) {
+        this.topSqlReport = topSql > 0 ? getTopSqlReport(prefix, topSql) : null;
+        if (topSqlReport != null && !lightweight) {
+            registerTopSqlCallback(prefix, sqlPrefix, topSqlReport);
+        }
+    }
+
+    /**
+     * @return Top SQL report MBean name
+     */
+    private ObjectName getTopSqlObjectName() throws JMException {
+        return new ObjectName("org.javasimon:type=TopSql,prefix=" + ObjectName.quote(prefix));
+    }
+
+    /**
+     * Called when the pool is started, registers the top SQL report MBean
+     */
+    @Override
+    public void poolStarted(ConnectionPool pool) {
+        super.poolStarted(pool);
+        synchronized (STARTED_POOL_COUNTS) {
+            Integer startedPoolCount = STARTED_POOL_COUNTS.get(prefix);
+            STARTED_POOL_COUNTS.put(prefix, startedPoolCount == null ? 1 : startedPoolCount + 1);
+        }
+        if (topSqlReport != null) {
+            try {
+                MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = getTopSqlObjectName();
+                if (!mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.registerMBean(topSqlReport, objectName);
+                    LOGGER.info("Simon MBean " + objectName + " registered");
+                }
+            } catch (JMException jmException) {
+                LOGGER.warn("Top SQL MBean registration failed", jmException);
+            }
+        }
+    }
+
+    /**
+     * Called when the pool is closed. When no other pool uses this prefix, unregisters the top SQL report MBean,
+     * the callbacks and the shared state of this prefix, so that they don't leak across redeployments
+     */
+    @Override
+    public void poolClosed(ConnectionPool pool) {
+        boolean lastPool;
+        synchronized (STARTED_POOL_COUNTS) {
+            Integer startedPoolCount = STARTED_POOL_COUNTS.remove(prefix);
+            lastPool = startedPoolCount == null || startedPoolCount <= 1;
+            if (!lastPool) {
+                STARTED_POOL_COUNTS.put(prefix, startedPoolCount - 1);
+            }
+        }
+        if (lastPool) {
+            releasePrefix(prefix);
+            if (topSqlReport != null) {
+                try {
+                    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+                    ObjectName objectName = getTopSqlObjectName();
+                    if (mBeanServer.isRegistered(objectName)) {
+                        mBeanServer.unregisterMBean(objectName);
+                    }
+                } catch (JMException jmException) {
+                    LOGGER.warn("Top SQL MBean unregistration failed", jmException);
+                }
+            }
+        }
+        super.poolClosed(pool);
+    }
+
+    public boolean isPoolMetrics() {
+        return poolMonitor != null;
+    }
+
+    public void setPoolMetrics(boolean poolMetrics) {
+        this.poolMonitor = poolMetrics ? getPoolMonitor(prefix, DEFAULT_SLOW_BORROW_THRESHOLD) : null;
+    }
+
+    /**
+     * Get SQL fingerprinter, the default one is used unless configured
+     */
+    public SqlFingerprinter getSqlFingerprinter() {
+        if (sqlFingerprinter == null) {
+            sqlFingerprinter = getSqlFingerprinter(prefix, DEFAULT_FINGERPRINT_CACHE_SIZE);
+        }
+        return sqlFingerprinter;
+    }
+
+    /**
+     * Register a callback feeding {@link Histograms} with statement durations, once per prefix
+     */
+    private static void registerHistogramCallback(String prefix) {
+        HistogramCallback histogramCallback = new HistogramCallback(prefix + Manager.HIERARCHY_DELIMITER);
+        if (HISTOGRAM_CALLBACKS.putIfAbsent(prefix, histogramCallback) == null) {
+            SimonManager.callback().addCallback(histogramCallback);
+            LOGGER.info("Simon JDBC histograms enabled for " + prefix);
+        }
+    }
+
+    /**
+     * Unregister the callbacks of a prefix and forget its shared samplers, fingerprinters, pool monitors and reports
+     */
+    private static void releasePrefix(String prefix) {
+        unregisterCallback(HISTOGRAM_CALLBACKS, prefix);
+        unregisterCallback(SQL_ATTRIBUTION_CALLBACKS, prefix);
+        unregisterCallback(TOP_SQL_CALLBACKS, prefix);
+        SAMPLERS.remove(prefix);
+        unregisterCallback(POOL_MONITORS, prefix);
+        TOP_SQL_REPORTS.remove(prefix);
+        // Fingerprinter keys are the prefix followed by the cache size
+        String keyPrefix = prefix + '#';
+        for (String key : SQL_FINGERPRINTERS.keySet()) {
+            if (key.startsWith(keyPrefix) && key.indexOf('#', keyPrefix.length()) < 0) {
+                SQL_FINGERPRINTERS.remove(key);
+            }
+        }
+    }
+
+    private static void unregisterCallback(ConcurrentMap<String, ? extends Callback> callbacks, String prefix) {
+        Callback callback = callbacks.remove(prefix);
+        if (callback != null) {
+            SimonManager.callback().removeCallback(callback);
+        }
+    }
+
+    /**
+     * Register a callback charging wrapped statement executions to current HTTP request, once per prefix
+     */
+    private static void registerSqlAttributionCallback(String prefix, String sqlPrefix) {
+        if (!SQL_ATTRIBUTION_CALLBACKS.containsKey(prefix)) {
+            SqlAttributionCallback sqlAttributionCallback = new SqlAttributionCallback(sqlPrefix);
+            if (SQL_ATTRIBUTION_CALLBACKS.putIfAbsent(prefix, sqlAttributionCallback) == null) {
+                SimonManager.callback().addCallback(sqlAttributionCallback);
+            }
+        }
+    }
+
+    /**
+     * Register a callback feeding the top SQL report with wrapped statement executions, once per prefix
+     */
+    private static void registerTopSqlCallback(String prefix, String sqlPrefix, TopSqlReport topSqlReport) {
+        if (!TOP_SQL_CALLBACKS.containsKey(prefix)) {
+            TopSqlCallback topSqlCallback = new TopSqlCallback(sqlPrefix, topSqlReport);
+            if (TOP_SQL_CALLBACKS.putIfAbsent(prefix, topSqlCallback) == null) {
+                SimonManager.callback().addCallback(topSqlCallback);
+            }
+        }
+    }
+
+    public boolean isHistograms() {
+        return histograms;
+    }
+
+    public void setHistograms(boolean histograms) {
+        this.histograms = histograms;
+        if (histograms && !lightweight) {
+            registerHistogramCallback(prefix);
+        }
+    }
+
+    public boolean isSqlAttribution() {
+        return sqlAttribution;
+    }
+
+    public void setSqlAttribution(boolean sqlAttribution) {
+        this.sqlAttribution = sqlAttribution;
+        if (sqlAttribution && !lightweight) {
+            registerSqlAttributionCallback(prefix, sqlPrefix);
+        }
+    }
+
+    public boolean isLightweight() {
+        return lightweight;
+    }
+
+    public void setLightweight(boolean lightweight) {
+        this.lightweight = lightweight;
+    }
+
+    public boolean isFingerprintBasicStatements() {
+        return fingerprintBasicStatements;
+    }
+
+    public void setFingerprintBasicStatements(boolean fingerprintBasicStatements) {
+        this.fingerprintBasicStatements = fingerprintBasicStatements;
+    }
+
+    /**
+     * Get or create the monitor of an SQL query, for {@link TimedStatement}s
+     *
+     * @return SQL monitor, null when the SQL is null: the driver rejects it, the execution is not recorded
+     */
+    SqlMonitor getSqlMonitor(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        SqlMonitor sqlMonitor = sqlMonitors.get(sql);
+        if (sqlMonitor == null) {
+            sqlMonitor = new SqlMonitor(prefix, getSqlFingerprinter().fingerprint(sql), histograms);
+            sqlMonitors.put(sql, sqlMonitor);
+        }
+        return sqlMonitor;
+    }
+
+    /**
+     * Get or create the monitor of basic statement batches, for {@link TimedStatement}s
+     */
+    SqlMonitor getBatchSqlMonitor() {
+        if (batchSqlMonitor == null) {
+            batchSqlMonitor = new SqlMonitor(prefix, "batch", histograms);
+        }
+        return batchSqlMonitor;
+    }
+
+    /**
+     * Record a statement execution, for {@link TimedStatement}s.
+     * The recording time is sampled for {@link OverheadGovernor}, the execution timing itself is only a pair of <code>nanoTime</code> calls.
+     *
+     * @param sqlMonitor SQL monitor, null when the execution is not recorded
+     * @param ns Execution duration in nanoseconds
+     */
+    void recordExecution(SqlMonitor sqlMonitor, long ns) {
+        if (sqlMonitor == null) {
+            return;
+        }
+        if (OverheadGovernor.shouldMeasure()) {
+            long start = System.nanoTime();
+            doRecordExecution(sqlMonitor, ns);
+            OverheadGovernor.recordOverhead(System.nanoTime() - start);
+        } else {
+            doRecordExecution(sqlMonitor, ns);
         }
     }
 
+    private void doRecordExecution(SqlMonitor sqlMonitor, long ns) {
+        sqlMonitor.record(ns);
+        if (sqlAttribution) {
+            RequestContext.chargeStatement(sqlMonitor.getStopwatch(), ns);
+        }
+        if (topSqlReport != null) {
+            topSqlReport.record(sqlMonitor.getStopwatch().getName(), sqlMonitor.getSql(), ns);
+        }
+        if (poolMonitor != null) {
+            poolMonitor.countExecution();
+        }
+    }
 
+    /**
+     * Called by the pool when the connection is borrowed.
+     * The time spent waiting for the connection is deduced from the pooled connection timestamp,
+     * which is set by the pool when the borrow starts (millisecond resolution).
+     */
     @Override
     public void reset(ConnectionPool parent, PooledConnection con) {
-        // Do nothing
+        if (poolMonitor != null && parent != null && con != null) {
+            poolMonitor.recordBorrow(System.currentTimeMillis() - con.getTimestamp(), parent.getActive(), parent.getWaitCount());
+            borrowNanos = System.nanoTime();
+            borrowExecutionCount = poolMonitor.getExecutionCount();
+            borrowThread = Thread.currentThread();
+        }
+    }
+
+    /**
+     * Called when the connection is about to be given back to the pool.
+     * Must be called before the close is delegated: once the connection is back in the pool,
+     * another thread may borrow it and {@link #reset(ConnectionPool, PooledConnection)} this interceptor.
+     */
+    private void closeConnection() {
+        if (borrowNanos != 0L) {
+            // Executions are counted per thread, they are unknown when the connection is closed by another thread
+            long executionCount = Thread.currentThread() == borrowThread ? poolMonitor.getExecutionCount() - borrowExecutionCount : -1L;
+            poolMonitor.recordClose(System.nanoTime() - borrowNanos, executionCount);
+            borrowNanos = 0L;
+            borrowThread = null;
+        }
     }
 
     /**
@@ -85,8 +646,23 @@ public class SimonJdbcInterceptor extends JdbcInterceptor {
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (proxy instanceof Connection) {
             Connection connection = (Connection) proxy;
+            if (poolMonitor != null && compare(CLOSE_VAL, method)) {
+                closeConnection();
+                return super.invoke(connection, method, args);
+            }
             Object result = super.invoke(connection, method, args);
-            result = wrapStatement(connection, method, args, result);
+            AbstractStatementWrapper<?> statementWrapper = getStatementWrapper(method);
+            if (statementWrapper == NO_STATEMENT_WRAPPER) {
+                return result;
+            }
+            // Only statement creation is sampled for overhead measurement
+            if (OverheadGovernor.shouldMeasure()) {
+                long start = System.nanoTime();
+                result = wrapStatement(connection, statementWrapper, args, result);
+                OverheadGovernor.recordOverhead(System.nanoTime() - start);
+            } else {
+                result = wrapStatement(connection, statementWrapper, args, result);
+            }
             return result;
         } else {
             return super.invoke(proxy, method, args);
@@ -94,147 +670,233 @@ public class SimonJdbcInterceptor extends JdbcInterceptor {
     }
 
     /**
-     * Wrap returned statement
+     * Decide whether created statement should be monitored.
+     * Monitored statements are counted with their weight, so that statement count stays correct.
+     */
+    private boolean sampleStatement() {
+        if (sampler == null) {
+            return true;
+        }
+        int weight = sampler.sample();
+        if (weight == 0) {
+            return false;
+        }
+        sampledCounter.increase(weight);
+        return true;
+    }
+
+    /**
+     * Find statement wrapper for given connection method
+     */
+    private static AbstractStatementWrapper<?> getStatementWrapper(Method method) {
+        AbstractStatementWrapper<?> statementWrapper = statementWrappersByMethod.get(method);
+        if (statementWrapper == null) {
+            String methodName = method.getName();
+            if (methodName.equals("createStatement")) {
+                statementWrapper = StatementWrapper.INSTANCE;
+            } else if (methodName.equals("prepareStatement")) {
+                statementWrapper = PreparedStatementWrapper.INSTANCE;
+            } else if (methodName.equals("prepareCall")) {
+                statementWrapper = CallableStatementWrapper.INSTANCE;
+            } else {
+                statementWrapper = NO_STATEMENT_WRAPPER;
+            }
+            synchronized (SimonJdbcInterceptor.class) {
+                if (statementWrappersByMethod.size() < MAX_CACHED_METHODS) {
+                    Map<Method, AbstractStatementWrapper<?>> newStatementWrappersByMethod = new IdentityHashMap<Method, AbstractStatementWrapper<?>>(statementWrappersByMethod);
+                    newStatementWrappersByMethod.put(method, statementWrapper);
+                    statementWrappersByMethod = newStatementWrappersByMethod;
+                }
+            }
+        }
+        return statementWrapper;
+    }
+
+    /**
+     * Wrap returned statement, unless it is not sampled or the governor disabled wrapping
      */
-    private Object wrapStatement(Connection connection, Method method, Object[] args, Object result) {
-        Object newResult = null;
-        boolean wrapped = false;
-        for (AbstractStatementWrapper statementWrapper : statementWrappers) {
-            if (statementWrapper.matches(method, args, result)) {
-                newResult = statementWrapper.wrap(connection, args, result, prefix);
-                wrapped = true;
-                break;
+    private Object wrapStatement(Connection connection, AbstractStatementWrapper<?> statementWrapper, Object[] args, Object result) {
+        if (!statementWrapper.matches(result)) {
+            return result;
+        }
+        if (OverheadGovernor.isSqlWrappingEnabled() && sampleStatement()) {
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            if (lightweight) {
+                return statementWrapper.timeObject(this, sql, result);
             }
+            return statementWrapper.wrapObject(this, connection, sql, result);
+        }
+        return result;
+    }
+
+    /**
+     * Find the constructor of a JavaSimon JDBC wrapper, which is package-private.
+     * It is looked up once, and called through a method handle typed to return a {@link Statement},
+     * so that it can be invoked exactly and inlined, without reflection on each statement creation.
+     *
+     * @return Constructor method handle, null when it can not be reached: statements are then not wrapped
+     */
+    private static MethodHandle findWrapperConstructor(Class<? extends Statement> wrapperClass, Class<?>... parameterTypes) {
+        try {
+            Constructor<? extends Statement> constructor = wrapperClass.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Statement.class, parameterTypes));
+        } catch (Exception exception) {
+            LOGGER.error("Simon statement wrapper " + wrapperClass.getName() + " constructor not found, statements will not be monitored", exception);
+            return null;
+        }
+    }
+
+    /**
+     * Handle a failure of a wrapper constructor call: the statement is not monitored, only the first failure is logged
+     *
+     * @return Raw statement
+     */
+    private static Statement wrapperConstructorFailed(Statement statement, Throwable throwable) {
+        if (throwable instanceof VirtualMachineError) {
+            throw (VirtualMachineError) throwable;
         }
-        if (!wrapped) {
-            newResult = result;
+        if (WRAPPER_FAILURE_LOGGED.compareAndSet(false, true)) {
+            LOGGER.error("Simon statement wrapper instantiation failed, statement will not be monitored, next failures are not logged", throwable);
         }
-        return newResult;
+        return statement;
     }
+
     /**
-     * Statement replacer interface and base class
+     * Statement wrapper base class
      */
-    private static abstract class AbstractStatementWrapper<B extends Statement, A extends SimonStatement> {
+    private static abstract class AbstractStatementWrapper<B extends Statement> {
         private final Class<B> statementClass;
-        final Constructor<A> simonStatementConstructor;
 
-        private AbstractStatementWrapper(Class<B> statementClass, Constructor<A> simonStatementConstructor) {
+        private AbstractStatementWrapper(Class<B> statementClass) {
             this.statementClass = statementClass;
-            this.simonStatementConstructor = simonStatementConstructor;
         }
 
-        public boolean matches(Method method, Object[] args, Object result) {
+        public boolean matches(Object result) {
             return statementClass.isInstance(result);
         }
 
-        A newInstance(Object... arguments) {
-            return SimonJdbcInterceptor.newInstance(simonStatementConstructor, arguments);
+        public Statement wrapObject(SimonJdbcInterceptor interceptor, Connection connection, String sql, Object result) {
+            return wrap(interceptor, connection, sql, statementClass.cast(result));
+        }
+
+        /**
+         * Wrap statement into a JavaSimon JDBC wrapper, in default mode
+         *
+         * @param sql SQL given on statement creation, null for basic statements
+         */
+        public abstract Statement wrap(SimonJdbcInterceptor interceptor, Connection connection, String sql, B statement);
+
+        public Statement timeObject(SimonJdbcInterceptor interceptor, String sql, Object result) {
+            return time(interceptor, sql, statementClass.cast(result));
         }
 
-        public abstract A wrap(Connection connection, Object[] args, Object result, String prefix);
+        /**
+         * Wrap statement into a statement timing its executions, in lightweight mode
+         *
+         * @param sql SQL given on statement creation, null for basic statements
+         */
+        public abstract Statement time(SimonJdbcInterceptor interceptor, String sql, B statement);
     }
 
     /**
      * Statement wrapper for basic statements
      */
-    private static class StatementWrapper extends AbstractStatementWrapper<Statement, SimonStatement> {
-        private StatementWrapper() throws NoSuchMethodException {
-            super(Statement.class, getConstructor(SimonStatement.class,
-                    new Class[]{
-                            Connection.class,
-                            Statement.class,
-                            String.class
-                    }));
+    private static class StatementWrapper extends AbstractStatementWrapper<Statement> {
+        private static final MethodHandle CONSTRUCTOR = findWrapperConstructor(SimonStatement.class,
+            Connection.class, Statement.class, String.class);
+        private static final StatementWrapper INSTANCE = new StatementWrapper();
+
+        private StatementWrapper() {
+            super(Statement.class);
         }
 
+        /**
+         * JavaSimon basic statement wrappers name Simons after the raw SQL given on each execution,
+         * which creates one Simon per literal value: with <code>fingerprintBasicStatements</code>,
+         * basic statements are timed like in lightweight mode instead, and named after the SQL fingerprint.
+         */
         @Override
-        public boolean matches(Method method, Object[] args, Object result) {
-            return method.getName().equals("createStatement") && super.matches(method, args, result);
+        public Statement wrap(SimonJdbcInterceptor interceptor, Connection connection, String sql, Statement statement) {
+            if (interceptor.isFingerprintBasicStatements()) {
+                return time(interceptor, sql, statement);
+            }
+            if (CONSTRUCTOR == null) {
+                return statement;
+            }
+            try {
+                return (Statement) CONSTRUCTOR.invokeExact(connection, statement, interceptor.getPrefix());
+            } catch (Throwable throwable) {
+                return wrapperConstructorFailed(statement, throwable);
+            }
         }
 
-        public SimonStatement wrap(Connection connection, Object[] args, Object result, String prefix) {
-            return newInstance(connection, result, prefix);
+        @Override
+        public Statement time(SimonJdbcInterceptor interceptor, String sql, Statement statement) {
+            return new TimedStatement<Statement>(interceptor, statement, null);
         }
     }
 
     /**
      * Statement wrapper for prepared statements
      */
-    private static class PreparedStatementWrapper extends AbstractStatementWrapper<PreparedStatement, SimonPreparedStatement> {
-        private PreparedStatementWrapper() throws NoSuchMethodException {
-            super(PreparedStatement.class, getConstructor(SimonPreparedStatement.class,
-                    new Class[]{
-                            Connection.class,
-                            PreparedStatement.class,
-                            String.class,
-                            String.class
-                    }));
+    private static class PreparedStatementWrapper extends AbstractStatementWrapper<PreparedStatement> {
+        private static final MethodHandle CONSTRUCTOR = findWrapperConstructor(SimonPreparedStatement.class,
+            Connection.class, PreparedStatement.class, String.class, String.class);
+        private static final PreparedStatementWrapper INSTANCE = new PreparedStatementWrapper();
+
+        private PreparedStatementWrapper() {
+            super(PreparedStatement.class);
         }
 
+        /**
+         * JavaSimon wrappers name Simons after the SQL fingerprint instead of the raw SQL
+         */
         @Override
-        public boolean matches(Method method, Object[] args, Object result) {
-            return method.getName().equals("prepareStatement") && super.matches(method, args, result);
+        public Statement wrap(SimonJdbcInterceptor interceptor, Connection connection, String sql, PreparedStatement statement) {
+            if (CONSTRUCTOR == null) {
+                return statement;
+            }
+            try {
+                return (Statement) CONSTRUCTOR.invokeExact(connection, statement, interceptor.getSqlFingerprinter().fingerprint(sql), interceptor.getPrefix());
+            } catch (Throwable throwable) {
+                return wrapperConstructorFailed(statement, throwable);
+            }
         }
 
         @Override
-        public SimonPreparedStatement wrap(Connection connection, Object[] args, Object result, String prefix) {
-            return newInstance(connection, result, args[0], prefix);
+        public Statement time(SimonJdbcInterceptor interceptor, String sql, PreparedStatement statement) {
+            return new TimedPreparedStatement<PreparedStatement>(interceptor, statement, interceptor.getSqlMonitor(sql));
         }
     }
 
     /**
      * Statement wrapper for callable statements
      */
-    private static class CallableStatementWrapper extends AbstractStatementWrapper<CallableStatement, SimonCallableStatement> {
-        private CallableStatementWrapper() throws NoSuchMethodException {
-            super(CallableStatement.class, getConstructor(SimonCallableStatement.class,
-                    new Class[]{
-                            Connection.class,
-                            CallableStatement.class,
-                            String.class,
-                            String.class
-                    }));
-        }
+    private static class CallableStatementWrapper extends AbstractStatementWrapper<CallableStatement> {
+        private static final MethodHandle CONSTRUCTOR = findWrapperConstructor(SimonCallableStatement.class,
+            Connection.class, CallableStatement.class, String.class, String.class);
+        private static final CallableStatementWrapper INSTANCE = new CallableStatementWrapper();
 
-        @Override
-        public boolean matches(Method method, Object[] args, Object result) {
-            return method.getName().equals("prepareCall") && super.matches(method, args, result);
+        private CallableStatementWrapper() {
+            super(CallableStatement.class);
         }
 
-        public SimonCallableStatement wrap(Connection connection, Object[] args, Object result, String prefix) {
-            return newInstance(connection, result, args[0], prefix);
-        }
-    }
-    /**
-     * Find constructor for given type and argument types
-     */
-    private static <T> Constructor<T> getConstructor(Class<T> type, Class<?>[] argumentTypes) throws NoSuchMethodException {
-        Constructor<T> constructor = type.getDeclaredConstructor(argumentTypes);
-        if (!constructor.isAccessible()) {
-            constructor.setAccessible(true);
+        @Override
+        public Statement wrap(SimonJdbcInterceptor interceptor, Connection connection, String sql, CallableStatement statement) {
+            if (CONSTRUCTOR == null) {
+                return statement;
+            }
+            try {
+                return (Statement) CONSTRUCTOR.invokeExact(connection, statement, interceptor.getSqlFingerprinter().fingerprint(sql), interceptor.getPrefix());
+            } catch (Throwable throwable) {
+                return wrapperConstructorFailed(statement, throwable);
+            }
         }
-        return constructor;
-    }
 
-    /**
-     * Create a new instance of T using specified constructor arguments
-     *
-     * @return New instance or null in case of failure
-     */
-    private static <T> T newInstance(Constructor constructor, Object[] parameterValues) {
-        try {
-            @SuppressWarnings("unchecked")
-            final T instance = (T) constructor.newInstance(parameterValues);
-            return instance;
-        } catch (InstantiationException instantiationException) {
-            LOGGER.error("Simon statement instantiation failed", instantiationException);
-            return null;
-        } catch (IllegalAccessException illegalAccessException) {
-            LOGGER.error("Simon statement instantiation failed", illegalAccessException);
-            return null;
-        } catch (InvocationTargetException invocationTargetException) {
-            LOGGER.error("Simon statement instantiation failed", invocationTargetException);
-            return null;
+        @Override
+        public Statement time(SimonJdbcInterceptor interceptor, String sql, CallableStatement statement) {
+            return new TimedCallableStatement(interceptor, statement, interceptor.getSqlMonitor(sql));
         }
     }
 }
@@ -1,21 +1,37 @@
 package org.javasimon.tomcat;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleListener;
 import org.javasimon.SimonManager;
 import org.javasimon.callback.Callback;
+import org.javasimon.callback.CallbackSkeleton;
 import org.javasimon.jmx.JmxRegisterCallback;
 
 /**
  * Tomcat lifecycle listener initializes Simon manager:<ul> 
  * <li>Enable/disable Simon manager</li> 
- * <li>Register callbacks</li> 
+ * <li>Register callbacks, optionally dispatched asynchronously</li> 
+ * <li>Rotate rolling windows</li>
+ * <li>Export snapshots to a file</li>
+ * <li>Write mergeable metric snapshots to a file, see {@link MetricSnapshot}</li>
+ * <li>Degrade instrumentation under overhead or load, see {@link OverheadGovernor}</li>
  * </ul>
  *
  * @author gquintana
@@ -39,6 +55,96 @@ public class SimonListener implements LifecycleListener {
 	 * List of callbacks registered by this listener
 	 */
 	private List<Callback> addedCallbacks;
+	/**
+	 * List of MBeans registered by this listener
+	 */
+	private List<ObjectName> registeredMBeans;
+	/**
+	 * Comma separated list of rolling windows, in number of intervals.
+	 * null means rolling windows are not rotated
+	 */
+	private String rollingWindows;
+	/**
+	 * Rolling window interval in seconds
+	 */
+	private long rollingInterval = 60L;
+	/**
+	 * Dispatch callback events from a background thread
+	 */
+	private boolean asyncCallbacks;
+	/**
+	 * Size of asynchronous callback queue
+	 */
+	private int asyncQueueSize = 65536;
+	/**
+	 * Asynchronous callback queue overflow policy: drop or block
+	 */
+	private String asyncOverflow = "drop";
+	/**
+	 * Asynchronous callback dispatcher, null when disabled
+	 */
+	private AsyncCallback asyncCallback;
+	/**
+	 * JMX mode: <code>simon</code> for one MBean per Simon registered by {@link JmxRegisterCallback},
+	 * <code>aggregate</code> for a single MBean exposing all Simons
+	 */
+	private String jmxMode = "simon";
+	/**
+	 * Aggregate MBean, null unless JMX mode is aggregate
+	 */
+	private SimonAggregateMXBeanImpl simonAggregate;
+	/**
+	 * Snapshot export file, null means snapshots are not exported
+	 */
+	private String exportFile;
+	/**
+	 * Snapshot export interval in seconds
+	 */
+	private long exportInterval = 60L;
+	/**
+	 * Export file size beyond which it is rotated, in bytes
+	 */
+	private long exportMaxFileSize = 10L * 1024L * 1024L;
+	/**
+	 * Number of rotated export files kept
+	 */
+	private int exportMaxFiles = 5;
+	/**
+	 * Snapshot exporter, null when disabled
+	 */
+	private SnapshotExporter snapshotExporter;
+	/**
+	 * Mergeable metric snapshot file, null means metric snapshots are not written
+	 */
+	private String snapshotFile;
+	/**
+	 * Metric snapshot write interval in seconds
+	 */
+	private long snapshotInterval = 60L;
+	/**
+	 * Metric snapshots are written
+	 */
+	private boolean metricSnapshotStarted;
+	/**
+	 * Run the overhead governor
+	 */
+	private boolean governor;
+	/**
+	 * Overhead governor evaluation interval in seconds
+	 */
+	private long governorInterval = 10L;
+	/**
+	 * Maximum percentage of request time spent in instrumentation
+	 */
+	private double overheadBudget = 2D;
+	/**
+	 * Maximum system load average per processor
+	 */
+	private double loadBudget = 1D;
+	/**
+	 * Background scheduler, created on demand
+	 */
+	private ScheduledExecutorService scheduler;
 
 	private Callback logCallbackException(String className,Exception e) {
 		LOGGER.log(Level.SEVERE, "Callback "+className+" instantiation failed", e);
@@ -64,22 +170,69 @@ public class SimonListener implements LifecycleListener {
 		if (callbacks != null) {
 			String[] callbackNames = callbacks.split(",");
 			addedCallbacks = new ArrayList<Callback>(callbackNames.length);
+			List<Callback> asyncDelegates = new ArrayList<Callback>(callbackNames.length);
 			for (String callbackName : callbackNames) {
 				callbackName = callbackName.trim();
 				if (!callbackName.isEmpty()) {
 					Callback callback;
 					if (callbackName.equals(JmxRegisterCallback.class.getName())) {
+						if ("aggregate".equalsIgnoreCase(jmxMode)) {
+							// Single MBean, Simon MBeans are registered on demand
+							simonAggregate = new SimonAggregateMXBeanImpl(SimonManager.manager(), ManagementFactory.getPlatformMBeanServer(), "org.javasimon");
+							registerMBean("org.javasimon:type=Simons", simonAggregate);
+							// Keeps its name index and Simon MBeans up to date
+							SimonManager.callback().addCallback(simonAggregate);
+							addedCallbacks.add(simonAggregate);
+							continue;
+						}
 						callback=new JmxRegisterCallback("org.javasimon");
 					} else {
 						callback=createCallback(callbackName);
 					}
-					if (callback!=null) {
+					if (callback instanceof JmxRegisterCallback || (callback!=null && !asyncCallbacks)) {
 						SimonManager.callback().addCallback(callback);
 						addedCallbacks.add(callback);
 						LOGGER.info("Simon Callback "+callbackName+" registered");						
+					} else if (callback!=null) {
+						asyncDelegates.add(callback);
+						LOGGER.info("Simon Callback "+callbackName+" registered asynchronously");
 					}
 				}
 			}
+			if (!asyncDelegates.isEmpty()) {
+				asyncCallback = new AsyncCallback(asyncDelegates, asyncQueueSize, getOverflowPolicy());
+				asyncCallback.start();
+				SimonManager.callback().addCallback(asyncCallback);
+				addedCallbacks.add(asyncCallback);
+				registerMBean("org.javasimon:type=AsyncCallback", asyncCallback);
+			}
+		}
+		if (addedCallbacks == null) {
+			addedCallbacks = new ArrayList<Callback>(1);
+		}
+		// Cached request monitors hold Stopwatches which are detached when the manager is cleared,
+		// histograms and striped Stopwatches are cleared along with Simons
+		Callback cacheInvalidationCallback = new CallbackSkeleton() {
+			@Override
+			public void onManagerClear() {
+				Histograms.clear();
+				StripedStopwatches.clear();
+				TomcatRequestStopwatchSource.invalidateCaches();
+			}
+		};
+		SimonManager.callback().addCallback(cacheInvalidationCallback);
+		addedCallbacks.add(cacheInvalidationCallback);
+	}
+
+	/**
+	 * Parse asynchronous callback queue overflow policy, invalid values fall back to the default one instead of failing server start
+	 */
+	private AsyncCallback.OverflowPolicy getOverflowPolicy() {
+		try {
+			return AsyncCallback.OverflowPolicy.valueOf(asyncOverflow.trim().toUpperCase());
+		} catch (RuntimeException runtimeException) {
+			LOGGER.log(Level.SEVERE, "Invalid asynchronous callback overflow policy "+asyncOverflow+", drop is used", runtimeException);
+			return AsyncCallback.OverflowPolicy.DROP;
 		}
 	}
 
@@ -87,6 +240,22 @@ public class SimonListener implements LifecycleListener {
 	 * Unegister callbacks (if any)
 	 */
 	private void unregisterCallbacks() {
+		if (asyncCallback != null) {
+			// Stop publishing events first, then drain pending events and clean up delegates
+			SimonManager.callback().removeCallback(asyncCallback);
+			addedCallbacks.remove(asyncCallback);
+			asyncCallback.cleanup();
+			if (!asyncCallback.isStopped()) {
+				LOGGER.warning("Simon asynchronous callback queue not drained, "+asyncCallback.getPendingCount()+" events pending");
+			}
+			if (asyncCallback.getDroppedCount() > 0L) {
+				LOGGER.warning("Simon asynchronous callback queue dropped "+asyncCallback.getDroppedCount()+" events");
+			}
+			if (asyncCallback.getFailedCount() > 0L) {
+				LOGGER.warning("Simon asynchronous callbacks failed "+asyncCallback.getFailedCount()+" times");
+			}
+			asyncCallback = null;
+		}
 		if (addedCallbacks != null) {
 			for (Callback callback : addedCallbacks) {
 				SimonManager.callback().removeCallback(callback);
@@ -95,6 +264,220 @@ public class SimonListener implements LifecycleListener {
 		}
 	}
 
+	/**
+	 * Get or create the background scheduler
+	 */
+	private ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SimonListener-scheduler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Stop the background scheduler (if any)
+	 */
+	private void stopScheduler() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				if (!scheduler.awaitTermination(10L, TimeUnit.SECONDS)) {
+					scheduler.shutdownNow();
+				}
+			} catch (InterruptedException interruptedException) {
+				scheduler.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Configure rolling windows and schedule their rotation (if any)
+	 */
+	private void startRollingWindows() {
+		if (rollingWindows != null) {
+			String[] windowValues = rollingWindows.split(",");
+			int[] windows = new int[windowValues.length];
+			try {
+				for (int i = 0; i < windowValues.length; i++) {
+					windows[i] = Integer.parseInt(windowValues[i].trim());
+					if (windows[i] <= 0) {
+						throw new IllegalArgumentException("Window "+windows[i]+" is not positive");
+					}
+				}
+				if (rollingInterval <= 0L) {
+					throw new IllegalArgumentException("Interval "+rollingInterval+" is not positive");
+				}
+				RollingWindows.configure(rollingInterval, windows);
+			} catch (IllegalArgumentException illegalArgumentException) {
+				// Invalid or out of range window, rolling windows stay disabled instead of failing server start
+				LOGGER.log(Level.SEVERE, "Invalid rolling windows "+rollingWindows+", rolling windows disabled", illegalArgumentException);
+				return;
+			}
+			getScheduler().scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					RollingWindows.rotate();
+				}
+			}, rollingInterval, rollingInterval, TimeUnit.SECONDS);
+			registerMBean("org.javasimon:type=RollingWindows", new RollingWindowMXBeanImpl());
+		}
+	}
+
+	/**
+	 * Schedule snapshot export (if any)
+	 */
+	private void startSnapshotExport() {
+		if (exportFile != null) {
+			snapshotExporter = new SnapshotExporter(SimonManager.manager(), new File(exportFile), exportMaxFileSize, exportMaxFiles);
+			getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					exportSnapshot();
+				}
+			}, exportInterval, exportInterval, TimeUnit.SECONDS);
+			LOGGER.info("Simon snapshots exported to "+exportFile+" every "+exportInterval+"s");
+		}
+	}
+
+	private void exportSnapshot() {
+		try {
+			snapshotExporter.export();
+		} catch (IOException ioException) {
+			LOGGER.log(Level.WARNING, "Simon snapshot export to "+exportFile+" failed", ioException);
+		}
+	}
+
+	/**
+	 * Export a last snapshot and close export file (if any), once the scheduler is stopped
+	 */
+	private void stopSnapshotExport() {
+		if (snapshotExporter != null) {
+			exportSnapshot();
+			try {
+				snapshotExporter.close();
+			} catch (IOException ioException) {
+				LOGGER.log(Level.WARNING, "Simon snapshot export file "+exportFile+" close failed", ioException);
+			}
+			snapshotExporter = null;
+		}
+	}
+
+	/**
+	 * Schedule metric snapshot writing (if any)
+	 */
+	private void startMetricSnapshot() {
+		if (snapshotFile != null && exportFile != null) {
+			// Exports reset Stopwatches, snapshots would not be cumulative and would not merge correctly
+			LOGGER.severe("Simon metric snapshots disabled, snapshotFile can not be used along with exportFile");
+		} else if (snapshotFile != null) {
+			metricSnapshotStarted = true;
+			getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					writeMetricSnapshot();
+				}
+			}, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+			LOGGER.info("Simon metric snapshots written to "+snapshotFile+" every "+snapshotInterval+"s");
+		}
+	}
+
+	private void writeMetricSnapshot() {
+		try {
+			MetricSnapshot.capture(SimonManager.manager(), null).writeTo(new File(snapshotFile));
+		} catch (IOException ioException) {
+			LOGGER.log(Level.WARNING, "Simon metric snapshot write to "+snapshotFile+" failed", ioException);
+		}
+	}
+
+	/**
+	 * Write a last metric snapshot (if any), once the scheduler is stopped
+	 */
+	private void stopMetricSnapshot() {
+		if (metricSnapshotStarted) {
+			metricSnapshotStarted = false;
+			writeMetricSnapshot();
+		}
+	}
+
+	/**
+	 * Start the overhead governor and schedule its evaluation (if enabled)
+	 */
+	private void startGovernor() {
+		if (governor) {
+			OverheadGovernor.configure(overheadBudget / 100D, loadBudget);
+			// Cached request monitors are created again with a sampled request Counter
+			TomcatRequestStopwatchSource.invalidateCaches();
+			getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					int previousLevel = OverheadGovernor.getLevel();
+					int level = OverheadGovernor.evaluate();
+					if (level != previousLevel) {
+						LOGGER.info("Simon instrumentation level changed from "+previousLevel+" to "+level);
+					}
+				}
+			}, governorInterval, governorInterval, TimeUnit.SECONDS);
+			LOGGER.info("Simon overhead governor started, overhead budget "+overheadBudget+"%, load budget "+loadBudget);
+		}
+	}
+
+	/**
+	 * Stop the overhead governor and restore full instrumentation (if enabled), once the scheduler is stopped
+	 */
+	private void stopGovernor() {
+		if (governor) {
+			OverheadGovernor.disable();
+		}
+	}
+
+	/**
+	 * Register an MBean in platform MBean server
+	 */
+	private void registerMBean(String name, Object mBean) {
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+			mBeanServer.registerMBean(mBean, objectName);
+			if (registeredMBeans == null) {
+				registeredMBeans = new ArrayList<ObjectName>();
+			}
+			registeredMBeans.add(objectName);
+			LOGGER.info("Simon MBean "+name+" registered");
+		} catch (JMException jmException) {
+			LOGGER.log(Level.SEVERE, "MBean "+name+" registration failed", jmException);
+		}
+	}
+
+	/**
+	 * Unregister MBeans (if any)
+	 */
+	private void unregisterMBeans() {
+		if (simonAggregate != null) {
+			simonAggregate.unregisterSimons();
+			simonAggregate = null;
+		}
+		if (registeredMBeans != null) {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			for (ObjectName objectName : registeredMBeans) {
+				try {
+					if (mBeanServer.isRegistered(objectName)) {
+						mBeanServer.unregisterMBean(objectName);
+					}
+				} catch (JMException jmException) {
+					LOGGER.log(Level.WARNING, "MBean "+objectName+" unregistration failed", jmException);
+				}
+			}
+			registeredMBeans = null;
+		}
+	}
+
 	/**
 	 * Listener main method
 	 */
@@ -106,10 +489,25 @@ public class SimonListener implements LifecycleListener {
 				} else {
 					SimonManager.disable();
 				}
+				TomcatRequestStopwatchSource.invalidateCaches();
 			}
+			// Histograms and striped Stopwatches are enabled on valves and interceptors, their registries are always exposed
+			registerMBean("org.javasimon:type=Histograms", new HistogramMXBeanImpl());
+			registerMBean("org.javasimon:type=StripedStopwatches", new StripedStopwatchMXBeanImpl());
 			registerCallbacks();
+			startRollingWindows();
+			startSnapshotExport();
+			startMetricSnapshot();
+			startGovernor();
 		} else if (event.getType().equals(Lifecycle.STOP_EVENT)) {
+			stopScheduler();
+			stopGovernor();
+			stopMetricSnapshot();
+			stopSnapshotExport();
 			unregisterCallbacks();
+			unregisterMBeans();
+			Histograms.clear();
+			StripedStopwatches.clear();
 		}
 	}
 
@@ -135,6 +533,165 @@ public class SimonListener implements LifecycleListener {
 	public void setEnabled(Boolean enabled) {
 		this.enabled = enabled;
 	}
-	
+
+	public String getRollingWindows() {
+		return rollingWindows;
+	}
+
+	public void setRollingWindows(String rollingWindows) {
+		// Trim to null
+		if (rollingWindows!=null) {
+			rollingWindows=rollingWindows.trim();
+			if ("".equals(rollingWindows)) {
+				rollingWindows=null;
+			}
+		}
+		this.rollingWindows = rollingWindows;
+	}
+
+	public boolean isAsyncCallbacks() {
+		return asyncCallbacks;
+	}
+
+	public void setAsyncCallbacks(boolean asyncCallbacks) {
+		this.asyncCallbacks = asyncCallbacks;
+	}
+
+	public int getAsyncQueueSize() {
+		return asyncQueueSize;
+	}
+
+	public void setAsyncQueueSize(int asyncQueueSize) {
+		this.asyncQueueSize = asyncQueueSize;
+	}
+
+	public String getAsyncOverflow() {
+		return asyncOverflow;
+	}
+
+	/**
+	 * @param asyncOverflow Asynchronous callback queue overflow policy: <code>drop</code> (events are counted) or <code>block</code>
+	 */
+	public void setAsyncOverflow(String asyncOverflow) {
+		this.asyncOverflow = asyncOverflow;
+	}
+
+	public String getJmxMode() {
+		return jmxMode;
+	}
+
+	/**
+	 * @param jmxMode <code>simon</code> (default) for one MBean per Simon, <code>aggregate</code> for a single MBean
+	 */
+	public void setJmxMode(String jmxMode) {
+		this.jmxMode = jmxMode;
+	}
+
+	public String getExportFile() {
+		return exportFile;
+	}
+
+	public void setExportFile(String exportFile) {
+		// Trim to null
+		if (exportFile!=null) {
+			exportFile=exportFile.trim();
+			if ("".equals(exportFile)) {
+				exportFile=null;
+			}
+		}
+		this.exportFile = exportFile;
+	}
+
+	public long getExportInterval() {
+		return exportInterval;
+	}
+
+	public void setExportInterval(long exportInterval) {
+		this.exportInterval = exportInterval;
+	}
+
+	public long getExportMaxFileSize() {
+		return exportMaxFileSize;
+	}
+
+	public void setExportMaxFileSize(long exportMaxFileSize) {
+		this.exportMaxFileSize = exportMaxFileSize;
+	}
+
+	public int getExportMaxFiles() {
+		return exportMaxFiles;
+	}
+
+	public void setExportMaxFiles(int exportMaxFiles) {
+		this.exportMaxFiles = exportMaxFiles;
+	}
+
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public void setSnapshotFile(String snapshotFile) {
+		// Trim to null
+		if (snapshotFile!=null) {
+			snapshotFile=snapshotFile.trim();
+			if ("".equals(snapshotFile)) {
+				snapshotFile=null;
+			}
+		}
+		this.snapshotFile = snapshotFile;
+	}
+
+	public long getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public void setSnapshotInterval(long snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	public long getRollingInterval() {
+		return rollingInterval;
+	}
+
+	public void setRollingInterval(long rollingInterval) {
+		this.rollingInterval = rollingInterval;
+	}
+
+	public boolean isGovernor() {
+		return governor;
+	}
+
+	public void setGovernor(boolean governor) {
+		this.governor = governor;
+	}
+
+	public long getGovernorInterval() {
+		return governorInterval;
+	}
+
+	public void setGovernorInterval(long governorInterval) {
+		this.governorInterval = governorInterval;
+	}
+
+	public double getOverheadBudget() {
+		return overheadBudget;
+	}
+
+	/**
+	 * @param overheadBudget Maximum percentage of request time spent in instrumentation, like 2
+	 */
+	public void setOverheadBudget(double overheadBudget) {
+		this.overheadBudget = overheadBudget;
+	}
+
+	public double getLoadBudget() {
+		return loadBudget;
+	}
+
+	/**
+	 * @param loadBudget Maximum system load average per processor, like 1
+	 */
+	public void setLoadBudget(double loadBudget) {
+		this.loadBudget = loadBudget;
+	}
 }
- 
\ No newline at end of file
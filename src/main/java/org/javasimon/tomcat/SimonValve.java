@@ -1,10 +1,21 @@
 package org.javasimon.tomcat;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.comet.CometEvent;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
+import org.javasimon.Counter;
+import org.javasimon.Manager;
 import org.javasimon.SimonManager;
 import org.javasimon.Split;
 import org.javasimon.Stopwatch;
@@ -14,6 +25,8 @@ import org.javasimon.source.StopwatchTemplate;
 /**
  * Tomcat HTTP Valve.
  * Monitor HTTP request durations.
+ * Asynchronous (Servlet 3) and Comet requests are measured until they are completed,
+ * their timeouts and errors are counted in <code>asyncTimeout</code> and <code>asyncError</code> Counters.
  *
  * @author gquintana
  */
@@ -23,10 +36,55 @@ public class SimonValve extends ValveBase {
      */
     private static final String INFO =
             "org.javasimon.tomcat.SimonValve/3.2";
+    /**
+     * Time spent in next valves by the measured request of current thread, reused to avoid an allocation per measured request.
+     * Not shared between valves, which may be nested in the same pipeline
+     */
+    private final ThreadLocal<long[]> nextNanosHolder = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+    /**
+     * Default stopwatch source, null when a custom one was set
+     */
+    private TomcatRequestStopwatchSource requestStopwatchSource = new TomcatRequestStopwatchSource();
     /**
      * Stopwatch usage template
      */
-    private StopwatchTemplate<Request> stopwatchTemplate = new StopwatchTemplate<Request>(new TomcatRequestStopwatchSource());
+    private StopwatchTemplate<Request> stopwatchTemplate = new StopwatchTemplate<Request>(requestStopwatchSource);
+    /**
+     * Period in milliseconds between two accumulator folds
+     */
+    private long accumulatePeriod = 1000L;
+    /**
+     * Scheduler folding accumulators, when accumulation is enabled
+     */
+    private ScheduledExecutorService accumulatorScheduler;
+    /**
+     * Slow request log, null when disabled
+     */
+    private volatile SlowRequestLog slowRequestLog;
+    /**
+     * Requests longer than this threshold are logged, in milliseconds, 0 disables the log
+     */
+    private long slowRequestThreshold;
+    /**
+     * Number of slow requests kept
+     */
+    private int slowRequestCount = 100;
+    /**
+     * Name of the request note holding the timer of Comet requests
+     */
+    private static final String COMET_TIMER_NOTE = "org.javasimon.tomcat.cometTimer";
+
+    /**
+     * Constructor, asynchronous requests are supported
+     */
+    public SimonValve() {
+        super(true);
+    }
 
     /**
      * Change default stopwatch source {@see TomcatRequestStopwatchSource}.
@@ -35,6 +93,11 @@ public class SimonValve extends ValveBase {
      */
     public void setStopwatchSource(MonitorSource<Request, Stopwatch> stopwatchSource) {
         stopwatchTemplate = new StopwatchTemplate<Request>(stopwatchSource);
+        if (stopwatchSource instanceof TomcatRequestStopwatchSource) {
+            requestStopwatchSource = (TomcatRequestStopwatchSource) stopwatchSource;
+        } else {
+            requestStopwatchSource = null;
+        }
     }
 
     /**
@@ -42,14 +105,600 @@ public class SimonValve extends ValveBase {
      */
     @Override
     public void invoke(Request request, Response response) throws IOException, javax.servlet.ServletException {
-        Split split = stopwatchTemplate.start(request);
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // Asynchronous request is already measured since its first dispatch
+            getNext().invoke(request, response);
+        } else if (OverheadGovernor.shouldMeasure()) {
+            invokeMeasured(request, response);
+        } else {
+            invokeInstrumented(request, response, null);
+        }
+    }
+
+    /**
+     * Measure the time spent in this valve outside of next valves, for {@link OverheadGovernor}
+     */
+    private void invokeMeasured(Request request, Response response) throws IOException, javax.servlet.ServletException {
+        long start = System.nanoTime();
+        long[] nextNanos = nextNanosHolder.get();
+        nextNanos[0] = 0L;
         try {
+            invokeInstrumented(request, response, nextNanos);
+        } finally {
+            long duration = System.nanoTime() - start;
+            OverheadGovernor.recordRequest(duration - nextNanos[0], duration);
+        }
+    }
+
+    /**
+     * Invoke next valve
+     *
+     * @param nextNanos Time spent in next valves, in nanoseconds, null when not measured
+     */
+    private void invokeNext(Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        if (nextNanos == null) {
             getNext().invoke(request, response);
+        } else {
+            long start = System.nanoTime();
+            try {
+                getNext().invoke(request, response);
+            } finally {
+                nextNanos[0] += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Valve main method, once overhead measurement is decided
+     */
+    private void invokeInstrumented(Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        if (requestStopwatchSource == null) {
+            invokeTemplate(request, response, nextNanos);
+            return;
+        }
+        RequestMonitor requestMonitor = requestStopwatchSource.getRequestMonitor(request);
+        Sampler sampler = requestStopwatchSource.getSampler();
+        int weight = 1;
+        if (requestMonitor.isMonitored() && sampler != null) {
+            weight = sampler.sample();
+        }
+        if (requestMonitor.isMonitored() && weight > 0) {
+            weight = OverheadGovernor.sample(weight);
+            if (weight > 0) {
+                requestMonitor.recordSample(weight);
+            }
+        }
+        if (!requestMonitor.isMonitored() || weight == 0) {
+            invokeNext(request, response, nextNanos);
+        } else if (requestMonitor.getDbMonitor() != null) {
+            invokeAttributed(requestMonitor, request, response, nextNanos);
+        } else {
+            invokeMonitored(requestMonitor, request, response, nextNanos);
+        }
+    }
+
+    private void invokeMonitored(RequestMonitor requestMonitor, Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        if (requestMonitor.isAccumulated()) {
+            invokeAccumulate(requestMonitor, request, response, nextNanos);
+        } else {
+            invokeSplit(requestMonitor, request, response, nextNanos);
+        }
+    }
+
+    /**
+     * Collect database activity of the request, in the context of current thread
+     */
+    private void invokeAttributed(RequestMonitor requestMonitor, Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        RequestContext requestContext = RequestContext.begin();
+        try {
+            invokeMonitored(requestMonitor, request, response, nextNanos);
+        } finally {
+            requestContext.end();
+            requestMonitor.getDbMonitor().record(requestContext);
+        }
+    }
+
+    /**
+     * Valve main method with a custom stopwatch source
+     */
+    private void invokeTemplate(Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        Split split = stopwatchTemplate.start(request);
+        boolean async = false;
+        try {
+            invokeNext(request, response, nextNanos);
+            async = split != null && startAsync(null, split, 0L, request, response);
         } finally {
-            stopwatchTemplate.stop(split);
+            if (split != null && !async) {
+                split.stop();
+            }
+        }
+    }
+
+    /**
+     * Valve main method with split
+     */
+    private void invokeSplit(RequestMonitor requestMonitor, Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        Split split = requestMonitor.getStopwatch().start();
+        boolean async = false;
+        boolean failed = true;
+        try {
+            invokeNext(request, response, nextNanos);
+            failed = false;
+            async = startAsync(requestMonitor, split, 0L, request, response);
+        } finally {
+            if (!async) {
+                split.stop();
+                requestMonitor.record(split.runningFor());
+                recordStatus(requestMonitor, request, response, split.runningFor(), failed);
+                recordSlowRequest(request, response, split.runningFor());
+            }
+        }
+    }
+
+    /**
+     * Valve main method in accumulation or striped mode: no split is created,
+     * duration is recorded in the URI accumulator or striped Stopwatch
+     */
+    private void invokeAccumulate(RequestMonitor requestMonitor, Request request, Response response, long[] nextNanos) throws IOException, javax.servlet.ServletException {
+        long start = System.nanoTime();
+        boolean async = false;
+        boolean failed = true;
+        try {
+            invokeNext(request, response, nextNanos);
+            failed = false;
+            async = startAsync(requestMonitor, null, start, request, response);
+        } finally {
+            if (!async) {
+                long duration = System.nanoTime() - start;
+                requestMonitor.accumulate(duration);
+                requestMonitor.record(duration);
+                recordStatus(requestMonitor, request, response, duration, failed);
+                recordSlowRequest(request, response, duration);
+            }
+        }
+    }
+
+    /**
+     * Attach a timer to an asynchronous or Comet request, so that it is measured until completion.
+     * Completion of an asynchronous request is deferred by Tomcat until the first dispatch returns,
+     * so that the listener can't miss it.
+     *
+     * @return true if the request is asynchronous or Comet, and should not be measured by the caller
+     */
+    private boolean startAsync(RequestMonitor requestMonitor, Split split, long start, Request request, Response response) {
+        if (request.isAsync()) {
+            request.getAsyncContext().addListener(new AsyncRequestTimer(this, requestMonitor, split, start, request, response));
+            return true;
+        } else if (request.isComet()) {
+            request.setNote(COMET_TIMER_NOTE, new AsyncRequestTimer(this, requestMonitor, split, start, request, response));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the duration of a completed asynchronous or Comet request
+     *
+     * @param requestMonitor Request monitor, null with a custom stopwatch source
+     * @param split Split, null in accumulation or striped mode
+     * @param start Request start in nanoseconds, in accumulation or striped mode
+     */
+    void completeRequest(RequestMonitor requestMonitor, Split split, long start, Request request, Response response) {
+        long duration;
+        if (split == null) {
+            duration = System.nanoTime() - start;
+            requestMonitor.accumulate(duration);
+        } else {
+            split.stop();
+            duration = split.runningFor();
+        }
+        if (requestMonitor != null) {
+            requestMonitor.record(duration);
+            recordStatus(requestMonitor, request, response, duration, false);
+            recordSlowRequest(request, response, duration);
+        }
+    }
+
+    /**
+     * Record request duration by status class, and count exceptions: thrown through the valve,
+     * or caught by the container which then stores them in a request attribute
+     *
+     * @param failed Whether the next valve threw an exception, the response will be an error
+     */
+    private void recordStatus(RequestMonitor requestMonitor, Request request, Response response, long duration, boolean failed) {
+        if (requestMonitor.isStatusMonitored()) {
+            int status = failed ? 500 : response.getStatus();
+            requestMonitor.recordStatus(status, duration);
+            if (failed || (status >= 500 && request.getAttribute(RequestDispatcher.ERROR_EXCEPTION) != null)) {
+                requestMonitor.recordException();
+            }
+        }
+    }
+
+    /**
+     * Increase the Counter named after given request Stopwatch and suffix,
+     * resolved on demand since these events are rare
+     */
+    void countRequestEvent(Stopwatch stopwatch, String suffix) {
+        Counter counter;
+        if (requestStopwatchSource == null) {
+            counter = SimonManager.getCounter(stopwatch.getName() + Manager.HIERARCHY_DELIMITER + suffix);
+        } else {
+            counter = requestStopwatchSource.getSubCounter(stopwatch, suffix);
+        }
+        if (counter != null) {
+            counter.increase();
+        }
+    }
+
+    /**
+     * Comet event processing: measured Comet requests are completed by END and ERROR events
+     */
+    @Override
+    public void event(Request request, Response response, CometEvent event) throws IOException, javax.servlet.ServletException {
+        try {
+            getNext().event(request, response, event);
+        } finally {
+            CometEvent.EventType eventType = event.getEventType();
+            if (eventType == CometEvent.EventType.END || eventType == CometEvent.EventType.ERROR) {
+                AsyncRequestTimer timer = (AsyncRequestTimer) request.getNote(COMET_TIMER_NOTE);
+                if (timer != null) {
+                    request.removeNote(COMET_TIMER_NOTE);
+                    if (eventType == CometEvent.EventType.ERROR) {
+                        if (event.getEventSubType() == CometEvent.EventSubType.TIMEOUT) {
+                            timer.timeout();
+                        } else {
+                            timer.error();
+                        }
+                    }
+                    timer.complete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Log the request if it is slow
+     */
+    private void recordSlowRequest(Request request, Response response, long duration) {
+        final SlowRequestLog requestLog = slowRequestLog;
+        if (requestLog != null) {
+            requestLog.record(request.getRequestURI(), duration, response.getStatus(), RequestContext.getCurrentDbNanos());
+        }
+    }
+
+    /**
+     * Start accumulator folding, if needed
+     */
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        super.startInternal();
+        if (requestStopwatchSource != null && requestStopwatchSource.isAccumulate()) {
+            final TomcatRequestStopwatchSource stopwatchSource = requestStopwatchSource;
+            accumulatorScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SimonValve-accumulator");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            accumulatorScheduler.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    stopwatchSource.foldAccumulators();
+                }
+            }, accumulatePeriod, accumulatePeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop accumulator folding, and fold remaining durations
+     */
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        if (accumulatorScheduler != null) {
+            accumulatorScheduler.shutdown();
+            accumulatorScheduler = null;
+        }
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.foldAccumulators();
+        }
+        super.stopInternal();
+    }
+
+    public boolean isAccumulate() {
+        return requestStopwatchSource != null && requestStopwatchSource.isAccumulate();
+    }
+
+    /**
+     * Enable or disable accumulation mode: request durations are recorded without creating splits
+     * into per URI accumulators, which are folded into Stopwatches periodically.
+     * Stopwatches active and max active counters are not maintained in this mode.
+     */
+    public void setAccumulate(boolean accumulate) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setAccumulate(accumulate);
+        }
+    }
+
+    public boolean isStriped() {
+        return requestStopwatchSource != null && requestStopwatchSource.isStriped();
+    }
+
+    /**
+     * Enable or disable striped recording: request durations are recorded without creating splits
+     * into per URI striped Stopwatches, exposed by {@link StripedStopwatchMXBean}.
+     * URI Stopwatches are not updated in this mode.
+     */
+    public void setStriped(boolean striped) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setStriped(striped);
+        }
+    }
+
+    public boolean isHistograms() {
+        return requestStopwatchSource != null && requestStopwatchSource.isHistograms();
+    }
+
+    /**
+     * Enable or disable latency histograms per URI, percentiles are exposed by {@link HistogramMXBean}
+     */
+    public void setHistograms(boolean histograms) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setHistograms(histograms);
+        }
+    }
+
+    public long getSlowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    /**
+     * Change the duration from which requests are logged, the slow request log is emptied
+     * @param slowRequestThreshold Threshold in milliseconds, 0 disables the log
+     */
+    public void setSlowRequestThreshold(long slowRequestThreshold) {
+        this.slowRequestThreshold = slowRequestThreshold;
+        updateSlowRequestLog();
+    }
+
+    public int getSlowRequestCount() {
+        return slowRequestCount;
+    }
+
+    /**
+     * Change the number of slow requests kept, the slow request log is emptied
+     */
+    public void setSlowRequestCount(int slowRequestCount) {
+        this.slowRequestCount = slowRequestCount;
+        updateSlowRequestLog();
+    }
+
+    private void updateSlowRequestLog() {
+        slowRequestLog = slowRequestThreshold > 0L && slowRequestCount > 0 ? new SlowRequestLog(slowRequestThreshold, slowRequestCount) : null;
+    }
+
+    /**
+     * @return Most recent slow requests, slowest first: timestamp, duration, status, URI, thread and database time
+     */
+    public String[] getSlowRequests() {
+        final SlowRequestLog requestLog = slowRequestLog;
+        return requestLog == null ? new String[0] : requestLog.getSlowest(slowRequestCount);
+    }
+
+    public boolean isSqlAttribution() {
+        return requestStopwatchSource != null && requestStopwatchSource.isSqlAttribution();
+    }
+
+    /**
+     * Enable or disable the attribution of JDBC statement executions to request URIs:
+     * DB time, DB calls and N+1 suspects per URI. Requires {@link SimonJdbcInterceptor}.
+     */
+    public void setSqlAttribution(boolean sqlAttribution) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setSqlAttribution(sqlAttribution);
+        }
+    }
+
+    public int getNPlusOneThreshold() {
+        return requestStopwatchSource == null ? 0 : requestStopwatchSource.getNPlusOneThreshold();
+    }
+
+    public void setNPlusOneThreshold(int nPlusOneThreshold) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setNPlusOneThreshold(nPlusOneThreshold);
+        }
+    }
+
+    public boolean isStatusClasses() {
+        return requestStopwatchSource != null && requestStopwatchSource.isStatusClasses();
+    }
+
+    /**
+     * Enable or disable Stopwatches per status class (<code>2xx</code> to <code>5xx</code>)
+     * and <code>exceptions</code> Counters under each URI Stopwatch
+     */
+    public void setStatusClasses(boolean statusClasses) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setStatusClasses(statusClasses);
+        }
+    }
+
+    public boolean isRollingWindows() {
+        return requestStopwatchSource != null && requestStopwatchSource.isRollingWindows();
+    }
+
+    /**
+     * Enable or disable rolling window statistics per URI, exposed by {@link RollingWindowMXBean}.
+     * Windows are rotated by {@link SimonListener}.
+     */
+    public void setRollingWindows(boolean rollingWindows) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setRollingWindows(rollingWindows);
         }
     }
 
+    public double getSampleRate() {
+        return requestStopwatchSource == null ? 1D : requestStopwatchSource.getSampleRate();
+    }
+
+    /**
+     * Change the sampling rate of the default stopwatch source
+     *
+     * @param sampleRate Sampling rate between 0 (excluded) and 1, 0.1 means one request out of 10 is monitored
+     */
+    public void setSampleRate(double sampleRate) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setSampleRate(sampleRate);
+        }
+    }
+
+    public int getSampleBudget() {
+        return requestStopwatchSource == null ? 0 : requestStopwatchSource.getSampleBudget();
+    }
+
+    /**
+     * Change the sampling budget of the default stopwatch source
+     *
+     * @param sampleBudget Maximum number of monitored requests per second, 0 means no budget
+     */
+    public void setSampleBudget(int sampleBudget) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setSampleBudget(sampleBudget);
+        }
+    }
+
+    public long getAccumulatePeriod() {
+        return accumulatePeriod;
+    }
+
+    /**
+     * Change the period between two accumulator folds
+     *
+     * @param accumulatePeriod Period in milliseconds
+     */
+    public void setAccumulatePeriod(long accumulatePeriod) {
+        this.accumulatePeriod = accumulatePeriod;
+    }
+
+    public String getPrefix() {
+        return requestStopwatchSource == null ? null : requestStopwatchSource.getPrefix();
+    }
+
+    /**
+     * Change Simon name prefix of the default stopwatch source
+     *
+     * @param prefix Simon name prefix
+     */
+    public void setPrefix(String prefix) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setPrefix(prefix);
+        }
+    }
+
+    public int getCacheSize() {
+        return requestStopwatchSource == null ? 0 : requestStopwatchSource.getCacheSize();
+    }
+
+    /**
+     * Change the size of the URI to Stopwatch cache of the default stopwatch source
+     *
+     * @param cacheSize Maximum number of URIs, 0 to disable caching
+     */
+    public void setCacheSize(int cacheSize) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setCacheSize(cacheSize);
+        }
+    }
+
+    public String getIgnoredExtensions() {
+        return requestStopwatchSource == null ? null : requestStopwatchSource.getIgnoredExtensions();
+    }
+
+    /**
+     * Change the extensions of URIs which are not monitored by the default stopwatch source
+     *
+     * @param ignoredExtensions Comma separated list of extensions like <code>css,js</code>
+     */
+    public void setIgnoredExtensions(String ignoredExtensions) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setIgnoredExtensions(ignoredExtensions);
+        }
+    }
+
+    public String getIgnoredPrefixes() {
+        return requestStopwatchSource == null ? null : requestStopwatchSource.getIgnoredPrefixes();
+    }
+
+    /**
+     * Change the prefixes of URIs which are not monitored by the default stopwatch source
+     *
+     * @param ignoredPrefixes Comma separated list of URI prefixes like <code>/static/</code>
+     */
+    public void setIgnoredPrefixes(String ignoredPrefixes) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setIgnoredPrefixes(ignoredPrefixes);
+        }
+    }
+
+    public String getUriTemplates() {
+        return requestStopwatchSource == null ? null : requestStopwatchSource.getUriTemplates();
+    }
+
+    /**
+     * Change URI templates of the default stopwatch source
+     *
+     * @param uriTemplates Comma separated list of URI templates like <code>/orders/{id}</code>
+     */
+    public void setUriTemplates(String uriTemplates) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setUriTemplates(uriTemplates);
+        }
+    }
+
+    public boolean isCollapseIds() {
+        return requestStopwatchSource != null && requestStopwatchSource.isCollapseIds();
+    }
+
+    /**
+     * Enable or disable the replacement of numeric and UUID URI segments in the default stopwatch source
+     */
+    public void setCollapseIds(boolean collapseIds) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setCollapseIds(collapseIds);
+        }
+    }
+
+    public int getMaxMonitors() {
+        return requestStopwatchSource == null ? 0 : requestStopwatchSource.getMaxMonitors();
+    }
+
+    /**
+     * Change the maximum number of distinct Stopwatches produced by the default stopwatch source
+     *
+     * @param maxMonitors Maximum number of Stopwatches, 0 means unlimited
+     */
+    public void setMaxMonitors(int maxMonitors) {
+        if (requestStopwatchSource != null) {
+            requestStopwatchSource.setMaxMonitors(maxMonitors);
+        }
+    }
+
+    public long getDroppedLookupCount() {
+        return requestStopwatchSource == null ? 0L : requestStopwatchSource.getDroppedLookupCount();
+    }
+
+    public long getCacheHitCount() {
+        return requestStopwatchSource == null ? 0L : requestStopwatchSource.getCacheHitCount();
+    }
+
+    public long getCacheMissCount() {
+        return requestStopwatchSource == null ? 0L : requestStopwatchSource.getCacheMissCount();
+    }
+
+    public long getCacheEvictionCount() {
+        return requestStopwatchSource == null ? 0L : requestStopwatchSource.getCacheEvictionCount();
+    }
+
     @Override
     public String getInfo() {
         return INFO;
@@ -0,0 +1,156 @@
+package org.javasimon.tomcat;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size log of the most recent slow requests.
+ * Requests are written in a ring: a global sequence designates the slot to write, oldest entries are overwritten.
+ * Each slow request is an immutable entry published into its slot through an {@link AtomicReferenceArray},
+ * so that readers always see complete entries. A writer only replaces an older entry (compare and set),
+ * a late writer doesn't overwrite a more recent request having wrapped around the ring.
+ * Writing takes no lock and allocates a single entry, entries are only formatted when read.
+ *
+ * @author gquintana
+ */
+public class SlowRequestLog {
+    /**
+     * Requests longer than this threshold are logged, in nanoseconds
+     */
+    private final long thresholdNanos;
+    private final int capacity;
+    private final int mask;
+    /**
+     * Next sequence number to write
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * Logged requests, null when empty
+     */
+    private final AtomicReferenceArray<SlowRequest> slowRequests;
+
+    /**
+     * Constructor
+     *
+     * @param thresholdMillis Requests longer than this threshold are logged, in milliseconds
+     * @param capacity Number of logged requests, rounded up to a power of 2
+     */
+    public SlowRequestLog(long thresholdMillis, int capacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        int ringCapacity = 1;
+        while (ringCapacity < capacity && ringCapacity < (1 << 20)) {
+            ringCapacity <<= 1;
+        }
+        this.capacity = ringCapacity;
+        this.mask = ringCapacity - 1;
+        this.slowRequests = new AtomicReferenceArray<SlowRequest>(ringCapacity);
+    }
+
+    /**
+     * Log a request, if it is slow
+     *
+     * @param uri Request URI
+     * @param durationNanos Request duration in nanoseconds
+     * @param status HTTP status
+     * @param dbNanos Time spent in database in nanoseconds, -1 when unknown
+     */
+    public void record(String uri, long durationNanos, int status, long dbNanos) {
+        if (durationNanos < thresholdNanos) {
+            return;
+        }
+        long writeSequence = sequence.getAndIncrement();
+        int slot = (int) writeSequence & mask;
+        SlowRequest slowRequest = new SlowRequest(writeSequence, uri, durationNanos, status, Thread.currentThread().getName(), dbNanos, System.currentTimeMillis());
+        SlowRequest oldSlowRequest = slowRequests.get(slot);
+        while (oldSlowRequest == null || oldSlowRequest.sequence < writeSequence) {
+            if (slowRequests.compareAndSet(slot, oldSlowRequest, slowRequest)) {
+                return;
+            }
+            oldSlowRequest = slowRequests.get(slot);
+        }
+        // A more recent request was written in this slot meanwhile
+    }
+
+    /**
+     * Logged request, immutable
+     */
+    private static final class SlowRequest {
+        private final long sequence;
+        private final String uri;
+        private final long duration;
+        private final int status;
+        private final String threadName;
+        private final long dbNanos;
+        private final long timestamp;
+
+        private SlowRequest(long sequence, String uri, long duration, int status, String threadName, long dbNanos, long timestamp) {
+            this.sequence = sequence;
+            this.uri = uri;
+            this.duration = duration;
+            this.status = status;
+            this.threadName = threadName;
+            this.dbNanos = dbNanos;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Read logged requests, slowest first
+     *
+     * @param limit Maximum number of requests
+     * @return Formatted requests: timestamp, duration, status, URI, thread, database time
+     */
+    public String[] getSlowest(int limit) {
+        List<SlowRequest> slowRequests = new ArrayList<SlowRequest>(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            SlowRequest slowRequest = this.slowRequests.get(slot);
+            if (slowRequest != null) {
+                slowRequests.add(slowRequest);
+            }
+        }
+        Collections.sort(slowRequests, new Comparator<SlowRequest>() {
+            public int compare(SlowRequest slowRequest1, SlowRequest slowRequest2) {
+                return slowRequest1.duration < slowRequest2.duration ? 1 : (slowRequest1.duration == slowRequest2.duration ? 0 : -1);
+            }
+        });
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+        int count = Math.min(Math.max(0, limit), slowRequests.size());
+        String[] slowest = new String[count];
+        for (int i = 0; i < count; i++) {
+            SlowRequest slowRequest = slowRequests.get(i);
+            StringBuilder line = new StringBuilder(128)
+                .append(dateFormat.format(new Date(slowRequest.timestamp)))
+                .append(' ').append(TimeUnit.NANOSECONDS.toMillis(slowRequest.duration)).append("ms")
+                .append(' ').append(slowRequest.status)
+                .append(' ').append(slowRequest.uri)
+                .append(" thread=").append(slowRequest.threadName);
+            if (slowRequest.dbNanos >= 0L) {
+                line.append(" db=").append(TimeUnit.NANOSECONDS.toMillis(slowRequest.dbNanos)).append("ms");
+            }
+            slowest[i] = line.toString();
+        }
+        return slowest;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * @return Number of slow requests logged so far
+     */
+    public long getCount() {
+        return sequence.get();
+    }
+}
@@ -0,0 +1,214 @@
+package org.javasimon.tomcat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Simon;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+
+/**
+ * Exports Simon snapshots to a local append-only file, so that a sidecar can ship them.
+ * Each export samples and resets the Stopwatches used since previous export, samples Counters,
+ * and appends one line per Simon in line protocol:
+ * <pre>
+ * stopwatch,name=valve.orders count=12i,total=3400000i,min=120000i,max=900000i 1325376000000000000
+ * counter,name=jdbc.pool.active value=4i,min=0i,max=8i 1325376000000000000
+ * </pre>
+ * Durations are in nanoseconds, timestamps in nanoseconds since epoch.
+ * The file is written through an NIO channel and rotated when it exceeds a maximum size:
+ * <code>metrics.lp</code> becomes <code>metrics.lp.1</code>, <code>metrics.lp.1</code> becomes <code>metrics.lp.2</code>...
+ * Exports should be done by a single thread.
+ *
+ * @author gquintana
+ */
+public class SnapshotExporter {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * Buffered characters are written to the channel beyond this size
+     */
+    private static final int FLUSH_SIZE = 64 * 1024;
+    private final Manager manager;
+    private final File file;
+    /**
+     * File size beyond which the file is rotated, in bytes
+     */
+    private final long maxFileSize;
+    /**
+     * Number of rotated files kept
+     */
+    private final int maxFiles;
+    /**
+     * Line buffer, reused by each export
+     */
+    private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 1024);
+    private FileOutputStream outputStream;
+    private FileChannel channel;
+    /**
+     * Number of lines written by last export
+     */
+    private int lastLineCount;
+
+    /**
+     * Constructor
+     *
+     * @param manager Simon manager
+     * @param file Metrics file
+     * @param maxFileSize File size beyond which the file is rotated, in bytes
+     * @param maxFiles Number of rotated files kept
+     */
+    public SnapshotExporter(Manager manager, File file, long maxFileSize, int maxFiles) {
+        this.manager = manager;
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Sample all Simons and append them to the file
+     *
+     * @return Number of written lines
+     */
+    public synchronized int export() throws IOException {
+        long timestamp = System.currentTimeMillis() * 1000000L;
+        Collection<String> names = manager.getSimonNames();
+        int lineCount = 0;
+        buffer.setLength(0);
+        for (String name : names) {
+            Simon simon = manager.getSimon(name);
+            if (simon instanceof Stopwatch) {
+                if (((Stopwatch) simon).getCounter() > 0L) {
+                    appendStopwatch(name, ((Stopwatch) simon).sampleAndReset(), timestamp);
+                    lineCount++;
+                }
+            } else if (simon instanceof Counter) {
+                appendCounter(name, ((Counter) simon).sample(), timestamp);
+                lineCount++;
+            }
+            if (buffer.length() >= FLUSH_SIZE) {
+                flush();
+            }
+        }
+        flush();
+        lastLineCount = lineCount;
+        return lineCount;
+    }
+
+    private void appendStopwatch(String name, StopwatchSample sample, long timestamp) {
+        buffer.append("stopwatch,name=");
+        appendEscaped(name);
+        buffer.append(" count=").append(sample.getCounter())
+            .append("i,total=").append(sample.getTotal())
+            .append("i,min=").append(sample.getMin())
+            .append("i,max=").append(sample.getMax())
+            .append("i ").append(timestamp).append('\n');
+    }
+
+    private void appendCounter(String name, CounterSample sample, long timestamp) {
+        buffer.append("counter,name=");
+        appendEscaped(name);
+        buffer.append(" value=").append(sample.getCounter())
+            .append("i,min=").append(sample.getMin())
+            .append("i,max=").append(sample.getMax())
+            .append("i ").append(timestamp).append('\n');
+    }
+
+    /**
+     * Escape tag value: commas, spaces and equal signs
+     */
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == ' ' || c == '=') {
+                buffer.append('\\');
+            }
+            buffer.append(c);
+        }
+    }
+
+    /**
+     * Write buffered lines to the channel, and rotate the file if needed
+     */
+    private void flush() throws IOException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        if (channel == null) {
+            open();
+        }
+        ByteBuffer bytes = UTF_8.encode(CharBuffer.wrap(buffer));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        buffer.setLength(0);
+        if (channel.size() >= maxFileSize) {
+            rotate();
+        }
+    }
+
+    private void open() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        outputStream = new FileOutputStream(file, true);
+        channel = outputStream.getChannel();
+    }
+
+    /**
+     * Close current file and shift rotated files
+     */
+    private void rotate() throws IOException {
+        close();
+        File oldest = rotatedFile(maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Failed to delete " + oldest);
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File rotated = rotatedFile(i);
+            if (rotated.exists() && !rotated.renameTo(rotatedFile(i + 1))) {
+                throw new IOException("Failed to rename " + rotated);
+            }
+        }
+        if (maxFiles > 0 && !file.renameTo(rotatedFile(1))) {
+            throw new IOException("Failed to rename " + file);
+        } else if (maxFiles <= 0 && !file.delete()) {
+            throw new IOException("Failed to delete " + file);
+        }
+    }
+
+    private File rotatedFile(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    /**
+     * Close current file, it will be reopened by next export
+     */
+    public synchronized void close() throws IOException {
+        if (outputStream != null) {
+            try {
+                outputStream.close();
+            } finally {
+                outputStream = null;
+                channel = null;
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getLastLineCount() {
+        return lastLineCount;
+    }
+}
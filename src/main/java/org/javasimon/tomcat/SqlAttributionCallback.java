@@ -0,0 +1,35 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Split;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Callback charging statement executions to the current HTTP request, see {@link RequestContext},
+ * for Stopwatches whose name starts with a given prefix.
+ * Used for the Stopwatches of JavaSimon JDBC statement wrappers, which are not driven by this library.
+ *
+ * @author gquintana
+ */
+public class SqlAttributionCallback extends CallbackSkeleton {
+    /**
+     * Simon name prefix of SQL Stopwatches
+     */
+    private final String prefix;
+
+    /**
+     * Constructor
+     *
+     * @param prefix Simon name prefix of SQL Stopwatches, like <code>jdbc.sql.</code>
+     */
+    public SqlAttributionCallback(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void onStopwatchStop(Split split) {
+        String name = split.getStopwatch().getName();
+        if (name != null && name.startsWith(prefix)) {
+            RequestContext.chargeStatement(split.getStopwatch(), split.runningFor());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.javasimon.tomcat;
+
+/**
+ * Computes SQL fingerprints, so that queries differing only by their literals share the same monitor:
+ * <ul>
+ * <li>String and numeric literals are replaced by <code>?</code></li>
+ * <li>IN lists are collapsed: <code>in (?, ?, ?)</code> becomes <code>in (?)</code></li>
+ * <li>Comments are removed, whitespace is collapsed, keywords and identifiers are lower cased
+ * (quoted identifiers are kept as is)</li>
+ * </ul>
+ * Fingerprints are cached by SQL query, so that statements prepared again and again
+ * by the pool are fingerprinted once.
+ *
+ * @author gquintana
+ */
+public class SqlFingerprinter {
+    /**
+     * Fingerprints by SQL query
+     */
+    private final LruCache<String, String> cache;
+
+    /**
+     * Constructor
+     *
+     * @param cacheSize Maximum number of cached fingerprints, 0 disables the cache
+     */
+    public SqlFingerprinter(int cacheSize) {
+        this.cache = cacheSize > 0 ? new LruCache<String, String>(cacheSize) : null;
+    }
+
+    /**
+     * Get fingerprint of an SQL query, from cache when possible
+     *
+     * @param sql SQL query
+     * @return Fingerprint
+     */
+    public String fingerprint(String sql) {
+        if (cache == null) {
+            return normalize(sql);
+        }
+        String fingerprint = cache.get(sql);
+        if (fingerprint == null) {
+            fingerprint = normalize(sql);
+            cache.putIfAbsent(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    public LruCache<String, String> getCache() {
+        return cache;
+    }
+
+    /**
+     * Compute fingerprint of an SQL query, in a single pass
+     *
+     * @param sql SQL query
+     * @return Fingerprint
+     */
+    public static String normalize(String sql) {
+        final int length = sql.length();
+        final StringBuilder fingerprint = new StringBuilder(length);
+        boolean pendingSpace = false;
+        // Index of the opening parenthesis of an IN list containing only placeholders so far, -1 otherwise
+        int inListStart = -1;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                // Line comment
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                // Block comment
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                pendingSpace = true;
+                continue;
+            }
+            // Spaces are kept between tokens, except around parentheses and before commas
+            if (pendingSpace && fingerprint.length() > 0 && c != ',' && c != ')' && fingerprint.charAt(fingerprint.length() - 1) != '(') {
+                fingerprint.append(' ');
+            }
+            pendingSpace = false;
+            if (c == '\'') {
+                // String literal, quotes are escaped by doubling them
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                fingerprint.append('?');
+            } else if (Character.isDigit(c) && !isIdentifierEnd(fingerprint)) {
+                // Numeric literal
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                fingerprint.append('?');
+            } else if (c == '"' || c == '`') {
+                // Quoted identifier
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? length : end + 1;
+                fingerprint.append(sql, i, end);
+                i = end;
+                inListStart = -1;
+            } else {
+                if (c == '(') {
+                    inListStart = isInKeywordEnd(fingerprint) ? fingerprint.length() : -1;
+                } else if (c == ')') {
+                    if (inListStart >= 0 && fingerprint.length() > inListStart + 1) {
+                        fingerprint.setLength(inListStart + 1);
+                        fingerprint.append('?');
+                    }
+                    inListStart = -1;
+                } else if (c == ',') {
+                    pendingSpace = true;
+                } else if (c != '?') {
+                    inListStart = -1;
+                }
+                fingerprint.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * @return Fingerprint ends with an identifier or keyword
+     */
+    private static boolean isIdentifierEnd(StringBuilder fingerprint) {
+        return fingerprint.length() > 0 && isIdentifierPart(fingerprint.charAt(fingerprint.length() - 1));
+    }
+
+    /**
+     * @return Fingerprint ends with the <code>in</code> keyword, possibly followed by a space
+     */
+    private static boolean isInKeywordEnd(StringBuilder fingerprint) {
+        int end = fingerprint.length();
+        if (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end >= 2
+            && fingerprint.charAt(end - 2) == 'i' && fingerprint.charAt(end - 1) == 'n'
+            && (end == 2 || !isIdentifierPart(fingerprint.charAt(end - 3)));
+    }
+}
@@ -0,0 +1,87 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Manager;
+import org.javasimon.SimonManager;
+import org.javasimon.Stopwatch;
+
+/**
+ * Monitoring state resolved once for an SQL query.
+ * Used by {@link SimonJdbcInterceptor} in lightweight mode, to time statement executions
+ * without JavaSimon JDBC wrappers.
+ *
+ * @author gquintana
+ */
+public class SqlMonitor {
+    /**
+     * SQL query used to name the Stopwatch
+     */
+    private final String sql;
+    /**
+     * Stopwatch
+     */
+    private final Stopwatch stopwatch;
+    /**
+     * Latency histogram, null when disabled
+     */
+    private final LatencyHistogram histogram;
+
+    /**
+     * Constructor
+     *
+     * @param prefix Simon name prefix
+     * @param sql SQL query
+     * @param histograms Record durations into latency histograms
+     */
+    public SqlMonitor(String prefix, String sql, boolean histograms) {
+        this.sql = sql;
+        this.stopwatch = SimonManager.getStopwatch(getName(prefix, sql));
+        if (stopwatch.getNote() == null) {
+            stopwatch.setNote(sql);
+        }
+        this.histogram = histograms ? Histograms.getHistogram(stopwatch.getName()) : null;
+    }
+
+    /**
+     * Compute Simon name from SQL: prefix, SQL command type and SQL hash code,
+     * like JavaSimon JDBC wrappers do
+     */
+    private static String getName(String prefix, String sql) {
+        return prefix + Manager.HIERARCHY_DELIMITER + "sql" + Manager.HIERARCHY_DELIMITER + getType(sql) + Manager.HIERARCHY_DELIMITER + sql.hashCode();
+    }
+
+    /**
+     * Get SQL command type: first keyword in lower case
+     */
+    private static String getType(String sql) {
+        int start = 0;
+        final int length = sql.length();
+        while (start < length && !Character.isLetter(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < length && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return start == end ? "other" : sql.substring(start, end).toLowerCase();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Stopwatch getStopwatch() {
+        return stopwatch;
+    }
+
+    /**
+     * Record statement execution duration
+     *
+     * @param ns Duration in nanoseconds
+     */
+    public void record(long ns) {
+        stopwatch.addTime(ns);
+        if (histogram != null && OverheadGovernor.isHistogramsEnabled()) {
+            histogram.record(ns);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Stopwatch;
+
+/**
+ * Collects durations for a Stopwatch without allocating,
+ * then folds them into the Stopwatch periodically.
+ * Durations are recorded into pre-allocated buffers, striped by thread
+ * so that threads seldom contend. A buffer is folded into the Stopwatch
+ * by the recording thread when it is full, or by {@link #fold()}.
+ *
+ * @author gquintana
+ */
+public class StopwatchAccumulator {
+    /**
+     * Target Stopwatch
+     */
+    private final Stopwatch stopwatch;
+    /**
+     * Buffers
+     */
+    private final Stripe[] stripes;
+    /**
+     * Mask used to compute stripe index from thread id
+     */
+    private final int stripeMask;
+
+    /**
+     * Constructor
+     *
+     * @param stopwatch Target Stopwatch
+     * @param stripeCount Number of stripes, rounded up to a power of 2
+     * @param stripeCapacity Number of durations per stripe
+     */
+    public StopwatchAccumulator(Stopwatch stopwatch, int stripeCount, int stripeCapacity) {
+        this.stopwatch = stopwatch;
+        int count = 1;
+        while (count < stripeCount) {
+            count *= 2;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * Constructor, with 2 stripes per processor
+     *
+     * @param stopwatch Target Stopwatch
+     */
+    public StopwatchAccumulator(Stopwatch stopwatch) {
+        this(stopwatch, 2 * Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param ns Duration in nanoseconds
+     */
+    public void add(long ns) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        synchronized (stripe) {
+            if (stripe.size == stripe.durations.length) {
+                stripe.fold(stopwatch);
+            }
+            stripe.durations[stripe.size++] = ns;
+        }
+    }
+
+    /**
+     * Fold all recorded durations into the Stopwatch
+     */
+    public void fold() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.fold(stopwatch);
+            }
+        }
+    }
+
+    public Stopwatch getStopwatch() {
+        return stopwatch;
+    }
+
+    /**
+     * Buffer of durations
+     */
+    private static final class Stripe {
+        private final long[] durations;
+        private int size;
+
+        private Stripe(int capacity) {
+            this.durations = new long[capacity];
+        }
+
+        private void fold(Stopwatch stopwatch) {
+            for (int i = 0; i < size; i++) {
+                stopwatch.addTime(durations[i]);
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.javasimon.tomcat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stopwatch statistics recorded into per-core cells, which are summed when read.
+ * Threads are spread over cells by thread id, so that each cell is mostly updated by a single thread:
+ * recording is a few uncontended atomic updates, instead of the synchronized bookkeeping of Stopwatches.
+ * Cells are padded to a cache line so that neighbouring cells don't share one.
+ * Counts, totals, min and max are read cell by cell, not atomically.
+ *
+ * @author gquintana
+ */
+public class StripedStopwatch {
+    /**
+     * Number of longs per cell, 64 bytes
+     */
+    private static final int CELL_SIZE = 8;
+    private static final int COUNT = 0;
+    private static final int TOTAL = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    /**
+     * Cells, with a leading padding cell
+     */
+    private final AtomicLongArray cells;
+    private final int cellCount;
+    /**
+     * Mask used to compute cell index from thread id
+     */
+    private final int cellMask;
+
+    /**
+     * Constructor
+     *
+     * @param cellCount Number of cells, rounded up to a power of 2
+     */
+    public StripedStopwatch(int cellCount) {
+        int count = 1;
+        while (count < cellCount) {
+            count *= 2;
+        }
+        this.cellCount = count;
+        this.cellMask = count - 1;
+        this.cells = new AtomicLongArray((count + 1) * CELL_SIZE);
+        reset();
+    }
+
+    /**
+     * Constructor, with 2 cells per processor
+     */
+    public StripedStopwatch() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param ns Duration in nanoseconds
+     */
+    public void record(long ns) {
+        int cell = (((int) Thread.currentThread().getId() & cellMask) + 1) * CELL_SIZE;
+        cells.incrementAndGet(cell + COUNT);
+        cells.addAndGet(cell + TOTAL, ns);
+        long min = cells.get(cell + MIN);
+        while (ns < min && !cells.compareAndSet(cell + MIN, min, ns)) {
+            min = cells.get(cell + MIN);
+        }
+        long max = cells.get(cell + MAX);
+        while (ns > max && !cells.compareAndSet(cell + MAX, max, ns)) {
+            max = cells.get(cell + MAX);
+        }
+    }
+
+    public long getCount() {
+        return sum(COUNT);
+    }
+
+    /**
+     * @return Total duration in nanoseconds
+     */
+    public long getTotal() {
+        return sum(TOTAL);
+    }
+
+    /**
+     * @return Minimum duration in nanoseconds, {@link Long#MAX_VALUE} if nothing was recorded
+     */
+    public long getMin() {
+        long min = Long.MAX_VALUE;
+        for (int cell = 1; cell <= cellCount; cell++) {
+            min = Math.min(min, cells.get(cell * CELL_SIZE + MIN));
+        }
+        return min;
+    }
+
+    /**
+     * @return Maximum duration in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMax() {
+        long max = 0L;
+        for (int cell = 1; cell <= cellCount; cell++) {
+            max = Math.max(max, cells.get(cell * CELL_SIZE + MAX));
+        }
+        return max;
+    }
+
+    private long sum(int offset) {
+        long sum = 0L;
+        for (int cell = 1; cell <= cellCount; cell++) {
+            sum += cells.get(cell * CELL_SIZE + offset);
+        }
+        return sum;
+    }
+
+    /**
+     * Empty all cells, durations recorded concurrently may be lost
+     */
+    public void reset() {
+        for (int cell = 1; cell <= cellCount; cell++) {
+            int base = cell * CELL_SIZE;
+            cells.set(base + COUNT, 0L);
+            cells.set(base + TOTAL, 0L);
+            cells.set(base + MIN, Long.MAX_VALUE);
+            cells.set(base + MAX, 0L);
+        }
+    }
+}
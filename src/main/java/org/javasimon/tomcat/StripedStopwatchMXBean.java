@@ -0,0 +1,28 @@
+package org.javasimon.tomcat;
+
+/**
+ * JMX interface exposing striped Stopwatches.
+ *
+ * @author gquintana
+ */
+public interface StripedStopwatchMXBean {
+    /**
+     * @return Simon names having a striped Stopwatch
+     */
+    String[] getNames();
+
+    /**
+     * Sample striped Stopwatch of given Simon
+     *
+     * @param name Simon name
+     * @return Count, total, min, max and mean, null if there is no striped Stopwatch
+     */
+    StripedStopwatchSample getSample(String name);
+
+    /**
+     * Reset striped Stopwatch of given Simon
+     *
+     * @param name Simon name
+     */
+    void reset(String name);
+}
@@ -0,0 +1,27 @@
+package org.javasimon.tomcat;
+
+import java.util.List;
+
+/**
+ * JMX bean exposing {@link StripedStopwatches}.
+ *
+ * @author gquintana
+ */
+public class StripedStopwatchMXBeanImpl implements StripedStopwatchMXBean {
+    public String[] getNames() {
+        List<String> names = StripedStopwatches.getNames();
+        return names.toArray(new String[names.size()]);
+    }
+
+    public StripedStopwatchSample getSample(String name) {
+        StripedStopwatch stopwatch = StripedStopwatches.findStopwatch(name);
+        return stopwatch == null ? null : new StripedStopwatchSample(name, stopwatch);
+    }
+
+    public void reset(String name) {
+        StripedStopwatch stopwatch = StripedStopwatches.findStopwatch(name);
+        if (stopwatch != null) {
+            stopwatch.reset();
+        }
+    }
+}
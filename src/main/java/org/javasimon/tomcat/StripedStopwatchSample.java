@@ -0,0 +1,66 @@
+package org.javasimon.tomcat;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Values summed from the cells of a {@link StripedStopwatch}, durations are in nanoseconds.
+ *
+ * @author gquintana
+ */
+public class StripedStopwatchSample {
+    private final String name;
+    private final long count;
+    private final long total;
+    private final long min;
+    private final long max;
+    private final double mean;
+
+    @ConstructorProperties({"name", "count", "total", "min", "max", "mean"})
+    public StripedStopwatchSample(String name, long count, long total, long min, long max, double mean) {
+        this.name = name;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+    }
+
+    /**
+     * Sample given striped Stopwatch
+     *
+     * @param name Simon name
+     * @param stopwatch Striped Stopwatch
+     */
+    public StripedStopwatchSample(String name, StripedStopwatch stopwatch) {
+        this.name = name;
+        this.count = stopwatch.getCount();
+        this.total = stopwatch.getTotal();
+        this.min = stopwatch.getMin();
+        this.max = stopwatch.getMax();
+        this.mean = count == 0L ? 0D : ((double) total) / count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+}
@@ -0,0 +1,96 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of striped Stopwatches, indexed by Simon name.
+ * Filled by {@link SimonValve} when striped recording is enabled,
+ * read through {@link StripedStopwatchMXBean}.
+ * The registry is bounded, and cleared by {@link SimonListener} when Tomcat stops, so that it doesn't leak across redeployments.
+ *
+ * @author gquintana
+ */
+public final class StripedStopwatches {
+    /**
+     * Striped Stopwatches by Simon name
+     */
+    private static final ConcurrentMap<String, StripedStopwatch> STOPWATCHES = new ConcurrentHashMap<String, StripedStopwatch>();
+    /**
+     * Number of striped Stopwatches, reserved before creation so that the maximum is never exceeded
+     */
+    private static final AtomicInteger STOPWATCH_COUNT = new AtomicInteger();
+
+    private StripedStopwatches() {
+    }
+
+    /**
+     * Get or create the striped Stopwatch of given Simon
+     *
+     * @param name Simon name
+     * @param maxStopwatches Maximum number of striped Stopwatches, 0 means unlimited
+     * @return Striped Stopwatch or null if the maximum is reached
+     */
+    public static StripedStopwatch getStopwatch(String name, int maxStopwatches) {
+        StripedStopwatch stopwatch = STOPWATCHES.get(name);
+        if (stopwatch == null) {
+            if (!reserve(maxStopwatches)) {
+                return null;
+            }
+            StripedStopwatch newStopwatch = new StripedStopwatch();
+            stopwatch = STOPWATCHES.putIfAbsent(name, newStopwatch);
+            if (stopwatch == null) {
+                stopwatch = newStopwatch;
+            } else {
+                STOPWATCH_COUNT.decrementAndGet();
+            }
+        }
+        return stopwatch;
+    }
+
+    /**
+     * Reserve room for a new striped Stopwatch
+     */
+    private static boolean reserve(int maxStopwatches) {
+        while (true) {
+            int count = STOPWATCH_COUNT.get();
+            if (maxStopwatches > 0 && count >= maxStopwatches) {
+                return false;
+            }
+            if (STOPWATCH_COUNT.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get the striped Stopwatch of given Simon
+     *
+     * @param name Simon name
+     * @return Striped Stopwatch or null if none
+     */
+    public static StripedStopwatch findStopwatch(String name) {
+        return STOPWATCHES.get(name);
+    }
+
+    /**
+     * @return Sorted Simon names having a striped Stopwatch
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<String>(STOPWATCHES.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Remove all striped Stopwatches
+     */
+    public static synchronized void clear() {
+        STOPWATCHES.clear();
+        STOPWATCH_COUNT.set(0);
+    }
+}
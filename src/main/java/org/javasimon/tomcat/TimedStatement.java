@@ -0,0 +1,282 @@
+package org.javasimon.tomcat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * Statement delegating to the pool statement and timing <code>execute*</code> methods,
+ * used by {@link SimonJdbcInterceptor} in lightweight mode, and for basic statements with <code>fingerprintBasicStatements</code>.
+ * Calls are plain interface calls: no proxy is created and no method is invoked by reflection.
+ * Executions given an SQL query are recorded into the monitor of this query,
+ * other ones into the monitor of the SQL given on statement creation, or the batch monitor for basic statements.
+ * JDBC 4.2 methods (<code>executeLarge*</code>) are not delegated, like in JavaSimon JDBC wrappers.
+ * Like connections, statements are used by a single thread at a time.
+ *
+ * @author gquintana
+ */
+class TimedStatement<S extends Statement> implements Statement {
+    /**
+     * Interceptor of the connection which created the statement
+     */
+    protected final SimonJdbcInterceptor interceptor;
+    /**
+     * Pool statement
+     */
+    protected final S statement;
+    /**
+     * Monitor of the SQL given on statement creation, null for basic statements
+     */
+    private final SqlMonitor sqlMonitor;
+
+    TimedStatement(SimonJdbcInterceptor interceptor, S statement, SqlMonitor sqlMonitor) {
+        this.interceptor = interceptor;
+        this.statement = statement;
+        this.sqlMonitor = sqlMonitor;
+    }
+
+    /**
+     * @return Monitor of executions which are not given an SQL query
+     */
+    protected final SqlMonitor getSqlMonitor() {
+        return sqlMonitor == null ? interceptor.getBatchSqlMonitor() : sqlMonitor;
+    }
+
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.execute(sql, columnIndexes);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.execute(sql, columnNames);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.execute(sql, autoGeneratedKeys);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public boolean execute(String sql) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.execute(sql);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public int[] executeBatch() throws SQLException {
+        SqlMonitor executeSqlMonitor = getSqlMonitor();
+        long start = System.nanoTime();
+        try {
+            return statement.executeBatch();
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public ResultSet executeQuery(String sql) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.executeQuery(sql);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(sql, columnIndexes);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(sql, columnNames);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(sql, autoGeneratedKeys);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public int executeUpdate(String sql) throws SQLException {
+        SqlMonitor executeSqlMonitor = interceptor.getSqlMonitor(sql);
+        long start = System.nanoTime();
+        try {
+            return statement.executeUpdate(sql);
+        } finally {
+            interceptor.recordExecution(executeSqlMonitor, System.nanoTime() - start);
+        }
+    }
+
+    public void addBatch(String sql) throws SQLException {
+        statement.addBatch(sql);
+    }
+
+    public void cancel() throws SQLException {
+        statement.cancel();
+    }
+
+    public void clearBatch() throws SQLException {
+        statement.clearBatch();
+    }
+
+    public void clearWarnings() throws SQLException {
+        statement.clearWarnings();
+    }
+
+    public void close() throws SQLException {
+        statement.close();
+    }
+
+    public void closeOnCompletion() throws SQLException {
+        statement.closeOnCompletion();
+    }
+
+    public Connection getConnection() throws SQLException {
+        return statement.getConnection();
+    }
+
+    public int getFetchDirection() throws SQLException {
+        return statement.getFetchDirection();
+    }
+
+    public int getFetchSize() throws SQLException {
+        return statement.getFetchSize();
+    }
+
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return statement.getGeneratedKeys();
+    }
+
+    public int getMaxFieldSize() throws SQLException {
+        return statement.getMaxFieldSize();
+    }
+
+    public int getMaxRows() throws SQLException {
+        return statement.getMaxRows();
+    }
+
+    public boolean getMoreResults() throws SQLException {
+        return statement.getMoreResults();
+    }
+
+    public boolean getMoreResults(int current) throws SQLException {
+        return statement.getMoreResults(current);
+    }
+
+    public int getQueryTimeout() throws SQLException {
+        return statement.getQueryTimeout();
+    }
+
+    public ResultSet getResultSet() throws SQLException {
+        return statement.getResultSet();
+    }
+
+    public int getResultSetConcurrency() throws SQLException {
+        return statement.getResultSetConcurrency();
+    }
+
+    public int getResultSetHoldability() throws SQLException {
+        return statement.getResultSetHoldability();
+    }
+
+    public int getResultSetType() throws SQLException {
+        return statement.getResultSetType();
+    }
+
+    public int getUpdateCount() throws SQLException {
+        return statement.getUpdateCount();
+    }
+
+    public SQLWarning getWarnings() throws SQLException {
+        return statement.getWarnings();
+    }
+
+    public boolean isCloseOnCompletion() throws SQLException {
+        return statement.isCloseOnCompletion();
+    }
+
+    public boolean isClosed() throws SQLException {
+        return statement.isClosed();
+    }
+
+    public boolean isPoolable() throws SQLException {
+        return statement.isPoolable();
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return statement.isWrapperFor(iface);
+    }
+
+    public void setCursorName(String name) throws SQLException {
+        statement.setCursorName(name);
+    }
+
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        statement.setEscapeProcessing(enable);
+    }
+
+    public void setFetchDirection(int direction) throws SQLException {
+        statement.setFetchDirection(direction);
+    }
+
+    public void setFetchSize(int rows) throws SQLException {
+        statement.setFetchSize(rows);
+    }
+
+    public void setMaxFieldSize(int max) throws SQLException {
+        statement.setMaxFieldSize(max);
+    }
+
+    public void setMaxRows(int max) throws SQLException {
+        statement.setMaxRows(max);
+    }
+
+    public void setPoolable(boolean poolable) throws SQLException {
+        statement.setPoolable(poolable);
+    }
+
+    public void setQueryTimeout(int seconds) throws SQLException {
+        statement.setQueryTimeout(seconds);
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return statement.unwrap(iface);
+    }
+}
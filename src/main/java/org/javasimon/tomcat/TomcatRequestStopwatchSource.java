@@ -1,12 +1,19 @@
 package org.javasimon.tomcat;
 
 import org.apache.catalina.connector.Request;
+import org.javasimon.Counter;
 import org.javasimon.Manager;
+import org.javasimon.SimonException;
 import org.javasimon.SimonManager;
 import org.javasimon.Stopwatch;
-import org.javasimon.javaee.SimonServletFilterUtils;
 import org.javasimon.source.AbstractStopwatchSource;
-import org.javasimon.utils.Replacer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Stopwatch produced for Tomcat HTTP Request.
@@ -18,17 +25,145 @@ public class TomcatRequestStopwatchSource extends AbstractStopwatchSource<Reques
      */
     private String prefix="org.javasimon.tomcat.http";
     /**
-     * Replace Unallowed characters by _
+     * Converts request URIs into Simon names
+     */
+    private final UriNormalizer uriNormalizer = new UriNormalizer();
+    /**
+     * Request URI to request monitor cache, null when caching is disabled
+     */
+    private volatile LruCache<String, RequestMonitor> monitorCache = new LruCache<String, RequestMonitor>(1000);
+    /**
+     * Generation of the Simon manager state, incremented when the manager is cleared,
+     * see {@link #invalidateCaches()}
+     */
+    private static final AtomicInteger MANAGER_GENERATION = new AtomicInteger();
+    /**
+     * Manager generation and enabled state the cached request monitors were resolved under, see {@link #getCacheGeneration()}
+     */
+    private volatile int cacheGeneration;
+    /**
+     * Request monitors depend on the request URI only, unless {@link #isMonitored(Request)}
+     * or {@link #getMonitorName(Request)} are overridden, see {@link #isCacheable()}
+     */
+    private final boolean cacheable = !isOverridden("isMonitored") && !isOverridden("getMonitorName");
+    /**
+     * Suffix of the Simon name of the Counter estimating request count when sampling
+     */
+    public static final String SAMPLED_COUNT_SUFFIX = "sampledCount";
+    /**
+     * Suffix of the Simon name of the Counter of asynchronous requests which timed out
+     */
+    public static final String ASYNC_TIMEOUT_SUFFIX = "asyncTimeout";
+    /**
+     * Suffix of the Simon name of the Counter of asynchronous requests which failed
+     */
+    public static final String ASYNC_ERROR_SUFFIX = "asyncError";
+    /**
+     * Simon name of requests exceeding the maximum number of monitors.
+     * URIs normalized into this name, optionally followed by underscores, get one more underscore,
+     * so that a real <code>/other</code> URI is not mixed up with overflowing requests.
+     */
+    public static final String OTHER_NAME = "other";
+    /**
+     * URI templates
+     */
+    private String uriTemplates;
+    /**
+     * Replace numeric and UUID segments of URIs
+     */
+    private boolean collapseIds;
+    /**
+     * Maps URIs onto URI templates
+     */
+    private volatile UriTemplateMatcher uriTemplateMatcher = new UriTemplateMatcher(null, false);
+    /**
+     * Maximum number of distinct monitors, 0 means unlimited
+     */
+    private int maxMonitors;
+    /**
+     * Names of monitors produced so far, when their number is limited
+     */
+    private final Set<String> monitorNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * Number of monitor names, reserved before a name is added so that the maximum is never exceeded
+     */
+    private final AtomicInteger monitorNameCount = new AtomicInteger();
+    /**
+     * Number of monitor name lookups folded into the other monitor
      */
-    private final Replacer unallowedCharacterReplacer = SimonServletFilterUtils.createUnallowedCharsReplacer("_");
+    private final AtomicLong droppedLookupCount = new AtomicLong();
     /**
-     * Remove JSESSIONID attribute
+     * Ignored URI extensions
      */
-    private final Replacer jsessionParameterReplacer = new Replacer("[;&]?JSESSIONID=[^;?/&]*", "", Replacer.Modificator.IGNORE_CASE);
+    private String ignoredExtensions = UriFilter.DEFAULT_EXTENSIONS;
     /**
-     * Replace Slash by.
+     * Ignored URI prefixes
      */
-    private final Replacer slashReplacer = new Replacer("[/]", Manager.HIERARCHY_DELIMITER);
+    private String ignoredPrefixes;
+    /**
+     * Filters ignored URIs
+     */
+    private volatile UriFilter uriFilter = new UriFilter(ignoredExtensions, ignoredPrefixes);
+    /**
+     * Record durations into accumulators instead of splits
+     */
+    private boolean accumulate;
+    /**
+     * Stopwatch name to accumulator map
+     */
+    private final ConcurrentMap<String, StopwatchAccumulator> accumulators = new ConcurrentHashMap<String, StopwatchAccumulator>();
+    /**
+     * Record durations into striped Stopwatches instead of Stopwatches
+     */
+    private boolean striped;
+    /**
+     * Record durations into latency histograms
+     */
+    private boolean histograms;
+    /**
+     * Record durations into rolling window statistics
+     */
+    private boolean rollingWindows;
+    /**
+     * Simon manager
+     */
+    private final Manager manager;
+    /**
+     * Sampling rate
+     */
+    private double sampleRate = 1D;
+    /**
+     * Maximum number of sampled requests per second, 0 means no budget
+     */
+    private int sampleBudget;
+    /**
+     * Request sampler, null when all requests are monitored
+     */
+    private volatile Sampler sampler;
+    /**
+     * Default number of executions of the same statement from which a request is an N+1 suspect
+     */
+    public static final int DEFAULT_N_PLUS_ONE_THRESHOLD = 10;
+    /**
+     * Charge statement executions to request URIs, see {@link DbMonitor}
+     */
+    private boolean sqlAttribution;
+    /**
+     * Number of executions of the same statement from which a request is an N+1 suspect
+     */
+    private int nPlusOneThreshold = DEFAULT_N_PLUS_ONE_THRESHOLD;
+    /**
+     * Suffixes of the Simon names of the Stopwatches per status class, from 2xx to 5xx
+     */
+    public static final String[] STATUS_CLASS_SUFFIXES = {"2xx", "3xx", "4xx", "5xx"};
+    /**
+     * Suffix of the Simon name of the Counter of requests which failed with an exception
+     */
+    public static final String EXCEPTIONS_SUFFIX = "exceptions";
+    /**
+     * Record durations per status class, and count exceptions
+     */
+    private boolean statusClasses;
     /**
      * Constructor with {@link org.javasimon.Manager}.
      *
@@ -36,41 +171,92 @@ public class TomcatRequestStopwatchSource extends AbstractStopwatchSource<Reques
      */
     public TomcatRequestStopwatchSource(Manager manager) {
         super(manager);
+        this.manager = manager;
+        this.cacheGeneration = getCacheGeneration();
     }
 
     public TomcatRequestStopwatchSource() {
-        super(SimonManager.manager());
+        this(SimonManager.manager());
     }
 
     /**
-     * Compute Simon name from HTTP Request URI
+     * Compute Simon name from HTTP Request URI.
+     * URI is first mapped onto URI templates, then, when the maximum number of monitors is reached,
+     * new names are replaced by the {@link #OTHER_NAME} one.
      * @param request HTTP Request
      * @return Simon name
      */
     @Override
     protected String getMonitorName(Request request) {
-        String monitorName=request.getRequestURI();
-        monitorName=jsessionParameterReplacer.process(monitorName);
-        monitorName=unallowedCharacterReplacer.process(monitorName);
-        monitorName=slashReplacer.process(monitorName);
-        if (prefix!=null && !prefix.isEmpty()) {
-            monitorName=prefix+monitorName;
+        String uri = uriTemplateMatcher.apply(request.getRequestURI());
+        return limitMonitorNames(escapeOtherName(uriNormalizer.normalize(prefix, uri)));
+    }
+
+    /**
+     * @return Simon name of requests exceeding the maximum number of monitors
+     */
+    private String getOtherName() {
+        return prefix == null || prefix.isEmpty() ? OTHER_NAME : prefix + Manager.HIERARCHY_DELIMITER + OTHER_NAME;
+    }
+
+    /**
+     * Reserve the {@link #OTHER_NAME} Simon name: a name made of it followed by zero or more underscores
+     * gets one more underscore. Distinct URIs still get distinct names.
+     * @param monitorName Simon name
+     * @return Same Simon name or escaped Simon name
+     */
+    private String escapeOtherName(String monitorName) {
+        String otherName = getOtherName();
+        if (!monitorName.startsWith(otherName)) {
+            return monitorName;
+        }
+        for (int i = otherName.length(); i < monitorName.length(); i++) {
+            if (monitorName.charAt(i) != '_') {
+                return monitorName;
+            }
+        }
+        return monitorName + '_';
+    }
+
+    /**
+     * Enforce maximum number of distinct monitors
+     * @param monitorName Simon name
+     * @return Same Simon name or other Simon name
+     */
+    private String limitMonitorNames(String monitorName) {
+        if (maxMonitors <= 0 || monitorNames.contains(monitorName)) {
+            return monitorName;
+        }
+        while (true) {
+            int count = monitorNameCount.get();
+            if (count >= maxMonitors) {
+                break;
+            }
+            if (monitorNameCount.compareAndSet(count, count + 1)) {
+                if (!monitorNames.add(monitorName)) {
+                    // Added concurrently by another thread
+                    monitorNameCount.decrementAndGet();
+                }
+                return monitorName;
+            }
         }
-        return monitorName;
+        droppedLookupCount.incrementAndGet();
+        return getOtherName();
     }
 
     /**
-     * Indicates which uri should be monitored. CSS, JS and Images are not monitored by defaut.
+     * Indicates which uri should be monitored. CSS, JS and Images are not monitored by defaut,
+     * see {@link #setIgnoredExtensions(String)} and {@link #setIgnoredPrefixes(String)}.
      * Override this method to customize filtering.
      * @param request Request
      * @return Monitored or not?
      */
     @Override
     public boolean isMonitored(Request request) {
-        String uri = request.getRequestURI().toLowerCase();
-        return !(uri.endsWith(".css") || uri.endsWith(".png") || uri.endsWith(".gif") || uri.endsWith(".jpg") || uri.endsWith(".js"));
+        String uri = request.getRequestURI();
+        return uri != null && !uriFilter.isIgnored(uri);
     }
-    //659.50
+
     /**
      * Get a stopwatch for given HTTP request.
      * @param request HTTP request
@@ -85,11 +271,429 @@ public class TomcatRequestStopwatchSource extends AbstractStopwatchSource<Reques
         return stopwatch;
     }
 
+    /**
+     * Invalidate the request monitor caches of all sources, they are emptied on next request.
+     * Called by {@link SimonListener} when the Simon manager is cleared.
+     * Enabling or disabling the manager, even programmatically or through JMX, is detected by each source.
+     */
+    public static void invalidateCaches() {
+        MANAGER_GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return Manager generation combined with the manager enabled state
+     */
+    private int getCacheGeneration() {
+        return (MANAGER_GENERATION.get() << 1) | (manager.isEnabled() ? 1 : 0);
+    }
+
+    /**
+     * Check whether a request monitor resolving method is overridden by a subclass
+     */
+    private boolean isOverridden(String methodName) {
+        for (Class<?> type = getClass(); type != TomcatRequestStopwatchSource.class; type = type.getSuperclass()) {
+            try {
+                type.getDeclaredMethod(methodName, Request.class);
+                return true;
+            } catch (NoSuchMethodException noSuchMethodException) {
+                // Not declared by this class, check its superclass
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether request monitors can be cached by request URI.
+     * False when {@link #isMonitored(Request)} or {@link #getMonitorName(Request)} are overridden,
+     * as they may depend on more than the URI: override this method to return true when they don't.
+     *
+     * @return Request monitors cached or not?
+     */
+    protected boolean isCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Get the monitoring state for given HTTP request.
+     * Result is cached by request URI, so that Simon name computation, filtering
+     * and Stopwatch lookup are only done once per distinct URI, see {@link #isCacheable()}.
+     *
+     * @param request HTTP request
+     * @return Request monitor, {@link RequestMonitor#NOT_MONITORED} when request is not monitored
+     */
+    public RequestMonitor getRequestMonitor(Request request) {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        final String uri = request.getRequestURI();
+        if (cache == null || uri == null || !isCacheable()) {
+            return createRequestMonitor(request);
+        }
+        final int generation = getCacheGeneration();
+        if (generation != cacheGeneration) {
+            // Cached Stopwatches were resolved before the manager was cleared, enabled or disabled
+            cacheGeneration = generation;
+            cache.clear();
+        }
+        RequestMonitor requestMonitor = cache.get(uri);
+        if (requestMonitor == null) {
+            requestMonitor = createRequestMonitor(request);
+            if (getCacheGeneration() != generation) {
+                // Manager changed meanwhile, the request monitor may hold detached Stopwatches
+                return requestMonitor;
+            }
+            RequestMonitor cachedRequestMonitor = cache.putIfAbsent(uri, requestMonitor);
+            if (cachedRequestMonitor != null) {
+                requestMonitor = cachedRequestMonitor;
+            }
+        }
+        return requestMonitor;
+    }
+
+    /**
+     * Resolve the monitoring state for given HTTP request, called on cache miss.
+     * @param request HTTP request
+     * @return Request monitor
+     */
+    protected RequestMonitor createRequestMonitor(Request request) {
+        if (isMonitored(request)) {
+            Stopwatch stopwatch = getMonitor(request);
+            RequestMonitor requestMonitor = new RequestMonitor(stopwatch);
+            StripedStopwatch stripedStopwatch = striped ? StripedStopwatches.getStopwatch(stopwatch.getName(), maxMonitors) : null;
+            if (stripedStopwatch != null) {
+                requestMonitor.setStripedStopwatch(stripedStopwatch);
+            } else if (accumulate) {
+                requestMonitor.setAccumulator(getAccumulator(stopwatch));
+            }
+            if (histograms) {
+                requestMonitor.setHistogram(Histograms.getHistogram(stopwatch.getName()));
+            }
+            if (rollingWindows) {
+                requestMonitor.setRollingStatistics(RollingWindows.getStatistics(stopwatch.getName()));
+            }
+            // Governor samples requests from its SAMPLED level, even without a sampler
+            if (sampler != null || OverheadGovernor.isEnabled()) {
+                requestMonitor.setSampledCounter(getSubCounter(stopwatch, SAMPLED_COUNT_SUFFIX));
+            }
+            if (statusClasses) {
+                Stopwatch[] statusStopwatches = new Stopwatch[STATUS_CLASS_SUFFIXES.length];
+                for (int i = 0; i < STATUS_CLASS_SUFFIXES.length; i++) {
+                    statusStopwatches[i] = getSubStopwatch(stopwatch, STATUS_CLASS_SUFFIXES[i]);
+                }
+                requestMonitor.setStatusMonitors(statusStopwatches, getSubCounter(stopwatch, EXCEPTIONS_SUFFIX));
+            }
+            if (sqlAttribution) {
+                requestMonitor.setDbMonitor(new DbMonitor(getSubStopwatch(stopwatch, DbMonitor.DB_SUFFIX),
+                    getSubCounter(stopwatch, DbMonitor.DB_CALLS_SUFFIX), getSubCounter(stopwatch, DbMonitor.N_PLUS_ONE_SUFFIX), nPlusOneThreshold));
+            }
+            return requestMonitor;
+        } else {
+            return RequestMonitor.NOT_MONITORED;
+        }
+    }
+
+    /**
+     * Get the Counter named after given Stopwatch and suffix
+     * @return Counter or null if another kind of Simon has this name
+     */
+    protected Counter getSubCounter(Stopwatch stopwatch, String suffix) {
+        try {
+            return manager.getCounter(stopwatch.getName() + Manager.HIERARCHY_DELIMITER + suffix);
+        } catch (SimonException simonException) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the Stopwatch named after given Stopwatch and suffix
+     * @return Stopwatch or null if another kind of Simon has this name
+     */
+    protected Stopwatch getSubStopwatch(Stopwatch stopwatch, String suffix) {
+        try {
+            return manager.getStopwatch(stopwatch.getName() + Manager.HIERARCHY_DELIMITER + suffix);
+        } catch (SimonException simonException) {
+            return null;
+        }
+    }
+
+    /**
+     * Get or create the accumulator of given Stopwatch
+     */
+    private StopwatchAccumulator getAccumulator(Stopwatch stopwatch) {
+        StopwatchAccumulator accumulator = accumulators.get(stopwatch.getName());
+        if (accumulator == null) {
+            StopwatchAccumulator newAccumulator = new StopwatchAccumulator(stopwatch);
+            accumulator = accumulators.putIfAbsent(stopwatch.getName(), newAccumulator);
+            if (accumulator == null) {
+                accumulator = newAccumulator;
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * Fold durations recorded by accumulators into their Stopwatches
+     */
+    public void foldAccumulators() {
+        for (StopwatchAccumulator accumulator : accumulators.values()) {
+            accumulator.fold();
+        }
+    }
+
+    public boolean isAccumulate() {
+        return accumulate;
+    }
+
+    /**
+     * Enable or disable accumulation: durations are recorded in per URI accumulators without creating splits,
+     * and must be folded into Stopwatches by calling {@link #foldAccumulators()}.
+     */
+    public void setAccumulate(boolean accumulate) {
+        this.accumulate = accumulate;
+        clearCache();
+        if (!accumulate) {
+            foldAccumulators();
+            accumulators.clear();
+        }
+    }
+
+    public boolean isHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Enable or disable latency histograms, see {@link Histograms}
+     */
+    public void setHistograms(boolean histograms) {
+        this.histograms = histograms;
+        clearCache();
+    }
+
+    public boolean isRollingWindows() {
+        return rollingWindows;
+    }
+
+    /**
+     * Enable or disable rolling window statistics, see {@link RollingWindows}
+     */
+    public void setRollingWindows(boolean rollingWindows) {
+        this.rollingWindows = rollingWindows;
+        clearCache();
+    }
+
+    /**
+     * @return Request sampler, null when all requests are monitored
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Change the sampling rate, 0.1 means one request out of 10 is monitored
+     * @param sampleRate Sampling rate between 0 (excluded) and 1
+     */
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+        updateSampler();
+    }
+
+    public int getSampleBudget() {
+        return sampleBudget;
+    }
+
+    /**
+     * Change the sampling budget, sampling rate is adjusted every second to monitor about this number of requests
+     * @param sampleBudget Maximum number of monitored requests per second, 0 means no budget
+     */
+    public void setSampleBudget(int sampleBudget) {
+        this.sampleBudget = sampleBudget;
+        updateSampler();
+    }
+
+    public boolean isSqlAttribution() {
+        return sqlAttribution;
+    }
+
+    /**
+     * Enable or disable the attribution of statement executions to request URIs
+     */
+    public void setSqlAttribution(boolean sqlAttribution) {
+        this.sqlAttribution = sqlAttribution;
+        clearCache();
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    /**
+     * Change the number of executions of the same statement from which a request is counted as an N+1 suspect
+     */
+    public void setNPlusOneThreshold(int nPlusOneThreshold) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        clearCache();
+    }
+
+    public boolean isStriped() {
+        return striped;
+    }
+
+    /**
+     * Enable or disable striped recording: durations are recorded into per-core cells of {@link StripedStopwatch}es,
+     * summed when read, instead of Stopwatches. Takes precedence over accumulation.
+     */
+    public void setStriped(boolean striped) {
+        this.striped = striped;
+        clearCache();
+    }
+
+    public boolean isStatusClasses() {
+        return statusClasses;
+    }
+
+    /**
+     * Enable or disable Stopwatches per status class (2xx to 5xx) and exception Counters under each URI Stopwatch
+     */
+    public void setStatusClasses(boolean statusClasses) {
+        this.statusClasses = statusClasses;
+        clearCache();
+    }
+
+    private void updateSampler() {
+        sampler = sampleRate < 1D || sampleBudget > 0 ? new Sampler(sampleRate, sampleBudget) : null;
+        clearCache();
+    }
+
+    /**
+     * Empty request monitor cache, so that cached Stopwatches are resolved again.
+     * Caches of all sources are emptied by {@link #invalidateCaches()} when the Simon manager is cleared,
+     * and when the manager is enabled or disabled.
+     */
+    public void clearCache() {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return Maximum number of URIs in request monitor cache, 0 when caching is disabled
+     */
+    public int getCacheSize() {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        return cache == null ? 0 : cache.getMaxSize();
+    }
+
+    /**
+     * Change request monitor cache size, existing cache content is lost.
+     * @param cacheSize Maximum number of URIs, 0 to disable caching
+     */
+    public void setCacheSize(int cacheSize) {
+        monitorCache = cacheSize > 0 ? new LruCache<String, RequestMonitor>(cacheSize) : null;
+    }
+
+    public long getCacheHitCount() {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        return cache == null ? 0L : cache.getHitCount();
+    }
+
+    public long getCacheMissCount() {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        return cache == null ? 0L : cache.getMissCount();
+    }
+
+    public long getCacheEvictionCount() {
+        final LruCache<String, RequestMonitor> cache = monitorCache;
+        return cache == null ? 0L : cache.getEvictionCount();
+    }
+
+    public String getIgnoredExtensions() {
+        return ignoredExtensions;
+    }
+
+    /**
+     * Change the extensions of URIs which are not monitored
+     * @param ignoredExtensions Comma separated list of extensions like <code>css,js</code>
+     */
+    public void setIgnoredExtensions(String ignoredExtensions) {
+        this.ignoredExtensions = ignoredExtensions;
+        this.uriFilter = new UriFilter(ignoredExtensions, ignoredPrefixes);
+        clearCache();
+    }
+
+    public String getIgnoredPrefixes() {
+        return ignoredPrefixes;
+    }
+
+    /**
+     * Change the prefixes of URIs which are not monitored
+     * @param ignoredPrefixes Comma separated list of URI prefixes like <code>/static/</code>
+     */
+    public void setIgnoredPrefixes(String ignoredPrefixes) {
+        this.ignoredPrefixes = ignoredPrefixes;
+        this.uriFilter = new UriFilter(ignoredExtensions, ignoredPrefixes);
+        clearCache();
+    }
+
+    public String getUriTemplates() {
+        return uriTemplates;
+    }
+
+    /**
+     * Change URI templates
+     * @param uriTemplates Comma separated list of URI templates like <code>/orders/{id}</code>
+     */
+    public void setUriTemplates(String uriTemplates) {
+        this.uriTemplates = uriTemplates;
+        this.uriTemplateMatcher = new UriTemplateMatcher(uriTemplates, collapseIds);
+        clearCache();
+    }
+
+    public boolean isCollapseIds() {
+        return collapseIds;
+    }
+
+    /**
+     * Enable or disable the replacement of numeric and UUID segments of URIs by <code>{id}</code>
+     */
+    public void setCollapseIds(boolean collapseIds) {
+        this.collapseIds = collapseIds;
+        this.uriTemplateMatcher = new UriTemplateMatcher(uriTemplates, collapseIds);
+        clearCache();
+    }
+
+    public int getMaxMonitors() {
+        return maxMonitors;
+    }
+
+    /**
+     * Change the maximum number of distinct monitors,
+     * requests exceeding it are aggregated into the {@link #OTHER_NAME} monitor
+     * @param maxMonitors Maximum number of monitors, 0 means unlimited
+     */
+    public void setMaxMonitors(int maxMonitors) {
+        this.maxMonitors = maxMonitors;
+        monitorNames.clear();
+        monitorNameCount.set(0);
+        clearCache();
+    }
+
+    /**
+     * @return Number of monitor name lookups which were replaced by the other monitor name.
+     * Lookups are done on request monitor cache misses, a dropped name may be counted several times.
+     */
+    public long getDroppedLookupCount() {
+        return droppedLookupCount.get();
+    }
+
     public String getPrefix() {
         return prefix;
     }
 
     public void setPrefix(String prefix) {
         this.prefix = prefix;
+        clearCache();
     }
 }
\ No newline at end of file
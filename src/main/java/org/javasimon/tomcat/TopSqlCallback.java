@@ -0,0 +1,41 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.javasimon.callback.CallbackSkeleton;
+
+/**
+ * Callback recording statement executions into a {@link TopSqlReport},
+ * for Stopwatches whose name starts with a given prefix.
+ * Used for the Stopwatches of JavaSimon JDBC statement wrappers, which are not driven by this library.
+ *
+ * @author gquintana
+ */
+public class TopSqlCallback extends CallbackSkeleton {
+    /**
+     * Simon name prefix of SQL Stopwatches
+     */
+    private final String prefix;
+    private final TopSqlReport topSqlReport;
+
+    /**
+     * Constructor
+     *
+     * @param prefix Simon name prefix of SQL Stopwatches, like <code>jdbc.sql.</code>
+     * @param topSqlReport Report fed with statement executions
+     */
+    public TopSqlCallback(String prefix, TopSqlReport topSqlReport) {
+        this.prefix = prefix;
+        this.topSqlReport = topSqlReport;
+    }
+
+    @Override
+    public void onStopwatchStop(Split split) {
+        Stopwatch stopwatch = split.getStopwatch();
+        String name = stopwatch.getName();
+        if (name != null && name.startsWith(prefix)) {
+            // JavaSimon JDBC wrappers put the SQL query in the Stopwatch note
+            topSqlReport.record(name, stopwatch.getNote(), split.runningFor());
+        }
+    }
+}
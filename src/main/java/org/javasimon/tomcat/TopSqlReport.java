@@ -0,0 +1,224 @@
+package org.javasimon.tomcat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded report of the heaviest SQL statements, fed by {@link SimonJdbcInterceptor}
+ * with the same timings as the Stopwatches, so that no other interceptor is needed.
+ * Memory is fixed whatever the number of distinct statements:
+ * <ul>
+ * <li>Top by total time uses the weighted Space-Saving algorithm: when the top is full,
+ * a new statement replaces the lightest one and inherits its total time as error.
+ * Heavy hitters are guaranteed to be kept, their total time is overestimated by at most the error.</li>
+ * <li>Top by max time keeps the statements having the slowest executions: when the top is full,
+ * a new statement replaces the one having the lowest max time, if it is slower.</li>
+ * </ul>
+ * Each top is an indexed min-heap, the lightest statement is at its root:
+ * updates and evictions are a lookup and a sift of the updated entry, without scanning the top.
+ * Each top has its own lock, held only while updating it.
+ *
+ * @author gquintana
+ */
+public class TopSqlReport implements TopSqlReportMXBean {
+    /**
+     * Statement entry, reused when evicted
+     */
+    private static final class Entry {
+        private String name;
+        private String sql;
+        private long count;
+        private long totalTime;
+        private long maxTime;
+        private long totalTimeError;
+        /**
+         * Position in the heap of its top
+         */
+        private int index;
+
+        private void set(String name, String sql, long ns, long totalTimeError) {
+            this.name = name;
+            this.sql = sql;
+            this.count = 1L;
+            this.totalTime = totalTimeError + ns;
+            this.maxTime = ns;
+            this.totalTimeError = totalTimeError;
+        }
+
+        private void add(long ns) {
+            count++;
+            totalTime += ns;
+            if (ns > maxTime) {
+                maxTime = ns;
+            }
+        }
+
+        private TopSqlSample sample() {
+            return new TopSqlSample(name, sql, count, totalTime, maxTime, totalTimeError);
+        }
+    }
+
+    /**
+     * Bounded top of statements, min-heap ordered by total time or by max time
+     */
+    private static final class Top {
+        private final boolean byMaxTime;
+        private final Entry[] entries;
+        private final Map<String, Entry> entriesByName;
+        private int entryCount;
+
+        private Top(int size, boolean byMaxTime) {
+            this.byMaxTime = byMaxTime;
+            this.entries = new Entry[size];
+            this.entriesByName = new HashMap<String, Entry>(size * 2);
+            for (int i = 0; i < size; i++) {
+                entries[i] = new Entry();
+                entries[i].index = i;
+            }
+        }
+
+        private long weight(Entry entry) {
+            return byMaxTime ? entry.maxTime : entry.totalTime;
+        }
+
+        private synchronized void record(String name, String sql, long ns) {
+            Entry entry = entriesByName.get(name);
+            if (entry != null) {
+                entry.add(ns);
+            } else if (entryCount < entries.length) {
+                entry = entries[entryCount];
+                entry.set(name, sql, ns, 0L);
+                entriesByName.put(name, entry);
+                siftUp(entryCount++);
+                return;
+            } else if (entries.length == 0) {
+                return;
+            } else {
+                // Lightest statement is at the root
+                entry = entries[0];
+                if (byMaxTime) {
+                    if (ns <= entry.maxTime) {
+                        return;
+                    }
+                    entriesByName.remove(entry.name);
+                    entry.set(name, sql, ns, 0L);
+                } else {
+                    entriesByName.remove(entry.name);
+                    entry.set(name, sql, ns, entry.totalTime);
+                }
+                entriesByName.put(name, entry);
+            }
+            // Weights only grow
+            siftDown(entry.index);
+        }
+
+        private void siftUp(int index) {
+            Entry entry = entries[index];
+            while (index > 0) {
+                int parentIndex = (index - 1) >>> 1;
+                Entry parent = entries[parentIndex];
+                if (weight(parent) <= weight(entry)) {
+                    break;
+                }
+                move(parent, index);
+                index = parentIndex;
+            }
+            move(entry, index);
+        }
+
+        private void siftDown(int index) {
+            Entry entry = entries[index];
+            int half = entryCount >>> 1;
+            while (index < half) {
+                int childIndex = 2 * index + 1;
+                Entry child = entries[childIndex];
+                int rightIndex = childIndex + 1;
+                if (rightIndex < entryCount && weight(entries[rightIndex]) < weight(child)) {
+                    childIndex = rightIndex;
+                    child = entries[childIndex];
+                }
+                if (weight(entry) <= weight(child)) {
+                    break;
+                }
+                move(child, index);
+                index = childIndex;
+            }
+            move(entry, index);
+        }
+
+        private void move(Entry entry, int index) {
+            entries[index] = entry;
+            entry.index = index;
+        }
+
+        private synchronized TopSqlSample[] sample(Comparator<TopSqlSample> comparator) {
+            TopSqlSample[] samples = new TopSqlSample[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                samples[i] = entries[i].sample();
+            }
+            Arrays.sort(samples, comparator);
+            return samples;
+        }
+
+        private synchronized void reset() {
+            entriesByName.clear();
+            entryCount = 0;
+        }
+    }
+
+    private static final Comparator<TopSqlSample> TOTAL_TIME_DESC = new Comparator<TopSqlSample>() {
+        public int compare(TopSqlSample sample1, TopSqlSample sample2) {
+            return sample1.getTotalTime() < sample2.getTotalTime() ? 1 : (sample1.getTotalTime() == sample2.getTotalTime() ? 0 : -1);
+        }
+    };
+    private static final Comparator<TopSqlSample> MAX_TIME_DESC = new Comparator<TopSqlSample>() {
+        public int compare(TopSqlSample sample1, TopSqlSample sample2) {
+            return sample1.getMaxTime() < sample2.getMaxTime() ? 1 : (sample1.getMaxTime() == sample2.getMaxTime() ? 0 : -1);
+        }
+    };
+    private final int size;
+    private final Top totalTimeTop;
+    private final Top maxTimeTop;
+
+    /**
+     * Constructor
+     *
+     * @param size Maximum number of statements in each top
+     */
+    public TopSqlReport(int size) {
+        this.size = size;
+        this.totalTimeTop = new Top(size, false);
+        this.maxTimeTop = new Top(size, true);
+    }
+
+    /**
+     * Record a statement execution
+     *
+     * @param name Stopwatch name, identifies the statement
+     * @param sql SQL query, displayed
+     * @param ns Execution duration in nanoseconds
+     */
+    public void record(String name, String sql, long ns) {
+        totalTimeTop.record(name, sql, ns);
+        maxTimeTop.record(name, sql, ns);
+    }
+
+    public TopSqlSample[] getTopByTotalTime() {
+        return totalTimeTop.sample(TOTAL_TIME_DESC);
+    }
+
+    public TopSqlSample[] getTopByMaxTime() {
+        return maxTimeTop.sample(MAX_TIME_DESC);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void reset() {
+        totalTimeTop.reset();
+        maxTimeTop.reset();
+    }
+}
@@ -0,0 +1,28 @@
+package org.javasimon.tomcat;
+
+/**
+ * JMX interface exposing the heaviest SQL statements.
+ *
+ * @author gquintana
+ */
+public interface TopSqlReportMXBean {
+    /**
+     * @return Statements having the highest total execution time, heaviest first
+     */
+    TopSqlSample[] getTopByTotalTime();
+
+    /**
+     * @return Statements having the highest maximum execution time, slowest first
+     */
+    TopSqlSample[] getTopByMaxTime();
+
+    /**
+     * @return Maximum number of statements in each top
+     */
+    int getSize();
+
+    /**
+     * Empty both tops
+     */
+    void reset();
+}
@@ -0,0 +1,63 @@
+package org.javasimon.tomcat;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Statement entry read from a {@link TopSqlReport}, durations are in nanoseconds.
+ *
+ * @author gquintana
+ */
+public class TopSqlSample {
+    private final String name;
+    private final String sql;
+    private final long count;
+    private final long totalTime;
+    private final long maxTime;
+    private final long totalTimeError;
+
+    @ConstructorProperties({"name", "sql", "count", "totalTime", "maxTime", "totalTimeError"})
+    public TopSqlSample(String name, String sql, long count, long totalTime, long maxTime, long totalTimeError) {
+        this.name = name;
+        this.sql = sql;
+        this.count = count;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.totalTimeError = totalTimeError;
+    }
+
+    /**
+     * @return Stopwatch name
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return Number of executions since the statement entered the report
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Total time, may be overestimated by at most {@link #getTotalTimeError()}
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return Maximum overestimation of total time, inherited from the evicted entry
+     */
+    public long getTotalTimeError() {
+        return totalTimeError;
+    }
+}
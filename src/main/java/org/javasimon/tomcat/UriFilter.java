@@ -0,0 +1,135 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filter of request URIs which should not be monitored, like static resources.
+ * Ignored extensions are compiled into a suffix trie, which is walked backwards
+ * from the end of the URI, case insensitively and without allocating.
+ *
+ * @author gquintana
+ */
+public class UriFilter {
+    /**
+     * Extensions ignored by default: CSS, JS and Images
+     */
+    public static final String DEFAULT_EXTENSIONS = "css,png,gif,jpg,js";
+    /**
+     * Suffix trie root, each level matches one character, from the end of the URI
+     */
+    private final Node extensionTrie = new Node();
+    /**
+     * Ignored URI prefixes
+     */
+    private final String[] prefixes;
+
+    /**
+     * Constructor
+     *
+     * @param extensions Comma separated list of ignored extensions (leading dot is optional), may be null
+     * @param prefixes Comma separated list of ignored URI prefixes, may be null
+     */
+    public UriFilter(String extensions, String prefixes) {
+        for (String extension : split(extensions)) {
+            addExtension(extension.startsWith(".") ? extension : "." + extension);
+        }
+        List<String> prefixList = split(prefixes);
+        this.prefixes = prefixList.toArray(new String[prefixList.size()]);
+    }
+
+    /**
+     * Split comma separated list and trim items
+     */
+    private static List<String> split(String values) {
+        List<String> valueList = new ArrayList<String>();
+        if (values != null) {
+            for (String value : values.split(",")) {
+                value = value.trim();
+                if (!value.isEmpty()) {
+                    valueList.add(value);
+                }
+            }
+        }
+        return valueList;
+    }
+
+    /**
+     * Add extension, including its dot, to the suffix trie
+     */
+    private void addExtension(String extension) {
+        Node node = extensionTrie;
+        for (int i = extension.length() - 1; i >= 0; i--) {
+            node = node.getOrAddChild(Character.toLowerCase(extension.charAt(i)));
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * Indicates whether request URI should not be monitored
+     *
+     * @param uri Request URI
+     * @return true when URI has an ignored extension or prefix
+     */
+    public boolean isIgnored(String uri) {
+        Node node = extensionTrie;
+        for (int i = uri.length() - 1; i >= 0; i--) {
+            node = node.getChild(Character.toLowerCase(uri.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        for (String prefix : prefixes) {
+            if (uri.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Suffix trie node
+     */
+    private static final class Node {
+        /**
+         * Child characters
+         */
+        private char[] keys = new char[0];
+        /**
+         * Child nodes, same order as keys
+         */
+        private Node[] children = new Node[0];
+        /**
+         * An extension ends here
+         */
+        private boolean terminal;
+
+        private Node getChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node getOrAddChild(char key) {
+            Node child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                char[] newKeys = new char[keys.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, keys.length);
+                newKeys[keys.length] = key;
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newChildren[children.length] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+}
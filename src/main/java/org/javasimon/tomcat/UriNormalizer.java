@@ -0,0 +1,154 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Manager;
+import org.javasimon.javaee.SimonServletFilterUtils;
+import org.javasimon.utils.Replacer;
+
+/**
+ * Converts request URIs into Simon names in a single pass, without regular expressions:<ul>
+ * <li>Remove JSESSIONID attribute</li>
+ * <li>Replace unallowed characters by _</li>
+ * <li>Replace slash by {@link Manager#HIERARCHY_DELIMITER}</li>
+ * </ul>
+ * Produces the same names as the former chain of {@link Replacer}s.
+ * Characters are written into a buffer reused by each thread.
+ *
+ * @author gquintana
+ */
+public class UriNormalizer {
+    /**
+     * JSESSIONID attribute name, upper case
+     */
+    private static final String JSESSIONID = "JSESSIONID=";
+    /**
+     * Characters ending JSESSIONID attribute value
+     */
+    private static final String JSESSIONID_END = ";?/&";
+    /**
+     * Replacement of unallowed characters
+     */
+    private static final String REPLACEMENT = "_";
+    /**
+     * Buffers larger than this are not kept by threads
+     */
+    private static final int MAX_BUFFER_CAPACITY = 1024;
+    /**
+     * Allowed ASCII characters, other characters are unallowed.
+     * Computed from {@link SimonServletFilterUtils#createUnallowedCharsReplacer(String)}
+     * so that it stays in line with the servlet filter.
+     */
+    private static final boolean[] ALLOWED_CHARS = new boolean[128];
+    /**
+     * Whether a run of unallowed characters is replaced once or character by character
+     */
+    private static final boolean COLLAPSE_UNALLOWED_RUN;
+
+    static {
+        Replacer unallowedCharacterReplacer = SimonServletFilterUtils.createUnallowedCharsReplacer(REPLACEMENT);
+        char unallowedChar = 0;
+        for (char c = 0; c < ALLOWED_CHARS.length; c++) {
+            String s = String.valueOf(c);
+            ALLOWED_CHARS[c] = s.equals(unallowedCharacterReplacer.process(s));
+            if (!ALLOWED_CHARS[c] && unallowedChar == 0) {
+                unallowedChar = c;
+            }
+        }
+        String unallowedRun = new String(new char[]{unallowedChar, unallowedChar});
+        COLLAPSE_UNALLOWED_RUN = unallowedCharacterReplacer.process(unallowedRun).equals(REPLACEMENT);
+    }
+
+    /**
+     * Per thread buffer
+     */
+    private final ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    /**
+     * Compute Simon name from request URI
+     *
+     * @param prefix Simon name prefix, may be null or empty
+     * @param uri Request URI
+     * @return Simon name
+     */
+    public String normalize(String prefix, String uri) {
+        StringBuilder builder = buffer.get();
+        builder.setLength(0);
+        if (prefix != null) {
+            builder.append(prefix);
+        }
+        final int length = uri.length();
+        boolean unallowedRun = false;
+        int index = 0;
+        while (index < length) {
+            int jsessionLength = jsessionLength(uri, index);
+            if (jsessionLength > 0) {
+                index += jsessionLength;
+                continue;
+            }
+            int codePoint = uri.codePointAt(index);
+            if (codePoint < ALLOWED_CHARS.length && ALLOWED_CHARS[codePoint]) {
+                if (codePoint == '/') {
+                    builder.append(Manager.HIERARCHY_DELIMITER);
+                } else {
+                    builder.append((char) codePoint);
+                }
+                unallowedRun = false;
+            } else {
+                if (!(unallowedRun && COLLAPSE_UNALLOWED_RUN)) {
+                    builder.append(REPLACEMENT);
+                }
+                unallowedRun = true;
+            }
+            index += Character.charCount(codePoint);
+        }
+        String name = builder.toString();
+        if (builder.capacity() > MAX_BUFFER_CAPACITY) {
+            buffer.remove();
+        }
+        return name;
+    }
+
+    /**
+     * Length of the JSESSIONID attribute (with its leading separator if any) starting at given index
+     *
+     * @return Attribute length, 0 if there is no JSESSIONID attribute at this index
+     */
+    private static int jsessionLength(String uri, int start) {
+        int nameStart;
+        char c = uri.charAt(start);
+        if ((c == ';' || c == '&') && matchesJsessionId(uri, start + 1)) {
+            nameStart = start + 1;
+        } else if (matchesJsessionId(uri, start)) {
+            nameStart = start;
+        } else {
+            return 0;
+        }
+        int end = nameStart + JSESSIONID.length();
+        final int length = uri.length();
+        while (end < length && JSESSIONID_END.indexOf(uri.charAt(end)) < 0) {
+            end++;
+        }
+        return end - start;
+    }
+
+    /**
+     * Case insensitive (ASCII only) match of JSESSIONID attribute name at given index
+     */
+    private static boolean matchesJsessionId(String uri, int start) {
+        if (start + JSESSIONID.length() > uri.length()) {
+            return false;
+        }
+        for (int i = 0; i < JSESSIONID.length(); i++) {
+            char expected = JSESSIONID.charAt(i);
+            char actual = uri.charAt(start + i);
+            if (actual != expected && !(expected >= 'A' && expected <= 'Z' && actual == expected + ('a' - 'A'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
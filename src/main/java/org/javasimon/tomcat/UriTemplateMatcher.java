@@ -0,0 +1,160 @@
+package org.javasimon.tomcat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Maps request URIs containing path parameters onto URI templates,
+ * so that <code>/orders/12345</code> and <code>/orders/67890</code> share the same Simon.<ul>
+ * <li>Configured templates like <code>/orders/{id}</code>: a segment between braces matches any segment</li>
+ * <li>Optionally, numeric and UUID segments are replaced by <code>{id}</code></li>
+ * </ul>
+ *
+ * @author gquintana
+ */
+public class UriTemplateMatcher {
+    /**
+     * Replacement of collapsed segments
+     */
+    public static final String ID_SEGMENT = "{id}";
+    /**
+     * UUID segment
+     */
+    private static final Pattern UUID_PATTERN = Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    /**
+     * Compiled templates
+     */
+    private final UriTemplate[] templates;
+    /**
+     * Replace numeric and UUID segments
+     */
+    private final boolean collapseIds;
+
+    /**
+     * Constructor
+     *
+     * @param templates Comma separated list of URI templates, may be null
+     * @param collapseIds Replace numeric and UUID segments by {@link #ID_SEGMENT}
+     */
+    public UriTemplateMatcher(String templates, boolean collapseIds) {
+        List<UriTemplate> templateList = new ArrayList<UriTemplate>();
+        if (templates != null) {
+            for (String template : templates.split(",")) {
+                template = template.trim();
+                if (!template.isEmpty()) {
+                    templateList.add(new UriTemplate(template));
+                }
+            }
+        }
+        this.templates = templateList.toArray(new UriTemplate[templateList.size()]);
+        this.collapseIds = collapseIds;
+    }
+
+    /**
+     * @return true when this matcher never changes URIs
+     */
+    public boolean isEmpty() {
+        return templates.length == 0 && !collapseIds;
+    }
+
+    /**
+     * Map request URI onto a template
+     *
+     * @param uri Request URI
+     * @return Matching template, URI with collapsed segments, or the URI itself
+     */
+    public String apply(String uri) {
+        if (isEmpty()) {
+            return uri;
+        }
+        String[] segments = uri.split("/", -1);
+        for (UriTemplate template : templates) {
+            if (template.matches(segments)) {
+                return template.template;
+            }
+        }
+        if (collapseIds) {
+            boolean collapsed = false;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segmentValue(segments[i]);
+                if (isId(segment)) {
+                    segments[i] = ID_SEGMENT;
+                    collapsed = true;
+                }
+            }
+            if (collapsed) {
+                StringBuilder uriBuilder = new StringBuilder(uri.length());
+                for (int i = 0; i < segments.length; i++) {
+                    if (i > 0) {
+                        uriBuilder.append('/');
+                    }
+                    uriBuilder.append(segments[i]);
+                }
+                return uriBuilder.toString();
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * Remove path parameters (like <code>;jsessionid=...</code>) from URI segment
+     */
+    private static String segmentValue(String segment) {
+        int paramIndex = segment.indexOf(';');
+        return paramIndex < 0 ? segment : segment.substring(0, paramIndex);
+    }
+
+    /**
+     * Indicates whether segment is numeric or an UUID
+     */
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return false;
+        }
+        boolean numeric = true;
+        for (int i = 0; i < segment.length() && numeric; i++) {
+            char c = segment.charAt(i);
+            numeric = c >= '0' && c <= '9';
+        }
+        return numeric || (segment.length() == 36 && UUID_PATTERN.matcher(segment).matches());
+    }
+
+    /**
+     * URI template like <code>/orders/{id}/lines</code>
+     */
+    private static class UriTemplate {
+        /**
+         * Template as configured
+         */
+        private final String template;
+        /**
+         * Template segments, null for variable segments
+         */
+        private final String[] segments;
+
+        private UriTemplate(String template) {
+            this.template = template;
+            this.segments = template.split("/", -1);
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    segments[i] = null;
+                }
+            }
+        }
+
+        private boolean matches(String[] uriSegments) {
+            if (uriSegments.length != segments.length) {
+                return false;
+            }
+            for (int i = 0; i < segments.length; i++) {
+                String uriSegment = segmentValue(uriSegments[i]);
+                if (segments[i] == null ? uriSegment.isEmpty() : !segments[i].equals(uriSegment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.javasimon.tomcat;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Duration statistics over a time window, durations are in nanoseconds.
+ *
+ * @author gquintana
+ */
+public class WindowSample {
+    private final String name;
+    private final long windowSeconds;
+    private final long count;
+    private final long total;
+    private final long min;
+    private final long max;
+
+    @ConstructorProperties({"name", "windowSeconds", "count", "total", "min", "max"})
+    public WindowSample(String name, long windowSeconds, long count, long total, long min, long max) {
+        this.name = name;
+        this.windowSeconds = windowSeconds;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0L ? 0D : ((double) total) / count;
+    }
+
+    /**
+     * @return Number of durations per second
+     */
+    public double getRate() {
+        return windowSeconds == 0L ? 0D : ((double) count) / windowSeconds;
+    }
+}
@@ -0,0 +1,154 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Split;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CallbackSkeleton;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link AsyncCallback}
+ */
+public class AsyncCallbackTest {
+    private long publishConcurrently(final AsyncCallback asyncCallback, int threadCount, final int eventCount) throws InterruptedException {
+        final Split split = mock(Split.class);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventCount; j++) {
+                        asyncCallback.onStopwatchStop(split);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (long) threadCount * eventCount;
+    }
+
+    private Callback createCountingCallback(final AtomicLong stopCount) {
+        return new CallbackSkeleton() {
+            @Override
+            public void onStopwatchStop(Split split) {
+                stopCount.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        AtomicLong stopCount = new AtomicLong();
+        AsyncCallback asyncCallback = new AsyncCallback(Collections.singletonList(createCountingCallback(stopCount)), 128, AsyncCallback.OverflowPolicy.BLOCK);
+        asyncCallback.start();
+        long eventCount = publishConcurrently(asyncCallback, 4, 10000);
+        assertTrue(asyncCallback.stop(10000L));
+        assertEquals(stopCount.get(), eventCount);
+        assertEquals(asyncCallback.getDispatchedCount(), eventCount);
+        assertEquals(asyncCallback.getDroppedCount(), 0L);
+    }
+
+    @Test
+    public void testDrop() throws InterruptedException {
+        AtomicLong stopCount = new AtomicLong();
+        AsyncCallback asyncCallback = new AsyncCallback(Collections.singletonList(createCountingCallback(stopCount)), 128, AsyncCallback.OverflowPolicy.DROP);
+        // Consumer is not started: ring fills up
+        long eventCount = publishConcurrently(asyncCallback, 4, 1000);
+        assertEquals(asyncCallback.getDroppedCount(), eventCount - 128L);
+        asyncCallback.start();
+        assertTrue(asyncCallback.stop(10000L));
+        assertEquals(stopCount.get(), 128L);
+    }
+
+    @Test
+    public void testFailingCallback() throws InterruptedException {
+        AtomicLong stopCount = new AtomicLong();
+        Callback failingCallback = new CallbackSkeleton() {
+            @Override
+            public void onStopwatchStop(Split split) {
+                throw new IllegalStateException("Failing callback");
+            }
+        };
+        AsyncCallback asyncCallback = new AsyncCallback(Arrays.asList(failingCallback, createCountingCallback(stopCount)), 128, AsyncCallback.OverflowPolicy.BLOCK);
+        asyncCallback.start();
+        long eventCount = publishConcurrently(asyncCallback, 2, 100);
+        assertTrue(asyncCallback.stop(10000L));
+        // Other callbacks still get events
+        assertEquals(stopCount.get(), eventCount);
+        assertEquals(asyncCallback.getFailedCount(), eventCount);
+    }
+
+    @Test
+    public void testCleanupAfterDrain() throws InterruptedException {
+        final AtomicLong stopCount = new AtomicLong();
+        final AtomicLong stopCountAtCleanup = new AtomicLong(-1L);
+        Callback callback = new CallbackSkeleton() {
+            @Override
+            public void onStopwatchStop(Split split) {
+                stopCount.incrementAndGet();
+            }
+
+            @Override
+            public void cleanup() {
+                stopCountAtCleanup.set(stopCount.get());
+            }
+        };
+        AsyncCallback asyncCallback = new AsyncCallback(Collections.singletonList(callback), 1024, AsyncCallback.OverflowPolicy.BLOCK);
+        asyncCallback.start();
+        long eventCount = publishConcurrently(asyncCallback, 2, 500);
+        asyncCallback.cleanup();
+        assertEquals(stopCountAtCleanup.get(), eventCount);
+    }
+
+    @Test
+    public void testStopTimeout() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong cleanupCount = new AtomicLong();
+        Callback slowCallback = new CallbackSkeleton() {
+            @Override
+            public void onStopwatchStop(Split split) {
+                try {
+                    latch.await();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void cleanup() {
+                cleanupCount.incrementAndGet();
+            }
+        };
+        AsyncCallback asyncCallback = new AsyncCallback(Collections.singletonList(slowCallback), 128, AsyncCallback.OverflowPolicy.BLOCK);
+        asyncCallback.start();
+        Split split = mock(Split.class);
+        asyncCallback.onStopwatchStop(split);
+        assertFalse(asyncCallback.stop(50L));
+        // Consumer is still running and kept, events published once stopped are dropped
+        assertFalse(asyncCallback.isStopped());
+        asyncCallback.onStopwatchStop(split);
+        assertEquals(asyncCallback.getDroppedCount(), 1L);
+        // No second consumer is started while the first one is still running
+        asyncCallback.start();
+        asyncCallback.onStopwatchStop(split);
+        assertEquals(asyncCallback.getDroppedCount(), 2L);
+        latch.countDown();
+        assertTrue(asyncCallback.stop(10000L));
+        assertTrue(asyncCallback.isStopped());
+        // Delegates are cleaned up once
+        asyncCallback.cleanup();
+        asyncCallback.cleanup();
+        assertEquals(cleanupCount.get(), 1L);
+        assertEquals(asyncCallback.getDispatchedCount(), 1L);
+    }
+}
@@ -0,0 +1,86 @@
+package org.javasimon.tomcat;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link AsyncRequestTimer}
+ */
+public class AsyncRequestTimerTest {
+    @Test
+    public void testCompleteOnce() {
+        Split split = mock(Split.class);
+        AsyncRequestTimer timer = new AsyncRequestTimer(new SimonValve(), null, split, 0L, mock(Request.class), mock(Response.class));
+        AsyncEvent event = mock(AsyncEvent.class);
+        timer.onComplete(event);
+        timer.onComplete(event);
+        timer.complete();
+        verify(split, times(1)).stop();
+    }
+
+    @Test
+    public void testConcurrentComplete() throws InterruptedException {
+        Split split = mock(Split.class);
+        final AsyncRequestTimer timer = new AsyncRequestTimer(new SimonValve(), null, split, 0L, mock(Request.class), mock(Response.class));
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException interruptedException) {
+                        return;
+                    }
+                    timer.complete();
+                }
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        verify(split, times(1)).stop();
+    }
+
+    @Test
+    public void testTimeoutThenComplete() {
+        Stopwatch stopwatch = SimonManager.getStopwatch("org.javasimon.tomcat.http.asyncTimer");
+        Split split = mock(Split.class);
+        when(split.getStopwatch()).thenReturn(stopwatch);
+        AsyncRequestTimer timer = new AsyncRequestTimer(new SimonValve(), null, split, 0L, mock(Request.class), mock(Response.class));
+        long timeoutCount = SimonManager.getCounter("org.javasimon.tomcat.http.asyncTimer." + TomcatRequestStopwatchSource.ASYNC_TIMEOUT_SUFFIX).getCounter();
+        AsyncEvent event = mock(AsyncEvent.class);
+        // Timeout is only counted, request is completed afterwards
+        timer.onTimeout(event);
+        verify(split, never()).stop();
+        assertEquals(SimonManager.getCounter("org.javasimon.tomcat.http.asyncTimer." + TomcatRequestStopwatchSource.ASYNC_TIMEOUT_SUFFIX).getCounter(), timeoutCount + 1L);
+        timer.onComplete(event);
+        verify(split, times(1)).stop();
+    }
+
+    @Test
+    public void testStartAsync() {
+        AsyncRequestTimer timer = new AsyncRequestTimer(new SimonValve(), null, mock(Split.class), 0L, mock(Request.class), mock(Response.class));
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        AsyncEvent event = mock(AsyncEvent.class);
+        when(event.getAsyncContext()).thenReturn(asyncContext);
+        // Listener registers itself again on asynchronous dispatch
+        timer.onStartAsync(event);
+        verify(asyncContext).addListener(timer);
+    }
+}
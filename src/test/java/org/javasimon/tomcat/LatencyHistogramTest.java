@@ -0,0 +1,55 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+/**
+ * Unit test for {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+    private static void assertRelativelyEquals(long actual, long expected) {
+        assertTrue(Math.abs(actual-expected)<=expected/LatencyHistogram.SUB_BUCKET_COUNT, actual+" instead of "+expected);
+    }
+    @Test
+    public void testBucketIndex() {
+        for(long value=0L;value<1000000L;value++) {
+            int index=LatencyHistogram.bucketIndex(value);
+            assertTrue(value<=LatencyHistogram.bucketUpperBound(index));
+            assertTrue(index==0 || value>LatencyHistogram.bucketUpperBound(index-1));
+        }
+        assertEquals(LatencyHistogram.bucketIndex(Long.MAX_VALUE), LatencyHistogram.BUCKET_COUNT-1);
+    }
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram=new LatencyHistogram();
+        for(long value=1L;value<=100000L;value++) {
+            histogram.record(value*1000L);
+        }
+        assertEquals(histogram.getCount(), 100000L);
+        assertEquals(histogram.getMin(), 1000L);
+        assertEquals(histogram.getMax(), 100000000L);
+        assertRelativelyEquals(histogram.getPercentile(50D), 50000000L);
+        assertRelativelyEquals(histogram.getPercentile(99D), 99000000L);
+        assertRelativelyEquals(histogram.getPercentile(99.9D), 99900000L);
+        assertEquals(histogram.getPercentile(100D), 100000000L);
+    }
+    @Test
+    public void testMerge() {
+        LatencyHistogram histogram1=new LatencyHistogram();
+        LatencyHistogram histogram2=new LatencyHistogram();
+        LatencyHistogram histogram=new LatencyHistogram();
+        for(long value=1L;value<=1000L;value++) {
+            (value%2==0 ? histogram1 : histogram2).record(value*value);
+            histogram.record(value*value);
+        }
+        LatencyHistogram mergedHistogram=new LatencyHistogram();
+        mergedHistogram.merge(histogram1);
+        mergedHistogram.merge(histogram2);
+        assertTrue(Arrays.equals(mergedHistogram.getBucketCounts(), histogram.getBucketCounts()));
+        assertEquals(mergedHistogram.getTotal(), histogram.getTotal());
+        assertEquals(mergedHistogram.getMin(), histogram.getMin());
+        assertEquals(mergedHistogram.getMax(), histogram.getMax());
+    }
+}
@@ -0,0 +1,42 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link LruCache}
+ */
+public class LruCacheTest {
+    @Test
+    public void testEviction() {
+        LruCache<String, String> cache = new LruCache<String, String>(2);
+        assertNull(cache.putIfAbsent("a", "A"));
+        assertNull(cache.putIfAbsent("b", "B"));
+        assertEquals(cache.putIfAbsent("a", "other"), "A");
+        // Recently read entry gets a second chance
+        assertEquals(cache.get("a"), "A");
+        assertNull(cache.putIfAbsent("c", "C"));
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictionCount(), 1L);
+        assertNull(cache.get("b"));
+        assertEquals(cache.get("a"), "A");
+        assertEquals(cache.get("c"), "C");
+        assertEquals(cache.getHitCount(), 3L);
+        assertEquals(cache.getMissCount(), 1L);
+    }
+
+    @Test
+    public void testClear() {
+        LruCache<String, String> cache = new LruCache<String, String>(10);
+        cache.putIfAbsent("a", "A");
+        cache.get("a");
+        cache.clear();
+        assertEquals(cache.size(), 0);
+        assertNull(cache.get("a"));
+        // Counters are kept
+        assertEquals(cache.getHitCount(), 1L);
+        assertNull(cache.putIfAbsent("a", "A"));
+        assertEquals(cache.size(), 1);
+    }
+}
@@ -0,0 +1,92 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+/**
+ * Unit test for {@link MetricSnapshot} and {@link MetricSnapshotMerger}
+ */
+public class MetricSnapshotTest {
+    private static final String NAME="org.javasimon.tomcat.http.orders";
+    /**
+     * Simulate a node recording random durations, into its own histogram and into the cluster histogram
+     */
+    private static MetricSnapshot simulateNode(long seed, int count, long timestamp, LatencyHistogram clusterHistogram) {
+        Random random=new Random(seed);
+        LatencyHistogram histogram=new LatencyHistogram();
+        for(int i=0;i<count;i++) {
+            long value=1000L+(long) (Math.abs(random.nextGaussian())*seed*1000000L);
+            histogram.record(value);
+            clusterHistogram.record(value);
+        }
+        return MetricSnapshot.of(Collections.singletonMap(NAME, histogram), timestamp);
+    }
+    @Test
+    public void testWriteRead() throws IOException {
+        MetricSnapshot snapshot=simulateNode(1L, 1000, 1000L, new LatencyHistogram());
+        ByteArrayOutputStream outputStream=new ByteArrayOutputStream();
+        snapshot.writeTo(outputStream);
+        MetricSnapshot readSnapshot=MetricSnapshot.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(readSnapshot, snapshot);
+        assertEquals(readSnapshot.getEntry(NAME).getCount(), 1000L);
+        // Unsupported version
+        byte[] bytes=outputStream.toByteArray();
+        bytes[5]=2;
+        try {
+            MetricSnapshot.readFrom(new ByteArrayInputStream(bytes));
+            fail("Version 2 read");
+        } catch (IOException ioException) {
+            // Expected
+        }
+    }
+    @Test
+    public void testMerge() throws IOException {
+        LatencyHistogram clusterHistogram=new LatencyHistogram();
+        MetricSnapshot[] snapshots={
+            simulateNode(1L, 1000, 1000L, clusterHistogram),
+            simulateNode(5L, 3000, 3000L, clusterHistogram),
+            simulateNode(20L, 500, 2000L, clusterHistogram)};
+        // Written by each node, merged offline
+        File[] files=new File[snapshots.length];
+        for(int i=0;i<snapshots.length;i++) {
+            files[i]=File.createTempFile("node"+i, ".snapshot");
+            files[i].deleteOnExit();
+            snapshots[i].writeTo(files[i]);
+        }
+        MetricSnapshot merged=MetricSnapshotMerger.merge(Arrays.asList(files));
+        // Associative and commutative
+        assertEquals(snapshots[0].merge(snapshots[1].merge(snapshots[2])), merged);
+        assertEquals(snapshots[2].merge(snapshots[0]).merge(snapshots[1]), merged);
+        assertEquals(merged.getTimestamp(), 3000L);
+        // Exact: same as a single histogram recording all values
+        MetricSnapshot.Entry entry=merged.getEntry(NAME);
+        assertEquals(entry.getCount(), 4500L);
+        assertEquals(entry.getCount(), clusterHistogram.getCount());
+        assertEquals(entry.getTotal(), clusterHistogram.getTotal());
+        assertEquals(entry.getMin(), clusterHistogram.getMin());
+        assertEquals(entry.getMax(), clusterHistogram.getMax());
+        assertTrue(Arrays.equals(entry.getBuckets(), clusterHistogram.getBucketCounts()));
+        for(double percentile:new double[]{50D, 90D, 99D, 99.9D}) {
+            assertEquals(entry.getPercentile(percentile), clusterHistogram.getPercentile(percentile));
+        }
+    }
+    @Test
+    public void testMergeWithoutHistogram() {
+        MetricSnapshot withHistogram=simulateNode(1L, 1000, 1000L, new LatencyHistogram());
+        MetricSnapshot.Entry entry=withHistogram.getEntry(NAME);
+        MetricSnapshot.Entry withoutHistogram=new MetricSnapshot.Entry(NAME, MetricSnapshot.STOPWATCH, 10L, 10000L, 1000L, 1000L, null);
+        // Buckets of one side only would not account for the merged count
+        MetricSnapshot.Entry merged=entry.merge(withoutHistogram);
+        assertEquals(merged.getCount(), 1010L);
+        assertFalse(merged.hasHistogram());
+        assertFalse(withoutHistogram.merge(entry).hasHistogram());
+    }
+}
@@ -0,0 +1,108 @@
+package org.javasimon.tomcat;
+
+import org.apache.catalina.connector.Request;
+import org.javasimon.SimonManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link OverheadGovernor}
+ */
+public class OverheadGovernorTest {
+    /**
+     * Load budget high enough for system load to never matter
+     */
+    private static final double NO_LOAD_BUDGET = 1000000D;
+
+    @AfterMethod
+    public void tearDown() {
+        OverheadGovernor.disable();
+    }
+
+    @Test
+    public void testEscalationAndRecovery() {
+        OverheadGovernor.configure(0.02D, NO_LOAD_BUDGET);
+        assertTrue(OverheadGovernor.isEnabled());
+        assertEquals(OverheadGovernor.getLevel(), OverheadGovernor.FULL);
+        // 10% overhead: one step per evaluation, up to the last level
+        int[] expectedLevels = {OverheadGovernor.SAMPLED, OverheadGovernor.NO_HISTOGRAMS, OverheadGovernor.NO_SQL_WRAPPING, OverheadGovernor.NO_SQL_WRAPPING};
+        for (int expectedLevel : expectedLevels) {
+            OverheadGovernor.recordRequest(100L, 1000L);
+            assertEquals(OverheadGovernor.evaluate(), expectedLevel);
+        }
+        assertEquals(SimonManager.getCounter(OverheadGovernor.LEVEL_NAME).getCounter(), (long) OverheadGovernor.NO_SQL_WRAPPING);
+        assertEquals(SimonManager.getCounter(OverheadGovernor.OVERHEAD_NAME).getCounter(), 100000L);
+        assertFalse(OverheadGovernor.isHistogramsEnabled());
+        assertFalse(OverheadGovernor.isSqlWrappingEnabled());
+        // 1.5% overhead: within budget but above half of it, level is kept
+        OverheadGovernor.recordRequest(15L, 1000L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.NO_SQL_WRAPPING);
+        // Negligible overhead: one step back per evaluation
+        OverheadGovernor.recordRequest(1L, 1000L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.NO_HISTOGRAMS);
+        assertTrue(OverheadGovernor.isSqlWrappingEnabled());
+        assertFalse(OverheadGovernor.isHistogramsEnabled());
+        // Overhead measured outside of the valve is accounted for
+        OverheadGovernor.recordRequest(1L, 1000L);
+        OverheadGovernor.recordOverhead(100L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.NO_SQL_WRAPPING);
+        OverheadGovernor.recordRequest(1L, 1000L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.NO_HISTOGRAMS);
+        // Nothing measured counts as no overhead
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.SAMPLED);
+        assertTrue(OverheadGovernor.isHistogramsEnabled());
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.FULL);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.FULL);
+        assertEquals(SimonManager.getCounter(OverheadGovernor.LEVEL_NAME).getCounter(), (long) OverheadGovernor.FULL);
+    }
+
+    @Test
+    public void testSample() {
+        OverheadGovernor.configure(0.02D, NO_LOAD_BUDGET);
+        // Full level: every request is recorded with its own weight
+        for (int i = 0; i < 100; i++) {
+            assertEquals(OverheadGovernor.sample(3), 3);
+        }
+        OverheadGovernor.recordRequest(100L, 1000L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.SAMPLED);
+        // Sampled level: recorded requests stand for 4 of them
+        int recordedCount = 0;
+        for (int i = 0; i < 1000; i++) {
+            int weight = OverheadGovernor.sample(3);
+            if (weight != 0) {
+                assertEquals(weight, 12);
+                recordedCount++;
+            }
+        }
+        assertTrue(recordedCount > 0 && recordedCount < 1000);
+    }
+
+    @Test
+    public void testDisable() {
+        OverheadGovernor.configure(0.02D, NO_LOAD_BUDGET);
+        OverheadGovernor.recordRequest(100L, 1000L);
+        OverheadGovernor.evaluate();
+        OverheadGovernor.disable();
+        assertFalse(OverheadGovernor.isEnabled());
+        assertFalse(OverheadGovernor.shouldMeasure());
+        assertEquals(OverheadGovernor.getLevel(), OverheadGovernor.FULL);
+        // Level is not evaluated once disabled
+        OverheadGovernor.recordRequest(100L, 1000L);
+        assertEquals(OverheadGovernor.evaluate(), OverheadGovernor.FULL);
+    }
+
+    @Test
+    public void testSampledCounter() {
+        Request requestMock = mock(Request.class);
+        when(requestMock.getRequestURI()).thenReturn("/governed");
+        // Without sampler nor governor, sampled requests are not counted
+        assertNull(new TomcatRequestStopwatchSource().getRequestMonitor(requestMock).getSampledCounter());
+        OverheadGovernor.configure(0.02D, NO_LOAD_BUDGET);
+        RequestMonitor requestMonitor = new TomcatRequestStopwatchSource().getRequestMonitor(requestMock);
+        assertNotNull(requestMonitor.getSampledCounter());
+        assertEquals(requestMonitor.getSampledCounter().getName(), "org.javasimon.tomcat.http.governed." + TomcatRequestStopwatchSource.SAMPLED_COUNT_SUFFIX);
+    }
+}
@@ -0,0 +1,43 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link RequestContext}
+ */
+public class RequestContextTest {
+    @Test
+    public void testChargeStatement() {
+        Object selectOrder = new Object(), selectOrderLine = new Object();
+        // Statements executed outside requests are ignored
+        RequestContext.chargeStatement(selectOrder, 100L);
+        RequestContext requestContext = RequestContext.begin();
+        RequestContext.chargeStatement(selectOrder, 100L);
+        for (int i = 0; i < 12; i++) {
+            RequestContext.chargeStatement(selectOrderLine, 10L);
+        }
+        requestContext.end();
+        RequestContext.chargeStatement(selectOrder, 100L);
+        assertEquals(requestContext.getDbNanos(), 220L);
+        assertEquals(requestContext.getDbCalls(), 13);
+        assertEquals(requestContext.getMaxRepeatCount(), 12);
+        // Context is reused and cleared
+        assertSame(RequestContext.begin(), requestContext);
+        assertEquals(requestContext.getDbCalls(), 0);
+        assertEquals(requestContext.getMaxRepeatCount(), 0);
+        requestContext.end();
+    }
+
+    @Test
+    public void testManyStatements() {
+        RequestContext requestContext = RequestContext.begin();
+        for (int i = 0; i < 1000; i++) {
+            RequestContext.chargeStatement(new Object(), 1L);
+        }
+        requestContext.end();
+        assertEquals(requestContext.getDbCalls(), 1000);
+        assertEquals(requestContext.getMaxRepeatCount(), 1);
+    }
+}
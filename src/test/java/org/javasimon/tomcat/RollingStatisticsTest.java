@@ -0,0 +1,118 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link RollingStatistics} and {@link RollingWindows}
+ */
+public class RollingStatisticsTest {
+    @AfterMethod
+    public void tearDown() {
+        RollingWindows.configure(60L, new int[]{1, 5, 15});
+    }
+
+    @Test
+    public void testWindows() {
+        RollingStatistics statistics = new RollingStatistics(3);
+        statistics.record(300L);
+        statistics.record(100L);
+        // Current interval is excluded
+        WindowSample sample = statistics.sample("test", 1, 10L);
+        assertEquals(sample.getCount(), 0L);
+        assertEquals(sample.getMin(), 0L);
+        statistics.rotate();
+        statistics.record(500L);
+        statistics.rotate();
+        sample = statistics.sample("test", 1, 10L);
+        assertEquals(sample.getName(), "test");
+        assertEquals(sample.getWindowSeconds(), 10L);
+        assertEquals(sample.getCount(), 1L);
+        assertEquals(sample.getTotal(), 500L);
+        assertEquals(sample.getMin(), 500L);
+        assertEquals(sample.getMax(), 500L);
+        sample = statistics.sample("test", 2, 10L);
+        assertEquals(sample.getWindowSeconds(), 20L);
+        assertEquals(sample.getCount(), 3L);
+        assertEquals(sample.getTotal(), 900L);
+        assertEquals(sample.getMin(), 100L);
+        assertEquals(sample.getMax(), 500L);
+        assertEquals(sample.getMean(), 300D, 0.001D);
+        assertEquals(sample.getRate(), 0.15D, 0.001D);
+        // Window is capped to the number of intervals
+        sample = statistics.sample("test", 10, 10L);
+        assertEquals(sample.getWindowSeconds(), 30L);
+        assertEquals(sample.getCount(), 3L);
+    }
+
+    @Test
+    public void testExpiry() {
+        RollingStatistics statistics = new RollingStatistics(2);
+        statistics.record(100L);
+        statistics.rotate();
+        statistics.rotate();
+        assertEquals(statistics.sample("test", 2, 1L).getCount(), 1L);
+        // Oldest bucket is reused and emptied
+        statistics.rotate();
+        WindowSample sample = statistics.sample("test", 2, 1L);
+        assertEquals(sample.getCount(), 0L);
+        assertEquals(sample.getTotal(), 0L);
+        assertEquals(sample.getMin(), 0L);
+        assertEquals(sample.getMax(), 0L);
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        final RollingStatistics statistics = new RollingStatistics(1);
+        final int eventCount = 10000;
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long ns = i + 1L;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventCount; j++) {
+                        statistics.record(ns);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        statistics.rotate();
+        WindowSample sample = statistics.sample("test", 1, 1L);
+        assertEquals(sample.getCount(), 4L * eventCount);
+        assertEquals(sample.getTotal(), (1L + 2L + 3L + 4L) * eventCount);
+        assertEquals(sample.getMin(), 1L);
+        assertEquals(sample.getMax(), 4L);
+    }
+
+    @Test
+    public void testRollingWindows() {
+        String name = "org.javasimon.tomcat.rolling.test";
+        assertEquals(RollingWindows.sample(name).length, 0);
+        assertNull(RollingWindows.findStatistics(name));
+        RollingWindows.configure(10L, new int[]{1, 3});
+        RollingStatistics statistics = RollingWindows.getStatistics(name);
+        assertSame(RollingWindows.getStatistics(name), statistics);
+        assertSame(RollingWindows.findStatistics(name), statistics);
+        assertTrue(RollingWindows.getNames().contains(name));
+        statistics.record(100L);
+        RollingWindows.rotate();
+        statistics.record(200L);
+        RollingWindows.rotate();
+        WindowSample[] samples = RollingWindows.sample(name);
+        assertEquals(samples.length, 2);
+        assertEquals(samples[0].getWindowSeconds(), 10L);
+        assertEquals(samples[0].getCount(), 1L);
+        assertEquals(samples[0].getTotal(), 200L);
+        // Statistics are sized for the largest window
+        assertEquals(samples[1].getWindowSeconds(), 30L);
+        assertEquals(samples[1].getCount(), 2L);
+        assertEquals(samples[1].getTotal(), 300L);
+    }
+}
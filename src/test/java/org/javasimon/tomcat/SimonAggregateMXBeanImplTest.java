@@ -0,0 +1,57 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Arrays;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link SimonAggregateMXBeanImpl}
+ */
+public class SimonAggregateMXBeanImplTest {
+    @Test
+    public void testQueryAndCallbacks() throws Exception {
+        Manager manager = mock(Manager.class);
+        when(manager.getSimonNames()).thenReturn(Arrays.asList("b", "a.y", "a.x"));
+        Stopwatch stopwatch = mock(Stopwatch.class);
+        when(stopwatch.getName()).thenReturn("a.x");
+        when(stopwatch.sample()).thenReturn(mock(StopwatchSample.class));
+        when(manager.getSimon("a.x")).thenReturn(stopwatch);
+        Counter counter = mock(Counter.class);
+        when(counter.getName()).thenReturn("a.y");
+        when(counter.sample()).thenReturn(mock(CounterSample.class));
+        when(manager.getSimon("a.y")).thenReturn(counter);
+        MBeanServer mBeanServer = mock(MBeanServer.class);
+        SimonAggregateMXBeanImpl simonAggregate = new SimonAggregateMXBeanImpl(manager, mBeanServer, "org.javasimon");
+        // Sorted, filtered and paged
+        assertEquals(simonAggregate.getSimonNames("a.", 0, 10), new String[]{"a.x", "a.y"});
+        assertEquals(simonAggregate.getSimonNames("", 1, 1), new String[]{"a.y"});
+        // Queried Simons get their MBean
+        assertEquals(simonAggregate.getStopwatches("a.", 0, 10).size(), 1);
+        assertEquals(simonAggregate.getCounters("a.", 0, 10).size(), 1);
+        verify(mBeanServer).registerMBean(anyObject(), eq(new ObjectName("org.javasimon:type=Stopwatch,name=a.x")));
+        assertEquals(simonAggregate.getRegisteredSimonCount(), 2);
+        // Index and MBeans follow Simon creation and destruction
+        Stopwatch createdStopwatch = mock(Stopwatch.class);
+        when(createdStopwatch.getName()).thenReturn("a.z");
+        simonAggregate.onSimonCreated(createdStopwatch);
+        assertEquals(simonAggregate.getSimonCount(), 4);
+        simonAggregate.onSimonDestroyed(stopwatch);
+        assertEquals(simonAggregate.getSimonNames("a.", 0, 10), new String[]{"a.y", "a.z"});
+        assertEquals(simonAggregate.getRegisteredSimonCount(), 1);
+        // Manager clear
+        when(manager.getSimonNames()).thenReturn(Arrays.asList(""));
+        simonAggregate.onManagerClear();
+        assertEquals(simonAggregate.getSimonCount(), 1);
+        assertEquals(simonAggregate.getRegisteredSimonCount(), 0);
+    }
+}
@@ -1,13 +1,25 @@
 package org.javasimon.tomcat;
 
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
 import org.apache.tomcat.jdbc.pool.JdbcInterceptor;
+import org.apache.tomcat.jdbc.pool.PoolProperties.InterceptorProperty;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+import org.javasimon.Simon;
+import org.javasimon.SimonManager;
+import org.javasimon.Stopwatch;
 import org.javasimon.jdbc4.SimonCallableStatement;
 import org.javasimon.jdbc4.SimonPreparedStatement;
 import org.javasimon.jdbc4.SimonStatement;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
@@ -23,6 +35,32 @@ public class SimonJdbcInterceptorTest {
         }
         return null;
     }
+    /**
+     * Create an interceptor configured with given properties (name, value pairs), in front of a mock interceptor
+     */
+    private SimonJdbcInterceptor createInterceptor(JdbcInterceptor nextJdbcInterceptor, String... properties) {
+        Map<String, InterceptorProperty> propertyMap=new HashMap<String, InterceptorProperty>();
+        for(int i=0;i<properties.length;i+=2) {
+            propertyMap.put(properties[i], new InterceptorProperty(properties[i], properties[i+1]));
+        }
+        SimonJdbcInterceptor simonJdbcInterceptor=new SimonJdbcInterceptor();
+        simonJdbcInterceptor.setProperties(propertyMap);
+        simonJdbcInterceptor.setNext(nextJdbcInterceptor);
+        return simonJdbcInterceptor;
+    }
+    /**
+     * SQL Stopwatches (having the SQL as note) under given prefix which recorded something
+     */
+    private List<Stopwatch> getUsedStopwatches(String prefix) {
+        List<Stopwatch> stopwatches=new ArrayList<Stopwatch>();
+        for(String name:SimonManager.getSimonNames()) {
+            Simon simon=SimonManager.getSimon(name);
+            if (name.startsWith(prefix+".") && simon instanceof Stopwatch && simon.getNote()!=null && ((Stopwatch) simon).getCounter()>0L) {
+                stopwatches.add((Stopwatch) simon);
+            }
+        }
+        return stopwatches;
+    }
     @Test
     public void testStatementWrapper() throws Throwable {
         SimonJdbcInterceptor simonJdbcInterceptor=new SimonJdbcInterceptor();
@@ -45,4 +83,146 @@ public class SimonJdbcInterceptorTest {
         assertNotNull(result);
         assertTrue(result instanceof SimonCallableStatement);
     }
+    @Test
+    public void testHoldTime() throws Throwable {
+        final String prefix="test.hold";
+        JdbcInterceptor nextJdbcInterceptor=mock(JdbcInterceptor.class);
+        SimonJdbcInterceptor simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix, "poolMetrics", "true");
+        Connection connectionMock=mock(Connection.class);
+        ConnectionPool poolMock=mock(ConnectionPool.class);
+        when(poolMock.getActive()).thenReturn(3);
+        PooledConnection pooledConnectionMock=mock(PooledConnection.class);
+        when(pooledConnectionMock.getTimestamp()).thenReturn(System.currentTimeMillis());
+        // Borrow, create 2 statements, execute 3 times
+        simonJdbcInterceptor.reset(poolMock, pooledConnectionMock);
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(PreparedStatement.class));
+        PreparedStatement firstStatement=(PreparedStatement) simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{"select 1"});
+        PreparedStatement secondStatement=(PreparedStatement) simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{"select 2"});
+        firstStatement.executeQuery();
+        firstStatement.executeQuery();
+        secondStatement.executeQuery();
+        // Close: hold time is recorded before the connection is given back to the pool
+        final long[] holdCountAtClose={-1L};
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                holdCountAtClose[0]=SimonManager.getStopwatch(prefix+".pool.hold").getCounter();
+                return null;
+            }
+        });
+        simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("close"),new Object[0]);
+        assertEquals(holdCountAtClose[0], 1L);
+        assertEquals(SimonManager.getStopwatch(prefix+".pool.borrow").getCounter(), 1L);
+        assertEquals(SimonManager.getCounter(prefix+".pool.active").getCounter(), 3L);
+        // Executions are counted, not statement creations
+        assertEquals(SimonManager.getCounter(prefix+".pool.statementsPerBorrow").getCounter(), 3L);
+        assertEquals(SimonManager.getCounter(prefix+".pool.statements").getCounter(), 3L);
+        // Closing again without borrow records nothing
+        simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("close"),new Object[0]);
+        assertEquals(SimonManager.getStopwatch(prefix+".pool.hold").getCounter(), 1L);
+    }
+    @Test
+    public void testPoolMetricsAfterClear() throws Throwable {
+        String prefix="test.clear";
+        JdbcInterceptor nextJdbcInterceptor=mock(JdbcInterceptor.class);
+        SimonJdbcInterceptor simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix, "poolMetrics", "true");
+        Connection connectionMock=mock(Connection.class);
+        ConnectionPool poolMock=mock(ConnectionPool.class);
+        PooledConnection pooledConnectionMock=mock(PooledConnection.class);
+        when(pooledConnectionMock.getTimestamp()).thenReturn(System.currentTimeMillis());
+        simonJdbcInterceptor.poolStarted(poolMock);
+        simonJdbcInterceptor.reset(poolMock, pooledConnectionMock);
+        simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("close"),new Object[0]);
+        // Pool Simons are resolved again once the manager is cleared
+        SimonManager.clear();
+        simonJdbcInterceptor.reset(poolMock, pooledConnectionMock);
+        simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("close"),new Object[0]);
+        assertEquals(SimonManager.getStopwatch(prefix+".pool.borrow").getCounter(), 1L);
+        assertEquals(SimonManager.getStopwatch(prefix+".pool.hold").getCounter(), 1L);
+        simonJdbcInterceptor.poolClosed(poolMock);
+    }
+    @Test
+    public void testSampling() throws Throwable {
+        String prefix="test.sampling";
+        JdbcInterceptor nextJdbcInterceptor=mock(JdbcInterceptor.class);
+        SimonJdbcInterceptor simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix, "sampleRate", "0.25");
+        Connection connectionMock=mock(Connection.class);
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(PreparedStatement.class));
+        int wrappedCount=0;
+        for(int i=0;i<4000;i++) {
+            Object result=simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{"select 1"});
+            if (result instanceof SimonPreparedStatement) {
+                wrappedCount++;
+            }
+        }
+        // About one statement out of 4 is wrapped, each one weighs 4
+        assertTrue(wrappedCount>700 && wrappedCount<1300, "Wrapped "+wrappedCount);
+        assertEquals(SimonManager.getCounter(prefix+".sampledCount").getCounter(), 4L*wrappedCount);
+        // Invalid sample rate disables sampling instead of failing
+        simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", "test.sampling.invalid", "sampleRate", "often");
+        assertTrue(simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{"select 1"}) instanceof SimonPreparedStatement);
+    }
+    @Test
+    public void testLightweight() throws Throwable {
+        String prefix="test.lightweight";
+        JdbcInterceptor nextJdbcInterceptor=mock(JdbcInterceptor.class);
+        SimonJdbcInterceptor simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix, "lightweight", "true");
+        Connection connectionMock=mock(Connection.class);
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(PreparedStatement.class));
+        Object result=simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{"update orders set status=1 where id=42"});
+        assertTrue(result instanceof TimedPreparedStatement);
+        assertFalse(result instanceof SimonPreparedStatement);
+        ((PreparedStatement) result).executeUpdate();
+        ((PreparedStatement) result).executeUpdate();
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(CallableStatement.class));
+        result=simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareCall"),new Object[]{"{call archive(1)}"});
+        assertTrue(result instanceof TimedCallableStatement);
+        ((CallableStatement) result).execute();
+        List<Stopwatch> stopwatches=getUsedStopwatches(prefix);
+        assertEquals(stopwatches.size(), 2);
+        Stopwatch updateStopwatch=simonJdbcInterceptor.getSqlMonitor("update orders set status=1 where id=42").getStopwatch();
+        assertEquals(updateStopwatch.getCounter(), 2L);
+        // No split: the Stopwatch is not active
+        assertEquals(updateStopwatch.getActive(), 0L);
+    }
+    @Test
+    public void testFingerprintNaming() throws Throwable {
+        JdbcInterceptor nextJdbcInterceptor=mock(JdbcInterceptor.class);
+        Connection connectionMock=mock(Connection.class);
+        // Basic statement: literals don't create distinct Stopwatches
+        String prefix="test.fingerprint.basic";
+        SimonJdbcInterceptor simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix, "fingerprintBasicStatements", "true");
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(Statement.class));
+        Statement statement=(Statement) simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("createStatement"),new Object[0]);
+        assertTrue(statement instanceof TimedStatement);
+        statement.executeUpdate("DELETE FROM orders WHERE id=1");
+        statement.executeUpdate("delete from orders where id=2");
+        List<Stopwatch> stopwatches=getUsedStopwatches(prefix);
+        assertEquals(stopwatches.size(), 1);
+        assertEquals(stopwatches.get(0).getCounter(), 2L);
+        assertEquals(stopwatches.get(0).getNote(), "delete from orders where id=?");
+        assertTrue(stopwatches.get(0).getName().startsWith(prefix+".sql.delete."));
+        // Null SQL is rejected by the driver, not by the fingerprinter
+        Statement rawStatement=mock(Statement.class);
+        when(rawStatement.executeQuery(null)).thenThrow(new SQLException("No SQL"));
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(rawStatement);
+        statement=(Statement) simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("createStatement"),new Object[0]);
+        try {
+            statement.executeQuery(null);
+            fail("SQLException expected");
+        } catch (SQLException sqlException) {
+            assertEquals(sqlException.getMessage(), "No SQL");
+        }
+        // Prepared statement wrapped by JavaSimon, named after the fingerprint
+        prefix="test.fingerprint.prepared";
+        simonJdbcInterceptor=createInterceptor(nextJdbcInterceptor, "prefix", prefix);
+        when(nextJdbcInterceptor.invoke(anyObject(),any(Method.class),any(new Object[0].getClass()))).thenReturn(mock(PreparedStatement.class));
+        for(String sql:new String[]{"update orders set status='PAID' where id=1", "update orders set status='SENT' where id=2"}) {
+            PreparedStatement preparedStatement=(PreparedStatement) simonJdbcInterceptor.invoke(connectionMock,getConnectionMethod("prepareStatement"),new Object[]{sql});
+            assertTrue(preparedStatement instanceof SimonPreparedStatement);
+            preparedStatement.executeUpdate();
+        }
+        stopwatches=getUsedStopwatches(prefix);
+        assertEquals(stopwatches.size(), 1);
+        assertEquals(stopwatches.get(0).getCounter(), 2L);
+    }
 }
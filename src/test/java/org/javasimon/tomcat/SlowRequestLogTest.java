@@ -0,0 +1,45 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link SlowRequestLog}
+ */
+public class SlowRequestLogTest {
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testRecord() {
+        SlowRequestLog slowRequestLog = new SlowRequestLog(100L, 4);
+        slowRequestLog.record("/fast", millis(10L), 200, -1L);
+        slowRequestLog.record("/slow", millis(200L), 200, millis(150L));
+        slowRequestLog.record("/slower", millis(300L), 500, -1L);
+        assertEquals(slowRequestLog.getCount(), 2L);
+        String[] slowest = slowRequestLog.getSlowest(10);
+        assertEquals(slowest.length, 2);
+        assertTrue(slowest[0].contains(" 300ms 500 /slower thread="));
+        assertFalse(slowest[0].contains(" db="));
+        assertTrue(slowest[1].contains(" 200ms 200 /slow thread="));
+        assertTrue(slowest[1].endsWith(" db=150ms"));
+    }
+
+    @Test
+    public void testOverwrite() {
+        SlowRequestLog slowRequestLog = new SlowRequestLog(1L, 4);
+        for (int i = 1; i <= 10; i++) {
+            slowRequestLog.record("/uri" + i, millis(i), 200, -1L);
+        }
+        // Only the 4 most recent requests are kept
+        String[] slowest = slowRequestLog.getSlowest(10);
+        assertEquals(slowest.length, 4);
+        assertTrue(slowest[0].contains(" /uri10 "));
+        assertTrue(slowest[3].contains(" /uri7 "));
+        assertEquals(slowRequestLog.getSlowest(2).length, 2);
+    }
+}
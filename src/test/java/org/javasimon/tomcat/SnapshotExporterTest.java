@@ -0,0 +1,164 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Counter;
+import org.javasimon.CounterSample;
+import org.javasimon.Manager;
+import org.javasimon.Stopwatch;
+import org.javasimon.StopwatchSample;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link SnapshotExporter}
+ */
+public class SnapshotExporterTest {
+    private File directory;
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot").toFile();
+        file = new File(directory, "metrics.lp");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static Stopwatch mockStopwatch(long count, long total, long min, long max) {
+        StopwatchSample sample = mock(StopwatchSample.class);
+        when(sample.getCounter()).thenReturn(count);
+        when(sample.getTotal()).thenReturn(total);
+        when(sample.getMin()).thenReturn(min);
+        when(sample.getMax()).thenReturn(max);
+        Stopwatch stopwatch = mock(Stopwatch.class);
+        when(stopwatch.getCounter()).thenReturn(count);
+        when(stopwatch.sampleAndReset()).thenReturn(sample);
+        return stopwatch;
+    }
+
+    private static Counter mockCounter(long value) {
+        CounterSample sample = mock(CounterSample.class);
+        when(sample.getCounter()).thenReturn(value);
+        when(sample.getMin()).thenReturn(0L);
+        when(sample.getMax()).thenReturn(value);
+        Counter counter = mock(Counter.class);
+        when(counter.sample()).thenReturn(sample);
+        return counter;
+    }
+
+    /**
+     * Manager holding a single Counter
+     */
+    private static Manager mockManager(String name, Counter counter) {
+        Manager manager = mock(Manager.class);
+        when(manager.getSimonNames()).thenReturn(Arrays.asList(name));
+        when(manager.getSimon(name)).thenReturn(counter);
+        return manager;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    @Test
+    public void testEscaping() throws IOException {
+        Manager manager = mock(Manager.class);
+        when(manager.getSimonNames()).thenReturn(Arrays.asList("valve.a,b c=d", "jdbc.pool.active", "valve.unused"));
+        Stopwatch stopwatch = mockStopwatch(2L, 300L, 100L, 200L);
+        when(manager.getSimon("valve.a,b c=d")).thenReturn(stopwatch);
+        Counter counter = mockCounter(4L);
+        when(manager.getSimon("jdbc.pool.active")).thenReturn(counter);
+        // Unused Stopwatches are not exported, nor reset
+        Stopwatch unusedStopwatch = mockStopwatch(0L, 0L, 0L, 0L);
+        when(manager.getSimon("valve.unused")).thenReturn(unusedStopwatch);
+        SnapshotExporter snapshotExporter = new SnapshotExporter(manager, file, Long.MAX_VALUE, 5);
+        assertEquals(snapshotExporter.export(), 2);
+        snapshotExporter.close();
+        verify(unusedStopwatch, never()).sampleAndReset();
+        String[] lines = read(file).split("\n");
+        assertEquals(lines.length, 2);
+        assertTrue(lines[0].startsWith("stopwatch,name=valve.a\\,b\\ c\\=d count=2i,total=300i,min=100i,max=200i "));
+        assertTrue(lines[1].startsWith("counter,name=jdbc.pool.active value=4i,min=0i,max=4i "));
+        // Timestamp in nanoseconds
+        String timestamp = lines[0].substring(lines[0].lastIndexOf(' ') + 1);
+        assertEquals(timestamp.length(), 19);
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        // About 100 bytes per line, several 64KB flushes per export
+        Manager manager = mock(Manager.class);
+        List<String> names = new ArrayList<String>();
+        Counter counter = mockCounter(1L);
+        for (int i = 0; i < 2000; i++) {
+            String name = "valve.orders.customers.invoices.lines.items" + i;
+            names.add(name);
+            when(manager.getSimon(name)).thenReturn(counter);
+        }
+        when(manager.getSimonNames()).thenReturn(names);
+        SnapshotExporter snapshotExporter = new SnapshotExporter(manager, file, Long.MAX_VALUE, 5);
+        assertEquals(snapshotExporter.export(), 2000);
+        assertEquals(snapshotExporter.export(), 2000);
+        snapshotExporter.close();
+        assertTrue(file.length() > 2 * 64 * 1024);
+        String[] lines = read(file).split("\n");
+        // No line lost nor split between flushes
+        assertEquals(lines.length, 4000);
+        assertTrue(lines[1999].startsWith("counter,name=valve.orders.customers.invoices.lines.items1999 value=1i,"));
+        assertTrue(lines[2000].startsWith("counter,name=valve.orders.customers.invoices.lines.items0 value=1i,"));
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        Counter counter = mockCounter(1L);
+        // Every export exceeds the maximum size
+        SnapshotExporter snapshotExporter = new SnapshotExporter(mockManager("jdbc.pool.active", counter), file, 1L, 2);
+        for (long value = 1L; value <= 3L; value++) {
+            CounterSample sample = counter.sample();
+            when(sample.getCounter()).thenReturn(value);
+            snapshotExporter.export();
+        }
+        snapshotExporter.close();
+        // Oldest file deleted, others renamed
+        assertFalse(file.exists());
+        assertTrue(read(new File(directory, "metrics.lp.1")).contains(" value=3i,"));
+        assertTrue(read(new File(directory, "metrics.lp.2")).contains(" value=2i,"));
+        assertFalse(new File(directory, "metrics.lp.3").exists());
+        // File is reopened by next export
+        snapshotExporter = new SnapshotExporter(mockManager("jdbc.pool.active", counter), file, Long.MAX_VALUE, 2);
+        snapshotExporter.export();
+        snapshotExporter.close();
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void testNoRotatedFile() throws IOException {
+        SnapshotExporter snapshotExporter = new SnapshotExporter(mockManager("jdbc.pool.active", mockCounter(1L)), file, 1L, 0);
+        snapshotExporter.export();
+        snapshotExporter.export();
+        snapshotExporter.close();
+        // File is deleted instead of rotated
+        assertFalse(file.exists());
+        assertFalse(new File(directory, "metrics.lp.1").exists());
+        assertFalse(new File(directory, "metrics.lp.0").exists());
+    }
+}
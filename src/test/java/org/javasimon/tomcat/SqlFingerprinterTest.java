@@ -0,0 +1,42 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link SqlFingerprinter}
+ */
+public class SqlFingerprinterTest {
+    @Test
+    public void testLiterals() {
+        assertEquals(SqlFingerprinter.normalize("SELECT * FROM users WHERE name='O''Brien' AND age > 42"), "select * from users where name=? and age > ?");
+        assertEquals(SqlFingerprinter.normalize("select * from t2 where col1 = 3.14e10"), "select * from t2 where col1 = ?");
+        assertEquals(SqlFingerprinter.normalize("select * from \"Users\" where id = ?"), "select * from \"Users\" where id = ?");
+    }
+
+    @Test
+    public void testWhitespaceAndComments() {
+        assertEquals(SqlFingerprinter.normalize("  select a,b\n\tfrom t -- comment\n where /* hint */ a = 1 "), "select a, b from t where a = ?");
+        assertEquals(SqlFingerprinter.normalize("insert into t ( a , b ) values ( 1 , 'x' )"), "insert into t (a, b) values (?, ?)");
+    }
+
+    @Test
+    public void testInList() {
+        String fingerprint = SqlFingerprinter.normalize("select * from t where id in (1, 2, 3) and status IN ('a','b')");
+        assertEquals(fingerprint, "select * from t where id in (?) and status in (?)");
+        assertEquals(SqlFingerprinter.normalize("select * from t where id in (?,?)"), "select * from t where id in (?)");
+        assertEquals(SqlFingerprinter.normalize("select * from t where id in (select id from u where x = 1)"), "select * from t where id in (select id from u where x = ?)");
+        assertEquals(SqlFingerprinter.normalize("select min(a) from t"), "select min(a) from t");
+    }
+
+    @Test
+    public void testCache() {
+        SqlFingerprinter sqlFingerprinter = new SqlFingerprinter(10);
+        String sql = "select * from t where id = 1";
+        assertEquals(sqlFingerprinter.fingerprint(sql), "select * from t where id = ?");
+        assertEquals(sqlFingerprinter.fingerprint(sql), "select * from t where id = ?");
+        assertEquals(sqlFingerprinter.getCache().getHitCount(), 1L);
+        assertEquals(new SqlFingerprinter(0).fingerprint(sql), "select * from t where id = ?");
+    }
+}
@@ -0,0 +1,66 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.SimonManager;
+import org.javasimon.Stopwatch;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link StopwatchAccumulator}
+ */
+public class StopwatchAccumulatorTest {
+    @Test
+    public void testFoldWhenFull() {
+        Stopwatch stopwatch = SimonManager.getStopwatch("org.javasimon.tomcat.accumulator.full");
+        stopwatch.reset();
+        StopwatchAccumulator accumulator = new StopwatchAccumulator(stopwatch, 1, 4);
+        for (long ns = 1L; ns <= 4L; ns++) {
+            accumulator.add(ns * 100L);
+        }
+        // Buffered, not folded yet
+        assertEquals(stopwatch.getCounter(), 0L);
+        accumulator.add(500L);
+        // Full buffer folded before adding
+        assertEquals(stopwatch.getCounter(), 4L);
+        assertEquals(stopwatch.getTotal(), 1000L);
+        accumulator.fold();
+        assertEquals(stopwatch.getCounter(), 5L);
+        assertEquals(stopwatch.getTotal(), 1500L);
+        assertEquals(stopwatch.getMin(), 100L);
+        assertEquals(stopwatch.getMax(), 500L);
+        // Nothing left to fold
+        accumulator.fold();
+        assertEquals(stopwatch.getCounter(), 5L);
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        Stopwatch stopwatch = SimonManager.getStopwatch("org.javasimon.tomcat.accumulator.concurrent");
+        stopwatch.reset();
+        final StopwatchAccumulator accumulator = new StopwatchAccumulator(stopwatch, 2, 16);
+        final int eventCount = 10000;
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long ns = i + 1L;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventCount; j++) {
+                        accumulator.add(ns);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        accumulator.fold();
+        // No duration lost nor folded twice
+        assertEquals(stopwatch.getCounter(), 4L * eventCount);
+        assertEquals(stopwatch.getTotal(), (1L + 2L + 3L + 4L) * eventCount);
+        assertEquals(stopwatch.getMin(), 1L);
+        assertEquals(stopwatch.getMax(), 4L);
+    }
+}
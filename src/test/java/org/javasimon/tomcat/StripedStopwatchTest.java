@@ -0,0 +1,74 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link StripedStopwatch} and {@link StripedStopwatches}
+ */
+public class StripedStopwatchTest {
+    @AfterMethod
+    public void tearDown() {
+        StripedStopwatches.clear();
+    }
+
+    @Test
+    public void testEmpty() {
+        StripedStopwatch stopwatch = new StripedStopwatch(4);
+        assertEquals(stopwatch.getCount(), 0L);
+        assertEquals(stopwatch.getTotal(), 0L);
+        assertEquals(stopwatch.getMin(), Long.MAX_VALUE);
+        assertEquals(stopwatch.getMax(), 0L);
+        assertEquals(new StripedStopwatchSample("test", stopwatch).getMean(), 0D, 0.001D);
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        final StripedStopwatch stopwatch = new StripedStopwatch(4);
+        final int eventCount = 10000;
+        // More threads than cells: some cells are shared
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final long ns = 10L * (i + 1);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < eventCount; j++) {
+                        stopwatch.record(ns);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(stopwatch.getCount(), 8L * eventCount);
+        assertEquals(stopwatch.getTotal(), 10L * (1L + 2L + 3L + 4L + 5L + 6L + 7L + 8L) * eventCount);
+        assertEquals(stopwatch.getMin(), 10L);
+        assertEquals(stopwatch.getMax(), 80L);
+        StripedStopwatchSample sample = new StripedStopwatchSample("test", stopwatch);
+        assertEquals(sample.getMean(), 45D, 0.001D);
+        stopwatch.reset();
+        assertEquals(stopwatch.getCount(), 0L);
+        assertEquals(stopwatch.getMin(), Long.MAX_VALUE);
+        assertEquals(stopwatch.getMax(), 0L);
+    }
+
+    @Test
+    public void testMaxStopwatches() {
+        StripedStopwatch first = StripedStopwatches.getStopwatch("org.javasimon.tomcat.striped.first", 2);
+        assertNotNull(first);
+        assertSame(StripedStopwatches.getStopwatch("org.javasimon.tomcat.striped.first", 2), first);
+        assertNotNull(StripedStopwatches.getStopwatch("org.javasimon.tomcat.striped.second", 2));
+        // Maximum reached, existing ones are still returned
+        assertNull(StripedStopwatches.getStopwatch("org.javasimon.tomcat.striped.third", 2));
+        assertSame(StripedStopwatches.findStopwatch("org.javasimon.tomcat.striped.first"), first);
+        assertEquals(StripedStopwatches.getNames().size(), 2);
+        StripedStopwatches.clear();
+        assertNull(StripedStopwatches.findStopwatch("org.javasimon.tomcat.striped.first"));
+        assertNotNull(StripedStopwatches.getStopwatch("org.javasimon.tomcat.striped.third", 2));
+    }
+}
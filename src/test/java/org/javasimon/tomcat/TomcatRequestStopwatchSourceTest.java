@@ -1,6 +1,7 @@
 package org.javasimon.tomcat;
 
 import org.apache.catalina.connector.Request;
+import org.javasimon.SimonManager;
 import org.testng.annotations.Test;
 
 import static org.mockito.Mockito.*;
@@ -20,4 +21,130 @@ public class TomcatRequestStopwatchSourceTest {
         when(requestMock.getRequestURI()).thenReturn("/test/url?JSESSIONID=1234");
         assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.test.url_");
     }
+    @Test
+    public void testGetRequestMonitor() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        Request requestMock=mock(Request.class);
+        // Monitored request is resolved once, then cached
+        when(requestMock.getRequestURI()).thenReturn("/test/cached");
+        RequestMonitor requestMonitor=stopwatchSource.getRequestMonitor(requestMock);
+        assertTrue(requestMonitor.isMonitored());
+        assertEquals(requestMonitor.getStopwatch().getName(), "org.javasimon.tomcat.http.test.cached");
+        assertSame(stopwatchSource.getRequestMonitor(requestMock), requestMonitor);
+        assertEquals(stopwatchSource.getCacheMissCount(), 1L);
+        assertEquals(stopwatchSource.getCacheHitCount(), 1L);
+        // Resolved again once the manager state changed
+        TomcatRequestStopwatchSource.invalidateCaches();
+        assertNotSame(stopwatchSource.getRequestMonitor(requestMock), requestMonitor);
+        assertEquals(stopwatchSource.getCacheMissCount(), 2L);
+        // Resolved again once the manager is disabled, even without invalidation
+        requestMonitor=stopwatchSource.getRequestMonitor(requestMock);
+        SimonManager.disable();
+        try {
+            assertNotSame(stopwatchSource.getRequestMonitor(requestMock), requestMonitor);
+        } finally {
+            SimonManager.enable();
+        }
+        assertEquals(stopwatchSource.getCacheMissCount(), 3L);
+        // Not monitored request
+        when(requestMock.getRequestURI()).thenReturn("/test/style.css");
+        assertSame(stopwatchSource.getRequestMonitor(requestMock), RequestMonitor.NOT_MONITORED);
+    }
+    @Test
+    public void testGetRequestMonitorOverridden() {
+        // Monitor name depends on more than the URI: request monitors are not cached
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource() {
+            @Override
+            protected String getMonitorName(Request request) {
+                return super.getMonitorName(request)+"."+request.getMethod().toLowerCase();
+            }
+        };
+        Request requestMock=mock(Request.class);
+        when(requestMock.getRequestURI()).thenReturn("/test/overridden");
+        when(requestMock.getMethod()).thenReturn("GET");
+        assertEquals(stopwatchSource.getRequestMonitor(requestMock).getStopwatch().getName(), "org.javasimon.tomcat.http.test.overridden.get");
+        when(requestMock.getMethod()).thenReturn("POST");
+        assertEquals(stopwatchSource.getRequestMonitor(requestMock).getStopwatch().getName(), "org.javasimon.tomcat.http.test.overridden.post");
+        assertEquals(stopwatchSource.getCacheHitCount(), 0L);
+    }
+    @Test
+    public void testUriTemplates() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        stopwatchSource.setUriTemplates("/orders/{id}/lines");
+        stopwatchSource.setCollapseIds(true);
+        Request requestMock=mock(Request.class);
+        // Configured template
+        when(requestMock.getRequestURI()).thenReturn("/orders/AB12/lines");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.orders._id_.lines");
+        // Numeric and UUID segments
+        when(requestMock.getRequestURI()).thenReturn("/customers/12345/orders/123e4567-e89b-12d3-a456-426614174000");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.customers._id_.orders._id_");
+    }
+    @Test
+    public void testMaxMonitors() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        stopwatchSource.setMaxMonitors(2);
+        Request requestMock=mock(Request.class);
+        when(requestMock.getRequestURI()).thenReturn("/first");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.first");
+        when(requestMock.getRequestURI()).thenReturn("/second");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.second");
+        when(requestMock.getRequestURI()).thenReturn("/third");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.other");
+        when(requestMock.getRequestURI()).thenReturn("/first");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.first");
+        assertEquals(stopwatchSource.getDroppedLookupCount(), 1L);
+    }
+    @Test
+    public void testOtherNameEscaping() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        stopwatchSource.setMaxMonitors(3);
+        Request requestMock=mock(Request.class);
+        // Real URIs never get the overflow name
+        when(requestMock.getRequestURI()).thenReturn("/other");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.other_");
+        when(requestMock.getRequestURI()).thenReturn("/other_");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.other__");
+        when(requestMock.getRequestURI()).thenReturn("/other/orders");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.other.orders");
+        when(requestMock.getRequestURI()).thenReturn("/fourth");
+        assertEquals(stopwatchSource.getMonitorName(requestMock), "org.javasimon.tomcat.http.other");
+    }
+    @Test
+    public void testStatusClasses() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        stopwatchSource.setStatusClasses(true);
+        Request requestMock=mock(Request.class);
+        when(requestMock.getRequestURI()).thenReturn("/test/status");
+        RequestMonitor requestMonitor=stopwatchSource.getRequestMonitor(requestMock);
+        assertTrue(requestMonitor.isStatusMonitored());
+        requestMonitor.recordStatus(200, 1000L);
+        requestMonitor.recordStatus(503, 2000L);
+        requestMonitor.recordStatus(101, 3000L);
+        requestMonitor.recordException();
+        assertEquals(SimonManager.getStopwatch("org.javasimon.tomcat.http.test.status.2xx").getTotal(), 1000L);
+        assertEquals(SimonManager.getStopwatch("org.javasimon.tomcat.http.test.status.5xx").getTotal(), 2000L);
+        assertEquals(SimonManager.getStopwatch("org.javasimon.tomcat.http.test.status.4xx").getCounter(), 0L);
+        assertEquals(SimonManager.getCounter("org.javasimon.tomcat.http.test.status.exceptions").getCounter(), 1L);
+    }
+    @Test
+    public void testIsMonitored() {
+        TomcatRequestStopwatchSource stopwatchSource=new TomcatRequestStopwatchSource();
+        Request requestMock=mock(Request.class);
+        // Default extensions, case insensitive
+        when(requestMock.getRequestURI()).thenReturn("/test/logo.PNG");
+        assertFalse(stopwatchSource.isMonitored(requestMock));
+        when(requestMock.getRequestURI()).thenReturn("/test/app.json");
+        assertTrue(stopwatchSource.isMonitored(requestMock));
+        // Configured extensions and prefixes
+        stopwatchSource.setIgnoredExtensions("json,.ico");
+        stopwatchSource.setIgnoredPrefixes("/static/");
+        assertFalse(stopwatchSource.isMonitored(requestMock));
+        when(requestMock.getRequestURI()).thenReturn("/favicon.ICO");
+        assertFalse(stopwatchSource.isMonitored(requestMock));
+        when(requestMock.getRequestURI()).thenReturn("/static/page");
+        assertFalse(stopwatchSource.isMonitored(requestMock));
+        when(requestMock.getRequestURI()).thenReturn("/test/logo.png");
+        assertTrue(stopwatchSource.isMonitored(requestMock));
+    }
 }
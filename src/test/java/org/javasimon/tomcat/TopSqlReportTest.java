@@ -0,0 +1,48 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link TopSqlReport}
+ */
+public class TopSqlReportTest {
+    @Test
+    public void testTopByTotalTime() {
+        TopSqlReport topSqlReport = new TopSqlReport(3);
+        for (int i = 0; i < 1000; i++) {
+            // Heavy hitter among many distinct light statements
+            topSqlReport.record("heavy", "select heavy", 100L);
+            topSqlReport.record("light" + i, "select light" + i, 1L);
+        }
+        TopSqlSample[] top = topSqlReport.getTopByTotalTime();
+        assertEquals(top.length, 3);
+        assertEquals(top[0].getName(), "heavy");
+        assertEquals(top[0].getSql(), "select heavy");
+        assertEquals(top[0].getCount(), 1000L);
+        assertEquals(top[0].getTotalTime(), 100000L);
+        assertEquals(top[0].getTotalTimeError(), 0L);
+        // Light statements inherit evicted total time as error
+        assertTrue(top[1].getTotalTime() - top[1].getTotalTimeError() <= 1L);
+    }
+
+    @Test
+    public void testTopByMaxTime() {
+        TopSqlReport topSqlReport = new TopSqlReport(2);
+        topSqlReport.record("a", "select a", 10L);
+        topSqlReport.record("b", "select b", 50L);
+        topSqlReport.record("c", "select c", 5L);
+        topSqlReport.record("d", "select d", 30L);
+        topSqlReport.record("b", "select b", 70L);
+        TopSqlSample[] top = topSqlReport.getTopByMaxTime();
+        assertEquals(top.length, 2);
+        assertEquals(top[0].getName(), "b");
+        assertEquals(top[0].getMaxTime(), 70L);
+        assertEquals(top[0].getCount(), 2L);
+        assertEquals(top[1].getName(), "d");
+        topSqlReport.reset();
+        assertEquals(topSqlReport.getTopByMaxTime().length, 0);
+        assertEquals(topSqlReport.getTopByTotalTime().length, 0);
+    }
+}
@@ -0,0 +1,60 @@
+package org.javasimon.tomcat;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit test for {@link UriFilter}
+ */
+public class UriFilterTest {
+    @Test
+    public void testDefaultExtensions() {
+        UriFilter uriFilter = new UriFilter(UriFilter.DEFAULT_EXTENSIONS, null);
+        assertTrue(uriFilter.isIgnored("/static/style.css"));
+        assertTrue(uriFilter.isIgnored("/js/app.js"));
+        assertTrue(uriFilter.isIgnored("/images/logo.png"));
+        // Case insensitive
+        assertTrue(uriFilter.isIgnored("/images/LOGO.JPG"));
+        assertFalse(uriFilter.isIgnored("/orders/list"));
+        assertFalse(uriFilter.isIgnored("/"));
+        assertFalse(uriFilter.isIgnored(""));
+    }
+
+    @Test
+    public void testExtensionSuffix() {
+        UriFilter uriFilter = new UriFilter("js, .css", null);
+        // Extension must follow a dot
+        assertFalse(uriFilter.isIgnored("/api/json"));
+        assertFalse(uriFilter.isIgnored("/api/orders.json"));
+        assertFalse(uriFilter.isIgnored("/static/style.scss"));
+        assertFalse(uriFilter.isIgnored("/css"));
+        assertTrue(uriFilter.isIgnored("/static/style.min.css"));
+        assertTrue(uriFilter.isIgnored("/app.js"));
+    }
+
+    @Test
+    public void testSharedSuffix() {
+        UriFilter uriFilter = new UriFilter("gz,tar.gz", null);
+        assertTrue(uriFilter.isIgnored("/download/archive.tar.gz"));
+        assertTrue(uriFilter.isIgnored("/download/archive.gz"));
+        assertFalse(uriFilter.isIgnored("/download/archive.tar"));
+    }
+
+    @Test
+    public void testPrefixes() {
+        UriFilter uriFilter = new UriFilter(null, "/static/, /health");
+        assertTrue(uriFilter.isIgnored("/static/index.html"));
+        assertTrue(uriFilter.isIgnored("/health"));
+        assertTrue(uriFilter.isIgnored("/healthcheck"));
+        assertFalse(uriFilter.isIgnored("/api/static/index.html"));
+        assertFalse(uriFilter.isIgnored("/style.css"));
+    }
+
+    @Test
+    public void testEmpty() {
+        UriFilter uriFilter = new UriFilter(" , ", "");
+        assertFalse(uriFilter.isIgnored("/style.css"));
+        assertFalse(uriFilter.isIgnored("/static/index.html"));
+    }
+}
@@ -0,0 +1,65 @@
+package org.javasimon.tomcat;
+
+import org.javasimon.Manager;
+import org.javasimon.javaee.SimonServletFilterUtils;
+import org.javasimon.utils.Replacer;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.*;
+/**
+ * Unit test for {@link UriNormalizer}
+ */
+public class UriNormalizerTest {
+    /**
+     * Fragments used to build random URIs
+     */
+    private static final String[] FRAGMENTS = {
+            "/", "/", "/", ";", "&", "?", "=", "jsessionid=", "JSESSIONID=", "JSessionId=", ";jsessionid=", "JSESSION",
+            "a", "Z", "0", "9", ".", "_", "-", "!", "^", " ", "%", "*", "~", "[", "]", "(", ")", "<", ">", "@", "$", ",",
+            "\u00e9", "\u0131", "\u017f", "\uD83D\uDE00", "\uD83D", "test", "url", "index.jsp"
+    };
+    /**
+     * Former implementation based on regular expressions
+     */
+    private static class ReplacerNormalizer {
+        private final Replacer unallowedCharacterReplacer = SimonServletFilterUtils.createUnallowedCharsReplacer("_");
+        private final Replacer jsessionParameterReplacer = new Replacer("[;&]?JSESSIONID=[^;?/&]*", "", Replacer.Modificator.IGNORE_CASE);
+        private final Replacer slashReplacer = new Replacer("[/]", Manager.HIERARCHY_DELIMITER);
+        String normalize(String prefix, String uri) {
+            String monitorName=uri;
+            monitorName=jsessionParameterReplacer.process(monitorName);
+            monitorName=unallowedCharacterReplacer.process(monitorName);
+            monitorName=slashReplacer.process(monitorName);
+            if (prefix!=null && !prefix.isEmpty()) {
+                monitorName=prefix+monitorName;
+            }
+            return monitorName;
+        }
+    }
+    @Test
+    public void testNormalize() {
+        UriNormalizer uriNormalizer=new UriNormalizer();
+        assertEquals(uriNormalizer.normalize("p", "/test/some!weird^thing"), "p.test.some_weird_thing");
+        assertEquals(uriNormalizer.normalize("p", "/test/url;jsessionid=1234/next"), "p.test.url.next");
+        assertEquals(uriNormalizer.normalize(null, "/a;JSESSIONID=12"), ".a");
+    }
+    @Test
+    public void testNormalizeLikeReplacers() {
+        UriNormalizer uriNormalizer=new UriNormalizer();
+        ReplacerNormalizer replacerNormalizer=new ReplacerNormalizer();
+        Random random=new Random(42L);
+        StringBuilder uriBuilder=new StringBuilder();
+        for(int i=0;i<10000;i++) {
+            uriBuilder.setLength(0);
+            int fragmentCount=random.nextInt(12);
+            for(int j=0;j<fragmentCount;j++) {
+                uriBuilder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String uri=uriBuilder.toString();
+            String prefix=random.nextBoolean() ? "org.javasimon.tomcat.http" : "";
+            assertEquals(uriNormalizer.normalize(prefix, uri), replacerNormalizer.normalize(prefix, uri), "URI "+uri);
+        }
+    }
+}